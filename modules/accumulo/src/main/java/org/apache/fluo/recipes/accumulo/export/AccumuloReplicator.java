@@ -16,6 +16,7 @@
 package org.apache.fluo.recipes.accumulo.export;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -77,26 +78,29 @@ public class AccumuloReplicator extends AccumuloExporter<String, TxLog> {
    */
   public static void generateMutations(long seq, TxLog txLog, Consumer<Mutation> consumer) {
     Map<Bytes, Mutation> mutationMap = new HashMap<>();
-    for (LogEntry le : txLog.getLogEntries()) {
+    Iterator<TxLog.Entry> iter = txLog.entryIterator();
+    while (iter.hasNext()) {
+      TxLog.Entry le = iter.next();
       LogEntry.Operation op = le.getOp();
+      if (op.equals(LogEntry.Operation.GET)) {
+        continue;
+      }
       Column col = le.getColumn();
       byte[] cf = col.getFamily().toArray();
       byte[] cq = col.getQualifier().toArray();
       byte[] cv = col.getVisibility().toArray();
-      if (op.equals(LogEntry.Operation.DELETE) || op.equals(LogEntry.Operation.SET)) {
-        Mutation m = mutationMap.computeIfAbsent(le.getRow(), k -> new Mutation(k.toArray()));
-        if (op.equals(LogEntry.Operation.DELETE)) {
-          if (col.isVisibilitySet()) {
-            m.putDelete(cf, cq, new ColumnVisibility(cv), seq);
-          } else {
-            m.putDelete(cf, cq, seq);
-          }
+      Mutation m = mutationMap.computeIfAbsent(le.getRow(), k -> new Mutation(k.toArray()));
+      if (op.equals(LogEntry.Operation.DELETE)) {
+        if (col.isVisibilitySet()) {
+          m.putDelete(cf, cq, new ColumnVisibility(cv), seq);
+        } else {
+          m.putDelete(cf, cq, seq);
+        }
+      } else {
+        if (col.isVisibilitySet()) {
+          m.put(cf, cq, new ColumnVisibility(cv), seq, le.getValue().toArray());
         } else {
-          if (col.isVisibilitySet()) {
-            m.put(cf, cq, new ColumnVisibility(cv), seq, le.getValue().toArray());
-          } else {
-            m.put(cf, cq, seq, le.getValue().toArray());
-          }
+          m.put(cf, cq, seq, le.getValue().toArray());
         }
       }
     }
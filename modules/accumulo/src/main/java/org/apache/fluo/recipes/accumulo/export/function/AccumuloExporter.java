@@ -17,11 +17,20 @@ package org.apache.fluo.recipes.accumulo.export.function;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import com.google.common.base.Preconditions;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.fluo.api.config.FluoConfiguration;
 import org.apache.fluo.api.config.SimpleConfiguration;
+import org.apache.fluo.api.metrics.MetricsReporter;
 import org.apache.fluo.api.observer.ObserverProvider;
 import org.apache.fluo.recipes.core.export.ExportQueue;
 import org.apache.fluo.recipes.core.export.SequencedExport;
@@ -31,13 +40,22 @@ import org.apache.fluo.recipes.core.export.function.Exporter;
  * An Accumulo-specific {@link Exporter} that writes mutations to Accumulo. For an overview of how
  * to use this, see the project level documentation for exporting to Accumulo.
  *
+ * <p>
+ * Exporters writing to the same table share Accumulo batch writers, which are flushed and closed
+ * when the last exporter using them is closed. Exporters that are not closed hold on to the batch
+ * writers and their threads until the JVM shuts down.
+ *
  * @see ExportQueue#registerObserver(ObserverProvider.Registry, Exporter)
  * @since 1.1.0
  */
-public class AccumuloExporter<K, V> implements Exporter<K, V> {
+public class AccumuloExporter<K, V> implements Exporter<K, V>, AutoCloseable {
 
   private AccumuloTranslator<K, V> translator;
   private AccumuloWriter writer;
+  private ForkJoinPool translationPool = null;
+  private boolean coalesce;
+  private WriterMetrics metrics;
+  private volatile boolean closed = false;
 
   /**
    * Part of a fluent configuration API.
@@ -72,6 +90,56 @@ public class AccumuloExporter<K, V> implements Exporter<K, V> {
    * @since 1.1.0
    */
   public static interface Options {
+    /**
+     * Sets the maximum memory used by each Accumulo batch writer.
+     *
+     * @since 1.2.0
+     */
+    Options batchWriterMaxMemory(long bytes);
+
+    /**
+     * Sets the maximum time Accumulo batch writers hold mutations in memory before sending them.
+     *
+     * @since 1.2.0
+     */
+    Options batchWriterMaxLatency(long time, TimeUnit unit);
+
+    /**
+     * Sets the maximum number of threads each Accumulo batch writer uses to send mutations.
+     *
+     * @since 1.2.0
+     */
+    Options batchWriterMaxWriteThreads(int threads);
+
+    /**
+     * Sets how many batches of mutations can be flushing to Accumulo at the same time. All
+     * exporters writing to the same table share the same batch writers. While a batch is flushing,
+     * mutations from other exporters accumulate in the next batch. Defaults to 1.
+     *
+     * @since 1.2.0
+     */
+    Options concurrentFlushes(int flushes);
+
+    /**
+     * Sets the number of threads used to translate the exports in a batch. When greater than one,
+     * exports are partitioned by key and partitions are translated in parallel, with exports for
+     * the same key translated in order. Mutations for the same row from different partitions are
+     * merged. The translator must be thread safe when this is set. Defaults to 1.
+     *
+     * @since 1.2.0
+     */
+    Options translationThreads(int threads);
+
+    /**
+     * When enabled, the mutations generated for a batch of exports are merged into a single
+     * mutation per row, and puts that are superseded by a put or delete for the same column with a
+     * later sequence number in the same batch are dropped. This assumes the Accumulo table only
+     * keeps the latest version of each column, which is the default. Defaults to false.
+     *
+     * @since 1.2.0
+     */
+    Options coalesceMutations(boolean enabled);
+
     void save(FluoConfiguration fluoConf);
   }
 
@@ -81,24 +149,112 @@ public class AccumuloExporter<K, V> implements Exporter<K, V> {
 
   public AccumuloExporter(String configId, SimpleConfiguration appConfig,
       AccumuloTranslator<K, V> translator) {
+    this(configId, appConfig, translator, null);
+  }
+
+  /**
+   * Same as {@link #AccumuloExporter(String, SimpleConfiguration, AccumuloTranslator)}, except
+   * metrics are reported about writing to Accumulo, which show when the batch writers shared by
+   * exporters are not keeping up. The names of the metrics start with
+   * {@code accumulo.export.<configId>.}, see docs/accumulo-export-queue.md for a list.
+   *
+   * @param metricsReporter Obtained from {@code ObserverProvider.Context.getMetricsReporter()}.
+   *        When null, no metrics are reported.
+   * @since 1.2.0
+   */
+  public AccumuloExporter(String configId, SimpleConfiguration appConfig,
+      AccumuloTranslator<K, V> translator, MetricsReporter metricsReporter) {
     AeFluentConfigurator cfg = AeFluentConfigurator.load(configId, appConfig);
-    this.writer =
-        AccumuloWriter.getInstance(cfg.getInstance(), cfg.getZookeepers(), cfg.getUser(),
-            cfg.getPassword(), cfg.getTable());
+    this.writer = AccumuloWriter.getInstance(cfg);
     this.translator = translator;
+    this.coalesce = cfg.getCoalesceMutations();
+    this.metrics = WriterMetrics.of(configId, metricsReporter);
+    if (cfg.getTranslationThreads() > 1) {
+      try {
+        this.translationPool = writer.getTranslationPool(cfg.getTranslationThreads());
+      } catch (RuntimeException e) {
+        AccumuloWriter.release(writer);
+        throw e;
+      }
+    }
+  }
+
+  private List<Mutation> translate(List<SequencedExport<K, V>> exports) {
+    ArrayList<Mutation> mutations = new ArrayList<>();
+    for (SequencedExport<K, V> export : exports) {
+      translator.translate(export, mutations::add);
+    }
+    return mutations;
+  }
+
+  private List<Mutation> translateParallel(Iterator<SequencedExport<K, V>> t) {
+    // exports for the same key must be translated in order, so partition on key
+    Map<K, List<SequencedExport<K, V>>> partitions = new LinkedHashMap<>();
+    while (t.hasNext()) {
+      SequencedExport<K, V> export = t.next();
+      partitions.computeIfAbsent(export.getKey(), k -> new ArrayList<>()).add(export);
+    }
+
+    if (partitions.size() == 1) {
+      return translate(partitions.values().iterator().next());
+    }
+
+    List<List<Mutation>> translated;
+    try {
+      translated =
+          translationPool.submit(
+              () -> partitions.values().parallelStream().map(this::translate)
+                  .collect(Collectors.toList())).get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+
+    ArrayList<Mutation> mutations = new ArrayList<>();
+    translated.forEach(mutations::addAll);
+    // coalescing also merges by row
+    return coalesce ? mutations : MutationMerger.mergeByRow(mutations);
   }
 
   @Override
   public void export(Iterator<SequencedExport<K, V>> t) {
-    ArrayList<Mutation> buffer = new ArrayList<>();
-    Consumer<Mutation> consumer = m -> buffer.add(m);
+    Preconditions.checkState(!closed, "Exporter is closed");
 
-    while (t.hasNext()) {
-      translator.translate(t.next(), consumer);
+    List<Mutation> buffer;
+
+    if (translationPool != null) {
+      buffer = translateParallel(t);
+    } else {
+      buffer = new ArrayList<>();
+      Consumer<Mutation> consumer = buffer::add;
+
+      while (t.hasNext()) {
+        translator.translate(t.next(), consumer);
+      }
+    }
+
+    if (coalesce) {
+      buffer = MutationMerger.coalesce(buffer);
     }
 
     if (buffer.size() > 0) {
-      writer.write(buffer);
+      writer.write(buffer, metrics);
+    }
+  }
+
+  /**
+   * Releases the Accumulo batch writers used by this exporter. The batch writers are flushed and
+   * closed once all exporters writing to the same table are closed. Call this when the Fluo
+   * application or observers using this exporter are stopped, for example when stopping MiniFluo in
+   * tests. This exporter can not export after it is closed. Calling this more than once has no
+   * effect.
+   *
+   * @since 1.2.0
+   */
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      closed = true;
+      AccumuloWriter.release(writer);
     }
   }
 }
@@ -21,7 +21,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
@@ -35,124 +38,345 @@ import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.client.ZooKeeperInstance;
 import org.apache.accumulo.core.client.security.tokens.PasswordToken;
 import org.apache.accumulo.core.data.Mutation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Writes mutations to Accumulo using a shared batch writer
+ * Writes mutations to Accumulo using batch writers shared by all exporters writing to the same
+ * table. Mutations from concurrent calls to {@link #write(Collection)} are gathered into batches
+ * and multiple batches can be flushing at the same time, so the next batch accumulates while the
+ * previous one flushes.
  *
  * @since 1.0.0
  */
 // intentionally package private
 class AccumuloWriter {
 
+  private static final Logger log = LoggerFactory.getLogger(AccumuloWriter.class);
+
+  private static final int MAX_QUEUED = 10000;
+
+  // the number of times a flush thread tries to create a batch writer before failing a batch
+  private static final int CREATE_ATTEMPTS = 5;
+  private static final long MAX_CREATE_BACKOFF_MS = 5000;
+
   private static class Mutations {
     List<Mutation> mutations;
     CountDownLatch cdl = new CountDownLatch(1);
+    volatile Exception exception = null;
+    // the time spent flushing the batch these mutations were part of
+    volatile long flushNanos = 0;
 
     Mutations(Collection<Mutation> mutations) {
       this.mutations = new ArrayList<>(mutations);
     }
   }
 
-  private static class ExportTask implements Runnable {
+  private class FlushTask implements Runnable {
 
+    // null after the batch writer rejected mutations, until it is created again
     private BatchWriter bw;
 
-    ExportTask(String instanceName, String zookeepers, String user, String password, String table)
-        throws TableNotFoundException, AccumuloException, AccumuloSecurityException {
-      ZooKeeperInstance zki =
-          new ZooKeeperInstance(new ClientConfiguration().withInstance(instanceName).withZkHosts(
-              zookeepers));
+    FlushTask() throws TableNotFoundException {
+      bw = conn.createBatchWriter(table, bwConfig);
+    }
 
-      // TODO need to close batch writer
-      Connector conn = zki.getConnector(user, new PasswordToken(password));
-      try {
-        bw = conn.createBatchWriter(table, new BatchWriterConfig());
-      } catch (TableNotFoundException tnfe) {
+    /**
+     * Creates a new batch writer if the previous one was closed, retrying with backoff.
+     */
+    private BatchWriter getBatchWriter() throws TableNotFoundException, InterruptedException {
+      long backoff = 100;
+      for (int attempt = 1; bw == null; attempt++) {
         try {
-          conn.tableOperations().create(table);
-        } catch (TableExistsException e) {
-          // nothing to do
+          bw = conn.createBatchWriter(table, bwConfig);
+        } catch (TableNotFoundException | RuntimeException e) {
+          if (attempt == CREATE_ATTEMPTS) {
+            log.error("Failed to create batch writer for table " + table
+                + ", failing the mutations waiting to be flushed", e);
+            throw e;
+          }
+          log.warn("Failed to create batch writer for table " + table + ", retrying", e);
+          Thread.sleep(backoff);
+          backoff = Math.min(backoff * 2, MAX_CREATE_BACKOFF_MS);
         }
+      }
+      return bw;
+    }
 
-        bw = conn.createBatchWriter(table, new BatchWriterConfig());
+    private void closeBatchWriter() {
+      if (bw != null) {
+        try {
+          bw.close();
+        } catch (MutationsRejectedException e) {
+          log.warn("Failed to close batch writer for table " + table, e);
+        }
+        bw = null;
       }
     }
 
-    @Override
-    public void run() {
+    private void flush(List<AccumuloWriter.Mutations> batch) throws InterruptedException {
+      long t1 = System.nanoTime();
+      try {
+        BatchWriter writer = getBatchWriter();
+        for (AccumuloWriter.Mutations ml : batch) {
+          writer.addMutations(ml.mutations);
+        }
 
-      ArrayList<AccumuloWriter.Mutations> exports = new ArrayList<>();
+        writer.flush();
+      } catch (MutationsRejectedException | TableNotFoundException | RuntimeException e) {
+        for (AccumuloWriter.Mutations ml : batch) {
+          ml.exception = e;
+        }
 
-      while (true) {
-        try {
-          exports.clear();
+        // a batch writer can not be used after it rejects mutations, a new one is created for the
+        // next batch
+        closeBatchWriter();
+      } catch (InterruptedException e) {
+        for (AccumuloWriter.Mutations ml : batch) {
+          ml.exception = e;
+        }
+        throw e;
+      } finally {
+        long flushNanos = System.nanoTime() - t1;
+        // notify all threads waiting after flushing
+        for (AccumuloWriter.Mutations ml : batch) {
+          ml.flushNanos = flushNanos;
+          ml.cdl.countDown();
+        }
+      }
+    }
 
-          // gather export from all threads that have placed an item on the queue
-          exports.add(exportQueue.take());
-          exportQueue.drainTo(exports);
+    @Override
+    public void run() {
 
-          for (AccumuloWriter.Mutations ml : exports) {
-            bw.addMutations(ml.mutations);
-          }
+      ArrayList<AccumuloWriter.Mutations> batch = new ArrayList<>();
 
-          bw.flush();
+      try {
+        while (!closed || !exportQueue.isEmpty()) {
+          batch.clear();
 
-          // notify all threads waiting after flushing
-          for (AccumuloWriter.Mutations ml : exports) {
-            ml.cdl.countDown();
+          // gather export from all threads that have placed an item on the queue
+          AccumuloWriter.Mutations first = exportQueue.poll(100, TimeUnit.MILLISECONDS);
+          if (first == null) {
+            continue;
           }
+          batch.add(first);
+          exportQueue.drainTo(batch);
 
-        } catch (InterruptedException | MutationsRejectedException e) {
-          throw new RuntimeException(e);
+          flush(batch);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        closeBatchWriter();
+        if (runningFlushes.decrementAndGet() == 0) {
+          // nothing is left to flush what is queued
+          failQueued();
         }
       }
     }
-
   }
 
-  private static LinkedBlockingQueue<AccumuloWriter.Mutations> exportQueue = null;
+  private final String table;
+  private final BatchWriterConfig bwConfig;
+  private final Connector conn;
 
-  private AccumuloWriter(String instanceName, String zookeepers, String user, String password,
-      String table) {
+  private final LinkedBlockingQueue<AccumuloWriter.Mutations> exportQueue =
+      new LinkedBlockingQueue<>(MAX_QUEUED);
+  private final List<Thread> flushThreads = new ArrayList<>();
+  // pools exporters use to translate in parallel, by number of threads
+  private final Map<Integer, ForkJoinPool> translationPools = new HashMap<>();
+  private final AtomicInteger runningFlushes = new AtomicInteger();
+  private volatile boolean closed = false;
+  // the number of exporters using this writer, guarded by the class lock
+  private int references = 0;
+  private String key;
 
-    // TODO: fix this write to static and remove findbugs max rank override in pom.xml
-    exportQueue = new LinkedBlockingQueue<>(10000);
+  private AccumuloWriter(AeFluentConfigurator cfg) {
+    this.table = cfg.getTable();
+    this.bwConfig = cfg.getBatchWriterConfig();
 
     try {
-      Thread queueProcessingTask =
-          new Thread(new ExportTask(instanceName, zookeepers, user, password, table));
-      queueProcessingTask.setDaemon(true);
-      queueProcessingTask.start();
-    } catch (Exception e) {
+      ZooKeeperInstance zki =
+          new ZooKeeperInstance(new ClientConfiguration().withInstance(cfg.getInstance())
+              .withZkHosts(cfg.getZookeepers()));
+      conn = zki.getConnector(cfg.getUser(), new PasswordToken(cfg.getPassword()));
+
+      if (!conn.tableOperations().exists(table)) {
+        try {
+          conn.tableOperations().create(table);
+        } catch (TableExistsException e) {
+          // nothing to do
+        }
+      }
+
+      for (int i = 0; i < cfg.getConcurrentFlushes(); i++) {
+        Thread flushThread = new Thread(new FlushTask(), "AccumuloWriter flush " + table + " " + i);
+        flushThread.setDaemon(true);
+        flushThreads.add(flushThread);
+      }
+    } catch (AccumuloException | AccumuloSecurityException | TableNotFoundException e) {
       throw new IllegalStateException(e);
     }
+
+    runningFlushes.set(flushThreads.size());
+    flushThreads.forEach(Thread::start);
   }
 
   private static Map<String, AccumuloWriter> exporters = new HashMap<>();
 
-  static synchronized AccumuloWriter getInstance(String instanceName, String zookeepers,
-      String user, String password, String table) {
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(AccumuloWriter::closeAll));
+  }
+
+  static synchronized AccumuloWriter getInstance(AeFluentConfigurator cfg) {
 
     String key =
-        instanceName + ":" + zookeepers + ":" + user + ":" + password.hashCode() + ":" + table;
+        cfg.getInstance() + ":" + cfg.getZookeepers() + ":" + cfg.getUser() + ":"
+            + cfg.getPassword().hashCode() + ":" + cfg.getTable() + ":"
+            + cfg.getConcurrentFlushes() + ":" + cfg.getMaxMemory() + ":" + cfg.getMaxLatency()
+            + ":" + cfg.getMaxWriteThreads();
 
     AccumuloWriter ret = exporters.get(key);
 
     if (ret == null) {
-      ret = new AccumuloWriter(instanceName, zookeepers, user, password, table);
+      ret = new AccumuloWriter(cfg);
+      ret.key = key;
       exporters.put(key, ret);
     }
 
+    ret.references++;
     return ret;
   }
 
-  void write(Collection<Mutation> mutations) {
+  /**
+   * Releases a writer obtained from {@link #getInstance(AeFluentConfigurator)}. When the last user
+   * of a writer releases it, the writer is flushed and closed. A later call to
+   * {@link #getInstance(AeFluentConfigurator)} creates a new writer.
+   */
+  static void release(AccumuloWriter writer) {
+    synchronized (AccumuloWriter.class) {
+      if (writer.references == 0 || --writer.references > 0) {
+        return;
+      }
+      exporters.remove(writer.key);
+    }
+
+    // close outside of the lock, so flushing does not block other exporters getting writers
+    writer.close();
+  }
+
+  /**
+   * Flushes and closes all writers. Called when the JVM shuts down, for writers that were not
+   * released.
+   */
+  static synchronized void closeAll() {
+    exporters.values().forEach(writer -> {
+      writer.references = 0;
+      writer.close();
+    });
+    exporters.clear();
+  }
+
+  private boolean isAvailable() {
+    return !closed && runningFlushes.get() > 0;
+  }
+
+  private IllegalStateException newUnavailableException() {
+    if (closed) {
+      return new IllegalStateException("Writer for table " + table + " is closed");
+    }
+    return new IllegalStateException("No flush threads are running for table " + table);
+  }
+
+  /**
+   * Fails all queued mutations, used once no flush thread will take them from the queue.
+   */
+  private void failQueued() {
+    AccumuloWriter.Mutations ml;
+    while ((ml = exportQueue.poll()) != null) {
+      ml.exception = newUnavailableException();
+      ml.cdl.countDown();
+    }
+  }
+
+  /**
+   * @return a pool for translating exports, shared by the exporters using this writer and shut down
+   *         when this writer is closed
+   */
+  synchronized ForkJoinPool getTranslationPool(int threads) {
+    if (closed) {
+      throw newUnavailableException();
+    }
+    return translationPools.computeIfAbsent(threads, ForkJoinPool::new);
+  }
+
+  /**
+   * Writes mutations and waits for them to be flushed.
+   *
+   * @param metrics reports on the progress of this write
+   */
+  void write(Collection<Mutation> mutations, WriterMetrics metrics) {
+    if (!isAvailable()) {
+      throw newUnavailableException();
+    }
+
+    long t1 = System.nanoTime();
     AccumuloWriter.Mutations work = new Mutations(mutations);
-    exportQueue.add(work);
     try {
+      metrics.queued(exportQueue.size());
+      if (!exportQueue.offer(work)) {
+        // the flush threads are not keeping up, so wait for space
+        while (!exportQueue.offer(work, 100, TimeUnit.MILLISECONDS)) {
+          if (!isAvailable()) {
+            throw newUnavailableException();
+          }
+        }
+        metrics.blocked(System.nanoTime() - t1);
+      }
+
+      // The writer may have been closed or lost its last flush thread after the check above and
+      // the queue drained before the work was added. In that case nothing will take it.
+      if (!isAvailable() && exportQueue.remove(work)) {
+        throw newUnavailableException();
+      }
+
       work.cdl.await();
     } catch (InterruptedException e) {
       throw new RuntimeException(e);
     }
+
+    if (work.exception != null) {
+      throw new RuntimeException(work.exception);
+    }
+
+    metrics.written(work.mutations.size(), work.flushNanos, System.nanoTime() - t1);
+  }
+
+  /**
+   * Waits for all queued mutations to be written and then closes the batch writers and the
+   * translation pools.
+   */
+  void close() {
+    closed = true;
+
+    for (Thread flushThread : flushThreads) {
+      try {
+        flushThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+
+    // fail anything queued after the flush threads exited
+    failQueued();
+
+    synchronized (this) {
+      translationPools.values().forEach(ForkJoinPool::shutdown);
+      translationPools.clear();
+    }
+
+    log.debug("Closed writer for table {}", table);
   }
 }
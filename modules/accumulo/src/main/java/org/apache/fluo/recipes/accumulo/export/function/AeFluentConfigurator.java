@@ -16,6 +16,10 @@
 package org.apache.fluo.recipes.accumulo.export.function;
 
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import org.apache.accumulo.core.client.BatchWriterConfig;
 
 import org.apache.fluo.api.config.FluoConfiguration;
 import org.apache.fluo.api.config.SimpleConfiguration;
@@ -33,9 +37,17 @@ class AeFluentConfigurator implements InstanceArgs, CredentialArgs, TableArgs, O
   private String user;
   private String password;
   private String table;
+  private Long maxMemory = null;
+  private Long maxLatency = null;
+  private Integer maxWriteThreads = null;
+  private Integer concurrentFlushes = null;
+  private Integer translationThreads = null;
+  private Boolean coalesceMutations = null;
 
   private static final String PREFIX = "recipes.accumulo.writer.";
 
+  static final int DEFAULT_CONCURRENT_FLUSHES = 1;
+
   AeFluentConfigurator(String id) {
     this.id = id;
   }
@@ -43,12 +55,70 @@ class AeFluentConfigurator implements InstanceArgs, CredentialArgs, TableArgs, O
   @Override
   public void save(FluoConfiguration fluoConf) {
     SimpleConfiguration appConfig = fluoConf.getAppConfiguration();
-    // TODO Auto-generated method stub
     appConfig.setProperty(PREFIX + id + ".instance", instance);
     appConfig.setProperty(PREFIX + id + ".zookeepers", zookeepers);
     appConfig.setProperty(PREFIX + id + ".user", user);
     appConfig.setProperty(PREFIX + id + ".password", password);
     appConfig.setProperty(PREFIX + id + ".table", table);
+    if (maxMemory != null) {
+      appConfig.setProperty(PREFIX + id + ".maxMemory", maxMemory);
+    }
+    if (maxLatency != null) {
+      appConfig.setProperty(PREFIX + id + ".maxLatency", maxLatency);
+    }
+    if (maxWriteThreads != null) {
+      appConfig.setProperty(PREFIX + id + ".maxWriteThreads", maxWriteThreads);
+    }
+    if (concurrentFlushes != null) {
+      appConfig.setProperty(PREFIX + id + ".concurrentFlushes", concurrentFlushes);
+    }
+    if (translationThreads != null) {
+      appConfig.setProperty(PREFIX + id + ".translationThreads", translationThreads);
+    }
+    if (coalesceMutations != null) {
+      appConfig.setProperty(PREFIX + id + ".coalesceMutations", coalesceMutations);
+    }
+  }
+
+  @Override
+  public Options batchWriterMaxMemory(long bytes) {
+    Preconditions.checkArgument(bytes > 0, "maxMemory is <= 0 : " + bytes);
+    this.maxMemory = bytes;
+    return this;
+  }
+
+  @Override
+  public Options batchWriterMaxLatency(long time, TimeUnit unit) {
+    Preconditions.checkArgument(time >= 0, "maxLatency is < 0 : " + time);
+    this.maxLatency = unit.toMillis(time);
+    return this;
+  }
+
+  @Override
+  public Options batchWriterMaxWriteThreads(int threads) {
+    Preconditions.checkArgument(threads > 0, "maxWriteThreads is <= 0 : " + threads);
+    this.maxWriteThreads = threads;
+    return this;
+  }
+
+  @Override
+  public Options concurrentFlushes(int flushes) {
+    Preconditions.checkArgument(flushes > 0, "concurrentFlushes is <= 0 : " + flushes);
+    this.concurrentFlushes = flushes;
+    return this;
+  }
+
+  @Override
+  public Options translationThreads(int threads) {
+    Preconditions.checkArgument(threads > 0, "translationThreads is <= 0 : " + threads);
+    this.translationThreads = threads;
+    return this;
+  }
+
+  @Override
+  public Options coalesceMutations(boolean enabled) {
+    this.coalesceMutations = enabled;
+    return this;
   }
 
   @Override
@@ -91,6 +161,44 @@ class AeFluentConfigurator implements InstanceArgs, CredentialArgs, TableArgs, O
     return table;
   }
 
+  Long getMaxMemory() {
+    return maxMemory;
+  }
+
+  Long getMaxLatency() {
+    return maxLatency;
+  }
+
+  Integer getMaxWriteThreads() {
+    return maxWriteThreads;
+  }
+
+  int getConcurrentFlushes() {
+    return concurrentFlushes == null ? DEFAULT_CONCURRENT_FLUSHES : concurrentFlushes;
+  }
+
+  int getTranslationThreads() {
+    return translationThreads == null ? 1 : translationThreads;
+  }
+
+  boolean getCoalesceMutations() {
+    return coalesceMutations != null && coalesceMutations;
+  }
+
+  BatchWriterConfig getBatchWriterConfig() {
+    BatchWriterConfig bwConfig = new BatchWriterConfig();
+    if (maxMemory != null) {
+      bwConfig.setMaxMemory(maxMemory);
+    }
+    if (maxLatency != null) {
+      bwConfig.setMaxLatency(maxLatency, TimeUnit.MILLISECONDS);
+    }
+    if (maxWriteThreads != null) {
+      bwConfig.setMaxWriteThreads(maxWriteThreads);
+    }
+    return bwConfig;
+  }
+
   public static AeFluentConfigurator load(String id, SimpleConfiguration config) {
     AeFluentConfigurator aefc = new AeFluentConfigurator(id);
     aefc.instance = config.getString(PREFIX + id + ".instance");
@@ -98,6 +206,24 @@ class AeFluentConfigurator implements InstanceArgs, CredentialArgs, TableArgs, O
     aefc.user = config.getString(PREFIX + id + ".user");
     aefc.password = config.getString(PREFIX + id + ".password");
     aefc.table = config.getString(PREFIX + id + ".table");
+    if (config.containsKey(PREFIX + id + ".maxMemory")) {
+      aefc.maxMemory = config.getLong(PREFIX + id + ".maxMemory");
+    }
+    if (config.containsKey(PREFIX + id + ".maxLatency")) {
+      aefc.maxLatency = config.getLong(PREFIX + id + ".maxLatency");
+    }
+    if (config.containsKey(PREFIX + id + ".maxWriteThreads")) {
+      aefc.maxWriteThreads = config.getInt(PREFIX + id + ".maxWriteThreads");
+    }
+    if (config.containsKey(PREFIX + id + ".concurrentFlushes")) {
+      aefc.concurrentFlushes = config.getInt(PREFIX + id + ".concurrentFlushes");
+    }
+    if (config.containsKey(PREFIX + id + ".translationThreads")) {
+      aefc.translationThreads = config.getInt(PREFIX + id + ".translationThreads");
+    }
+    if (config.containsKey(PREFIX + id + ".coalesceMutations")) {
+      aefc.coalesceMutations = config.getBoolean(PREFIX + id + ".coalesceMutations");
+    }
 
     return aefc;
   }
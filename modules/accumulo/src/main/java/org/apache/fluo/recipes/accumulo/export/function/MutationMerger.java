@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.accumulo.export.function;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.security.ColumnVisibility;
+
+// intentionally package private
+class MutationMerger {
+
+  private static void copy(ColumnUpdate cu, Mutation dest) {
+    byte[] cf = cu.getColumnFamily();
+    byte[] cq = cu.getColumnQualifier();
+    ColumnVisibility cv = new ColumnVisibility(cu.getColumnVisibility());
+
+    if (cu.isDeleted()) {
+      if (cu.hasTimestamp()) {
+        dest.putDelete(cf, cq, cv, cu.getTimestamp());
+      } else {
+        dest.putDelete(cf, cq, cv);
+      }
+    } else {
+      if (cu.hasTimestamp()) {
+        dest.put(cf, cq, cv, cu.getTimestamp(), cu.getValue());
+      } else {
+        dest.put(cf, cq, cv, cu.getValue());
+      }
+    }
+  }
+
+  /**
+   * Merges mutations for the same row into a single mutation, keeping the order of column updates.
+   * Rows are output in the order they are first seen.
+   */
+  static List<Mutation> mergeByRow(List<Mutation> mutations) {
+    Map<ByteBuffer, List<Mutation>> rows = new LinkedHashMap<>();
+    for (Mutation m : mutations) {
+      rows.computeIfAbsent(ByteBuffer.wrap(m.getRow()), r -> new ArrayList<>(1)).add(m);
+    }
+
+    if (rows.size() == mutations.size()) {
+      return mutations;
+    }
+
+    List<Mutation> merged = new ArrayList<>(rows.size());
+    for (List<Mutation> rowMutations : rows.values()) {
+      if (rowMutations.size() == 1) {
+        merged.add(rowMutations.get(0));
+      } else {
+        Mutation m = new Mutation(rowMutations.get(0).getRow());
+        for (Mutation rm : rowMutations) {
+          rm.getUpdates().forEach(cu -> copy(cu, m));
+        }
+        merged.add(m);
+      }
+    }
+
+    return merged;
+  }
+
+  private static List<ByteBuffer> getColumn(ColumnUpdate cu) {
+    return Arrays.asList(ByteBuffer.wrap(cu.getColumnFamily()),
+        ByteBuffer.wrap(cu.getColumnQualifier()), ByteBuffer.wrap(cu.getColumnVisibility()));
+  }
+
+  private static boolean isSuperseded(ColumnUpdate cu, Map<List<ByteBuffer>, Long> maxTimestamps) {
+    return !cu.isDeleted() && cu.hasTimestamp()
+        && cu.getTimestamp() < maxTimestamps.get(getColumn(cu));
+  }
+
+  /**
+   * Merges mutations for the same row into a single mutation and drops puts that are hidden by a
+   * put or delete with a later timestamp for the same column. Export sequence numbers are used as
+   * timestamps, so this drops puts superseded by later exports. Deletes and updates without a
+   * timestamp are always kept.
+   */
+  static List<Mutation> coalesce(List<Mutation> mutations) {
+    Map<ByteBuffer, List<Mutation>> rows = new LinkedHashMap<>();
+    for (Mutation m : mutations) {
+      rows.computeIfAbsent(ByteBuffer.wrap(m.getRow()), r -> new ArrayList<>(1)).add(m);
+    }
+
+    List<Mutation> coalesced = new ArrayList<>(rows.size());
+    Map<List<ByteBuffer>, Long> maxTimestamps = new HashMap<>();
+
+    for (List<Mutation> rowMutations : rows.values()) {
+      maxTimestamps.clear();
+      boolean sameColumn = false;
+
+      for (Mutation rm : rowMutations) {
+        for (ColumnUpdate cu : rm.getUpdates()) {
+          if (cu.hasTimestamp()) {
+            List<ByteBuffer> col = getColumn(cu);
+            Long prev = maxTimestamps.get(col);
+            if (prev != null) {
+              sameColumn = true;
+            }
+            if (prev == null || prev < cu.getTimestamp()) {
+              maxTimestamps.put(col, cu.getTimestamp());
+            }
+          }
+        }
+      }
+
+      if (rowMutations.size() == 1 && !sameColumn) {
+        coalesced.add(rowMutations.get(0));
+        continue;
+      }
+
+      Mutation m = new Mutation(rowMutations.get(0).getRow());
+      for (Mutation rm : rowMutations) {
+        for (ColumnUpdate cu : rm.getUpdates()) {
+          if (!isSuperseded(cu, maxTimestamps)) {
+            copy(cu, m);
+          }
+        }
+      }
+
+      if (m.size() > 0) {
+        coalesced.add(m);
+      }
+    }
+
+    return coalesced;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.accumulo.export.function;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fluo.api.metrics.Histogram;
+import org.apache.fluo.api.metrics.Meter;
+import org.apache.fluo.api.metrics.MetricsReporter;
+import org.apache.fluo.api.metrics.Timer;
+
+/**
+ * Reports how writes from an exporter to Accumulo proceed, which shows when the shared batch
+ * writers are not keeping up. All metric names start with {@code accumulo.export.<configId>.}
+ *
+ * <ul>
+ * <li>{@code mutations} : meter of mutations written
+ * <li>{@code queued} : histogram of the number of writes waiting to be flushed when a write is
+ * queued
+ * <li>{@code blocked} : meter of writes that had to wait for space in the queue
+ * <li>{@code blockedTime} : timer of the time writes waited for space in the queue
+ * <li>{@code flushTime} : timer of flushing the batch each write was part of
+ * <li>{@code writeTime} : timer of writes, from queuing until the mutations were flushed
+ * </ul>
+ */
+// intentionally package private
+class WriterMetrics {
+
+  static final WriterMetrics NONE = new WriterMetrics();
+
+  private final boolean enabled;
+  private final Meter mutations;
+  private final Histogram queued;
+  private final Meter blocked;
+  private final Timer blockedTime;
+  private final Timer flushTime;
+  private final Timer writeTime;
+
+  private WriterMetrics() {
+    enabled = false;
+    mutations = null;
+    queued = null;
+    blocked = null;
+    blockedTime = null;
+    flushTime = null;
+    writeTime = null;
+  }
+
+  WriterMetrics(String configId, MetricsReporter reporter) {
+    String prefix = "accumulo.export." + configId + ".";
+    enabled = true;
+    mutations = reporter.meter(prefix + "mutations");
+    queued = reporter.histogram(prefix + "queued");
+    blocked = reporter.meter(prefix + "blocked");
+    blockedTime = reporter.timer(prefix + "blockedTime");
+    flushTime = reporter.timer(prefix + "flushTime");
+    writeTime = reporter.timer(prefix + "writeTime");
+  }
+
+  static WriterMetrics of(String configId, MetricsReporter reporter) {
+    return reporter == null ? NONE : new WriterMetrics(configId, reporter);
+  }
+
+  void queued(int waiting) {
+    if (enabled) {
+      queued.update(waiting);
+    }
+  }
+
+  void blocked(long nanos) {
+    if (enabled) {
+      blocked.mark();
+      blockedTime.update(nanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  void written(int count, long flushNanos, long writeNanos) {
+    if (enabled) {
+      mutations.mark(count);
+      flushTime.update(flushNanos, TimeUnit.NANOSECONDS);
+      writeTime.update(writeNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+}
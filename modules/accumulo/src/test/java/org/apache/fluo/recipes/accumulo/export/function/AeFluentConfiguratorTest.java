@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.accumulo.export.function;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AeFluentConfiguratorTest {
+  @Test
+  public void testOptions() {
+    FluoConfiguration conf = new FluoConfiguration();
+
+    AccumuloExporter.configure("AE1").instance("i1", "zk1").credentials("u1", "p1").table("t1")
+        .save(conf);
+    AccumuloExporter.configure("AE2").instance("i2", "zk2").credentials("u2", "p2").table("t2")
+        .batchWriterMaxMemory(1000000).batchWriterMaxLatency(3, TimeUnit.SECONDS)
+        .batchWriterMaxWriteThreads(7).concurrentFlushes(5).translationThreads(3)
+        .coalesceMutations(true).save(conf);
+
+    AeFluentConfigurator cfg1 = AeFluentConfigurator.load("AE1", conf.getAppConfiguration());
+    Assert.assertEquals("i1", cfg1.getInstance());
+    Assert.assertEquals("zk1", cfg1.getZookeepers());
+    Assert.assertEquals("u1", cfg1.getUser());
+    Assert.assertEquals("p1", cfg1.getPassword());
+    Assert.assertEquals("t1", cfg1.getTable());
+    Assert.assertEquals(AeFluentConfigurator.DEFAULT_CONCURRENT_FLUSHES,
+        cfg1.getConcurrentFlushes());
+    Assert.assertEquals(1, cfg1.getTranslationThreads());
+    Assert.assertFalse(cfg1.getCoalesceMutations());
+    BatchWriterConfig defaults = new BatchWriterConfig();
+    Assert.assertEquals(defaults.getMaxMemory(), cfg1.getBatchWriterConfig().getMaxMemory());
+    Assert.assertEquals(defaults.getMaxWriteThreads(), cfg1.getBatchWriterConfig()
+        .getMaxWriteThreads());
+
+    AeFluentConfigurator cfg2 = AeFluentConfigurator.load("AE2", conf.getAppConfiguration());
+    Assert.assertEquals("t2", cfg2.getTable());
+    Assert.assertEquals(5, cfg2.getConcurrentFlushes());
+    Assert.assertEquals(3, cfg2.getTranslationThreads());
+    Assert.assertTrue(cfg2.getCoalesceMutations());
+    BatchWriterConfig bwc = cfg2.getBatchWriterConfig();
+    Assert.assertEquals(1000000, bwc.getMaxMemory());
+    Assert.assertEquals(3000, bwc.getMaxLatency(TimeUnit.MILLISECONDS));
+    Assert.assertEquals(7, bwc.getMaxWriteThreads());
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.accumulo.export.function;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MutationMergerTest {
+
+  @Test
+  public void testMergeByRow() {
+    Mutation m1 = new Mutation("r1");
+    m1.put("f1", "q1", 5, "v1");
+    Mutation m2 = new Mutation("r2");
+    m2.put("f1", "q1", 5, "v2");
+    Mutation m3 = new Mutation("r1");
+    m3.putDelete("f1", "q2", new ColumnVisibility("A&B"), 6);
+    m3.put("f2", "q1", "v3");
+
+    List<Mutation> merged = MutationMerger.mergeByRow(Arrays.asList(m1, m2, m3));
+
+    Mutation expected = new Mutation("r1");
+    expected.put("f1", "q1", 5, "v1");
+    expected.putDelete("f1", "q2", new ColumnVisibility("A&B"), 6);
+    expected.put("f2", "q1", "v3");
+
+    Assert.assertEquals(Arrays.asList(expected, m2), merged);
+  }
+
+  @Test
+  public void testCoalesce() {
+    Mutation m1 = new Mutation("r1");
+    m1.put("f1", "q1", 5, "v1");
+    m1.put("f1", "q2", 5, "v2");
+    m1.putDelete("f1", "q3", 5);
+    Mutation m2 = new Mutation("r2");
+    m2.put("f1", "q1", 6, "v3");
+    Mutation m3 = new Mutation("r1");
+    m3.put("f1", "q1", 7, "v4");
+    m3.putDelete("f1", "q2", 7);
+    m3.put("f1", "q3", 7, "v5");
+    m3.put("f1", "q2", new ColumnVisibility("A"), 3, "v6");
+    Mutation m4 = new Mutation("r2");
+    m4.put("f1", "q1", 4, "v7");
+
+    List<Mutation> coalesced = MutationMerger.coalesce(Arrays.asList(m1, m2, m3, m4));
+
+    Mutation expected1 = new Mutation("r1");
+    expected1.putDelete("f1", "q3", 5);
+    expected1.put("f1", "q1", 7, "v4");
+    expected1.putDelete("f1", "q2", 7);
+    expected1.put("f1", "q3", 7, "v5");
+    expected1.put("f1", "q2", new ColumnVisibility("A"), 3, "v6");
+
+    Mutation expected2 = new Mutation("r2");
+    expected2.put("f1", "q1", 6, "v3");
+
+    Assert.assertEquals(Arrays.asList(expected1, expected2), coalesced);
+  }
+
+  @Test
+  public void testDistinctRows() {
+    Mutation m1 = new Mutation("r1");
+    m1.put("f1", "q1", 5, "v1");
+    Mutation m2 = new Mutation("r2");
+    m2.put("f1", "q1", 5, "v2");
+
+    List<Mutation> mutations = Arrays.asList(m1, m2);
+    Assert.assertSame(mutations, MutationMerger.mergeByRow(mutations));
+  }
+}
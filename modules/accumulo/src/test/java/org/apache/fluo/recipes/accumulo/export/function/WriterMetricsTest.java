@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.accumulo.export.function;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fluo.recipes.core.combine.it.RecordingReporter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WriterMetricsTest {
+
+  @Test
+  public void testMetrics() {
+    Assert.assertSame(WriterMetrics.NONE, WriterMetrics.of("ae1", null));
+    // does nothing
+    WriterMetrics.NONE.written(5, 1, 1);
+
+    RecordingReporter reporter = new RecordingReporter();
+    WriterMetrics metrics = WriterMetrics.of("ae1", reporter);
+
+    metrics.queued(3);
+    metrics.queued(4);
+    metrics.blocked(TimeUnit.MILLISECONDS.toNanos(20));
+    metrics.written(5, TimeUnit.MILLISECONDS.toNanos(7), TimeUnit.MILLISECONDS.toNanos(30));
+    metrics.written(2, TimeUnit.MILLISECONDS.toNanos(3), TimeUnit.MILLISECONDS.toNanos(4));
+
+    Assert.assertEquals(7, reporter.getSum("accumulo.export.ae1.queued"));
+    Assert.assertEquals(1, reporter.getSum("accumulo.export.ae1.blocked"));
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(20),
+        reporter.getSum("accumulo.export.ae1.blockedTime"));
+    Assert.assertEquals(7, reporter.getSum("accumulo.export.ae1.mutations"));
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(10),
+        reporter.getSum("accumulo.export.ae1.flushTime"));
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(34),
+        reporter.getSum("accumulo.export.ae1.writeTime"));
+  }
+}
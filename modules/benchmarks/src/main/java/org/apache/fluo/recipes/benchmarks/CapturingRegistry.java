@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.benchmarks;
+
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.observer.Observer;
+import org.apache.fluo.api.observer.Observer.NotificationType;
+import org.apache.fluo.api.observer.ObserverProvider;
+import org.apache.fluo.api.observer.StringObserver;
+
+/**
+ * Captures the first observer a recipe registers so benchmarks can drive it directly against an
+ * {@link InMemoryTransactionBase}. Recipes register the observer that processes queued data first,
+ * followed by any observers used for maintenance.
+ */
+public class CapturingRegistry implements ObserverProvider.Registry {
+
+  private Observer observer;
+  private Column column;
+
+  private class Registry implements ObserverProvider.Registry.ObserverArgument,
+      ObserverProvider.Registry.IdentityOption {
+
+    private final Column observedColumn;
+
+    Registry(Column observedColumn) {
+      this.observedColumn = observedColumn;
+    }
+
+    private void capture(Observer obs) {
+      if (observer == null) {
+        observer = obs;
+        column = observedColumn;
+      }
+    }
+
+    @Override
+    public ObserverArgument withId(String alias) {
+      return this;
+    }
+
+    @Override
+    public void useObserver(Observer obs) {
+      capture(obs);
+    }
+
+    @Override
+    public void useStrObserver(StringObserver obs) {
+      capture(obs);
+    }
+  }
+
+  @Override
+  public IdentityOption forColumn(Column observedColumn, NotificationType ntfyType) {
+    return new Registry(observedColumn);
+  }
+
+  public Observer getObserver() {
+    return observer;
+  }
+
+  public Column getColumn() {
+    return column;
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.RowColumn;
+import org.apache.fluo.api.observer.Observer;
+import org.apache.fluo.recipes.core.combine.CombineQueue;
+import org.apache.fluo.recipes.core.combine.SummingCombiner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks queueing updates on a {@link CombineQueue} and processing a bucket of queued updates
+ * with the observer the combine queue registers. The process benchmark processes every notified
+ * bucket once per invocation, where each bucket contains updates from multiple transactions for
+ * keys that already have a current value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CombineQueueBenchmark {
+
+  private static final String CQ_ID = "wc";
+
+  @Param({"17", "1009"})
+  int numBuckets;
+
+  @Param({"100", "10000"})
+  int updatesPerTx;
+
+  @Param({"65536", "4194304"})
+  long bufferSize;
+
+  /**
+   * The number of transactions whose updates are queued before processing.
+   */
+  @Param({"10"})
+  int txPerProcess;
+
+  private CombineQueue<String, Long> combineQ;
+  private Observer observer;
+  private Column notifyColumn;
+
+  private Map<String, Long> updates;
+  private NavigableMap<RowColumn, Bytes> queuedData;
+  private List<Bytes> notifiedRows;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    FluoConfiguration fluoConfig = new FluoConfiguration();
+    CombineQueue.configure(CQ_ID).keyType(String.class).valueType(Long.class).buckets(numBuckets)
+        .bufferSize(bufferSize).save(fluoConfig);
+
+    combineQ = CombineQueue.getInstance(CQ_ID, fluoConfig.getAppConfiguration());
+
+    CapturingRegistry registry = new CapturingRegistry();
+    combineQ.registerObserver(registry, new SummingCombiner<>(), (tx, changes) -> {
+    });
+    observer = registry.getObserver();
+    notifyColumn = registry.getColumn();
+
+    Random rand = new Random(42);
+    int numKeys = updatesPerTx * 2;
+
+    updates = new HashMap<>();
+    while (updates.size() < updatesPerTx) {
+      updates.put(String.format("k%08d", rand.nextInt(numKeys)), (long) rand.nextInt(100));
+    }
+
+    // Queue updates and process them once so that keys have a current value, then queue more
+    // updates that will be processed by the benchmark.
+    TreeMap<RowColumn, Bytes> data = new TreeMap<>();
+    long ts = 1;
+    ts = queueUpdates(data, rand, numKeys, ts);
+    for (Bytes row : notifiedRows) {
+      InMemoryTransactionBase tx = new InMemoryTransactionBase(data, ts++);
+      observer.process(tx, row, notifyColumn);
+      tx.applyTo(data);
+    }
+    queueUpdates(data, rand, numKeys, ts);
+
+    queuedData = Collections.unmodifiableNavigableMap(data);
+  }
+
+  private long queueUpdates(TreeMap<RowColumn, Bytes> data, Random rand, int numKeys, long ts) {
+    List<Bytes> rows = new ArrayList<>();
+    for (int i = 0; i < txPerProcess; i++) {
+      Map<String, Long> txUpdates = new HashMap<>();
+      while (txUpdates.size() < updatesPerTx) {
+        txUpdates.put(String.format("k%08d", rand.nextInt(numKeys)), (long) rand.nextInt(100));
+      }
+
+      InMemoryTransactionBase tx = new InMemoryTransactionBase(ts++);
+      combineQ.addAll(tx, txUpdates);
+      tx.applyTo(data);
+      tx.getWeakNotifications().forEach(rc -> rows.add(rc.getRow()));
+    }
+    notifiedRows = new ArrayList<>(new TreeSet<>(rows));
+    return ts;
+  }
+
+  @Benchmark
+  public InMemoryTransactionBase addAll() {
+    InMemoryTransactionBase tx = new InMemoryTransactionBase(1);
+    combineQ.addAll(tx, updates);
+    return tx;
+  }
+
+  @Benchmark
+  public int process() throws Exception {
+    int mutations = 0;
+    for (Bytes row : notifiedRows) {
+      InMemoryTransactionBase tx = new InMemoryTransactionBase(queuedData, Long.MAX_VALUE);
+      observer.process(tx, row, notifyColumn);
+      mutations += tx.getMutationCount();
+    }
+    return mutations;
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.RowColumn;
+import org.apache.fluo.api.observer.Observer;
+import org.apache.fluo.recipes.core.export.Export;
+import org.apache.fluo.recipes.core.export.ExportQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks adding data to an {@link ExportQueue} and processing queued data with the observer the
+ * export queue registers. The process benchmark processes every notified bucket once per invocation
+ * using an exporter that only reads what it is passed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExportQueueBenchmark {
+
+  private static final String EQ_ID = "eq";
+
+  @Param({"17", "1009"})
+  int numBuckets;
+
+  @Param({"100", "10000"})
+  int exportsPerTx;
+
+  @Param({"65536", "4194304"})
+  long bufferSize;
+
+  @Param({"100"})
+  int valueSize;
+
+  /**
+   * The number of transactions whose exports are queued before processing.
+   */
+  @Param({"10"})
+  int txPerProcess;
+
+  private ExportQueue<String, String> exportQ;
+  private Observer observer;
+  private Column notifyColumn;
+  private long exported;
+
+  private List<Export<String, String>> exports;
+  private NavigableMap<RowColumn, Bytes> queuedData;
+  private List<Bytes> notifiedRows;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    FluoConfiguration fluoConfig = new FluoConfiguration();
+    ExportQueue.configure(EQ_ID).keyType(String.class).valueType(String.class).buckets(numBuckets)
+        .bufferSize(bufferSize).save(fluoConfig);
+
+    exportQ = ExportQueue.getInstance(EQ_ID, fluoConfig.getAppConfiguration());
+
+    CapturingRegistry registry = new CapturingRegistry();
+    exportQ.registerObserver(registry, iter -> {
+      while (iter.hasNext()) {
+        exported += iter.next().getSequence();
+      }
+    });
+    observer = registry.getObserver();
+    notifyColumn = registry.getColumn();
+
+    Random rand = new Random(42);
+    exports = genExports(rand);
+
+    TreeMap<RowColumn, Bytes> data = new TreeMap<>();
+    TreeSet<Bytes> rows = new TreeSet<>();
+    for (int i = 0; i < txPerProcess; i++) {
+      InMemoryTransactionBase tx = new InMemoryTransactionBase(i + 1);
+      exportQ.addAll(tx, genExports(rand).iterator());
+      tx.applyTo(data);
+      tx.getWeakNotifications().forEach(rc -> rows.add(rc.getRow()));
+    }
+
+    queuedData = Collections.unmodifiableNavigableMap(data);
+    notifiedRows = new ArrayList<>(rows);
+  }
+
+  private List<Export<String, String>> genExports(Random rand) {
+    List<Export<String, String>> ret = new ArrayList<>(exportsPerTx);
+    char[] value = new char[valueSize];
+    for (int i = 0; i < exportsPerTx; i++) {
+      for (int j = 0; j < value.length; j++) {
+        value[j] = (char) ('a' + rand.nextInt(26));
+      }
+      ret.add(new Export<>(String.format("k%08d", rand.nextInt(exportsPerTx * 10)), new String(
+          value)));
+    }
+    return ret;
+  }
+
+  @Benchmark
+  public InMemoryTransactionBase addAll() {
+    InMemoryTransactionBase tx = new InMemoryTransactionBase(1);
+    exportQ.addAll(tx, exports.iterator());
+    return tx;
+  }
+
+  @Benchmark
+  public long process() throws Exception {
+    for (Bytes row : notifiedRows) {
+      InMemoryTransactionBase tx = new InMemoryTransactionBase(queuedData, Long.MAX_VALUE);
+      observer.process(tx, row, notifyColumn);
+    }
+    return exported;
+  }
+}
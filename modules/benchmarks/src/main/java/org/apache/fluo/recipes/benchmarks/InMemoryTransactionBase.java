@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.fluo.api.client.AbstractTransactionBase;
+import org.apache.fluo.api.client.scanner.CellScanner;
+import org.apache.fluo.api.client.scanner.RowScannerBuilder;
+import org.apache.fluo.api.client.scanner.ScannerBuilder;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.RowColumn;
+import org.apache.fluo.api.data.RowColumnValue;
+import org.apache.fluo.api.data.Span;
+
+/**
+ * An in memory transaction used to benchmark recipes without a Fluo instance. Reads are serviced
+ * from an immutable sorted snapshot, which makes it possible to run the same transaction over and
+ * over against the same data. Writes are buffered in the transaction and can be folded into a new
+ * snapshot using {@link #applyTo(NavigableMap)}.
+ */
+public class InMemoryTransactionBase extends AbstractTransactionBase {
+
+  private final NavigableMap<RowColumn, Bytes> snapshot;
+  private final long startTs;
+
+  private final Map<RowColumn, Bytes> sets = new HashMap<>();
+  private final Set<RowColumn> deletes = new HashSet<>();
+  private final Set<RowColumn> weakNotifications = new HashSet<>();
+
+  public InMemoryTransactionBase(NavigableMap<RowColumn, Bytes> snapshot, long startTs) {
+    this.snapshot = snapshot;
+    this.startTs = startTs;
+  }
+
+  public InMemoryTransactionBase(long startTs) {
+    this(Collections.unmodifiableNavigableMap(new TreeMap<>()), startTs);
+  }
+
+  @Override
+  public Bytes get(Bytes row, Column column) {
+    return snapshot.get(new RowColumn(row, column));
+  }
+
+  @Override
+  public Map<Column, Bytes> get(Bytes row, Set<Column> columns) {
+    Map<Column, Bytes> ret = new HashMap<>();
+    for (Column column : columns) {
+      Bytes val = get(row, column);
+      if (val != null) {
+        ret.put(column, val);
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public Map<Bytes, Map<Column, Bytes>> get(Collection<Bytes> rows, Set<Column> columns) {
+    Map<Bytes, Map<Column, Bytes>> ret = new HashMap<>();
+    for (Bytes row : rows) {
+      Map<Column, Bytes> rowData = get(row, columns);
+      if (!rowData.isEmpty()) {
+        ret.put(row, rowData);
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public Map<RowColumn, Bytes> get(Collection<RowColumn> rowColumns) {
+    Map<RowColumn, Bytes> ret = new HashMap<>();
+    for (RowColumn rc : rowColumns) {
+      Bytes val = snapshot.get(rc);
+      if (val != null) {
+        ret.put(rc, val);
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public ScannerBuilder scanner() {
+    return new InMemoryScannerBuilder();
+  }
+
+  @Override
+  public long getStartTimestamp() {
+    return startTs;
+  }
+
+  @Override
+  public void setWeakNotification(Bytes row, Column col) {
+    weakNotifications.add(new RowColumn(row, col));
+  }
+
+  @Override
+  public void set(Bytes row, Column col, Bytes value) {
+    RowColumn rc = new RowColumn(row, col);
+    deletes.remove(rc);
+    sets.put(rc, value);
+  }
+
+  @Override
+  public void delete(Bytes row, Column col) {
+    RowColumn rc = new RowColumn(row, col);
+    sets.remove(rc);
+    deletes.add(rc);
+  }
+
+  /**
+   * @return the row columns that had a weak notification set by this transaction
+   */
+  public Set<RowColumn> getWeakNotifications() {
+    return Collections.unmodifiableSet(weakNotifications);
+  }
+
+  /**
+   * @return the number of sets and deletes buffered by this transaction
+   */
+  public int getMutationCount() {
+    return sets.size() + deletes.size();
+  }
+
+  /**
+   * Applies the sets and deletes buffered by this transaction to the passed in map.
+   */
+  public void applyTo(NavigableMap<RowColumn, Bytes> data) {
+    for (RowColumn rc : deletes) {
+      data.remove(rc);
+    }
+    data.putAll(sets);
+  }
+
+  private class InMemoryScannerBuilder implements ScannerBuilder {
+
+    private Span span = new Span();
+    private Set<Column> columns = Collections.emptySet();
+
+    @Override
+    public ScannerBuilder over(Span span) {
+      this.span = span;
+      return this;
+    }
+
+    @Override
+    public ScannerBuilder fetch(Column... columns) {
+      return fetch(Arrays.asList(columns));
+    }
+
+    @Override
+    public ScannerBuilder fetch(Collection<Column> columns) {
+      this.columns = new HashSet<>(columns);
+      return this;
+    }
+
+    @Override
+    public CellScanner build() {
+      NavigableMap<RowColumn, Bytes> range = snapshot;
+      if (!span.getStart().equals(RowColumn.EMPTY)) {
+        range = range.tailMap(span.getStart(), span.isStartInclusive());
+      }
+      if (!span.getEnd().equals(RowColumn.EMPTY)) {
+        range = range.headMap(span.getEnd(), span.isEndInclusive());
+      }
+
+      final NavigableMap<RowColumn, Bytes> cells = range;
+      final Set<Column> fetchColumns = columns;
+
+      return () -> cells.entrySet().stream()
+          .filter(e -> fetchColumns.isEmpty() || fetchColumns.contains(e.getKey().getColumn()))
+          .map(e -> new RowColumnValue(e.getKey().getRow(), e.getKey().getColumn(), e.getValue()))
+          .iterator();
+    }
+
+    @Override
+    public RowScannerBuilder byRow() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.recipes.core.data.RowHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks adding and removing hashes from rows with {@link RowHasher}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RowHasherBenchmark {
+
+  private RowHasher rowHasher;
+  private String row;
+  private Bytes rowBytes;
+  private Bytes hashedRow;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    rowHasher = new RowHasher("p");
+    row = "http://www.example.com/a/b/c/index.html";
+    rowBytes = Bytes.of(row);
+    hashedRow = rowHasher.addHash(row);
+  }
+
+  @Benchmark
+  public Bytes addHashString() {
+    return rowHasher.addHash(row);
+  }
+
+  @Benchmark
+  public Bytes addHashBytes() {
+    return rowHasher.addHash(rowBytes);
+  }
+
+  @Benchmark
+  public Bytes removeHash() {
+    return rowHasher.removeHash(hashedRow);
+  }
+}
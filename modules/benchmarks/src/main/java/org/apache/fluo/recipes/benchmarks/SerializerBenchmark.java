@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+import org.apache.fluo.recipes.kryo.KryoSimplerSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks serializing and deserializing the kinds of objects commonly stored in combine and
+ * export queues using {@link KryoSimplerSerializer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializerBenchmark {
+
+  /**
+   * A small object with a mix of field types.
+   */
+  public static class Document {
+    public String uri;
+    public long timestamp;
+    public int refCount;
+    public String content;
+
+    public Document() {}
+
+    Document(String uri, long timestamp, int refCount, String content) {
+      this.uri = uri;
+      this.timestamp = timestamp;
+      this.refCount = refCount;
+      this.content = content;
+    }
+  }
+
+  @Param({"Long", "String", "Document"})
+  String type;
+
+  private SimpleSerializer serializer;
+  private Object obj;
+  private Class<?> clazz;
+  private byte[] serialized;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    serializer = SimpleSerializer.getInstance(new FluoConfiguration().getAppConfiguration());
+
+    Random rand = new Random(42);
+    switch (type) {
+      case "Long":
+        obj = rand.nextLong();
+        break;
+      case "String":
+        obj = "http://www.example.com/" + Long.toHexString(rand.nextLong());
+        break;
+      case "Document":
+        obj =
+            new Document("http://www.example.com/" + Long.toHexString(rand.nextLong()),
+                rand.nextLong(), rand.nextInt(1000), Long.toString(rand.nextLong(), 36));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown type " + type);
+    }
+
+    clazz = obj.getClass();
+    serialized = serializer.serialize(obj);
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return serializer.serialize(obj);
+  }
+
+  @Benchmark
+  public Object deserialize() {
+    return serializer.deserialize(serialized, clazz);
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.Optional;
+
+import org.apache.fluo.api.data.Bytes;
+
+/**
+ * A {@link Combiner} that can also combine values in their serialized form. When the combiner
+ * passed to {@link CombineQueue#registerObserver} implements this interface, queued values are
+ * combined using {@link #combineSerialized(Bytes, Iterable)} and are never deserialized. Values are
+ * only deserialized when a change is reported to the {@link ChangeObserver}.
+ *
+ * <p>
+ * The serialized form of values is determined by the serializer used by the combine queue, see
+ * {@link CombineQueue.FluentOptions#valueSerializer(Class)}.
+ *
+ * @since 1.2.0
+ */
+public interface BinaryCombiner<K, V> extends Combiner<K, V> {
+
+  /**
+   * This function is called to combine the serialized current value of a key with serialized
+   * updates that were queued for the key.
+   *
+   * @param serializedKey The serialized key.
+   * @param serializedValues The serialized current value, if one exists, followed by the serialized
+   *        updates.
+   * @return The new serialized value for the key. Returning Optional.empty() will cause the key to
+   *         be deleted.
+   */
+  Optional<Bytes> combineSerialized(Bytes serializedKey, Iterable<Bytes> serializedValues);
+}
@@ -16,12 +16,14 @@
 package org.apache.fluo.recipes.core.combine;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Map;
 
 import org.apache.fluo.api.client.TransactionBase;
 import org.apache.fluo.api.config.FluoConfiguration;
 import org.apache.fluo.api.config.SimpleConfiguration;
 import org.apache.fluo.api.data.RowColumnValue;
+import org.apache.fluo.api.metrics.MetricsReporter;
 import org.apache.fluo.api.observer.ObserverProvider.Registry;
 import org.apache.fluo.recipes.core.common.TableOptimizations;
 import org.apache.fluo.recipes.core.common.TableOptimizations.TableOptimizationsFactory;
@@ -45,6 +47,27 @@ public interface CombineQueue<K, V> {
    */
   public void addAll(TransactionBase tx, Map<K, V> updates);
 
+  /**
+   * Creates a buffer that combines updates for the same key before they are queued. Each update
+   * queued by {@link #addAll(TransactionBase, Map)} results in a row that the observer must later
+   * read and delete, so a transaction that queues many updates for the same key, possibly over
+   * multiple calls, can use this to queue a single combined update per key instead.
+   *
+   * <p>
+   * Nothing is written until {@link WriteBuffer#flush()} is called, which must be done before the
+   * transaction commits. The combiner should be the same one registered with
+   * {@link #registerObserver(Registry, Combiner, ChangeObserver)} and it must give the same result
+   * when updates are combined in multiple steps.
+   *
+   * @param tx The transaction that will be used to queue the combined updates.
+   * @param combiner Used to combine updates for the same key. When it returns Optional.empty(), no
+   *        update is queued for the key.
+   * @since 1.2.0
+   */
+  public default WriteBuffer<K, V> newWriteBuffer(TransactionBase tx, Combiner<K, V> combiner) {
+    return new WriteBufferImpl<>(this, tx, combiner);
+  }
+
   /**
    * Used to register a Fluo Observer that processes updates to this combine queue. If this is not
    * called, then updates will never be processed.
@@ -53,6 +76,62 @@ public interface CombineQueue<K, V> {
   public void registerObserver(Registry obsRegistry, Combiner<K, V> combiner,
       ChangeObserver<K, V> updateObserver);
 
+  /**
+   * Same as {@link #registerObserver(Registry, Combiner, ChangeObserver)}, except the observer
+   * reports metrics about processing updates and tracks the keys with the most updates in each
+   * bucket, which can be obtained with {@link #getHotKeys(int)}. The names of the metrics start
+   * with {@code combineq.<cqId>.}, see docs/combine-queue.md for a list.
+   *
+   * @param metricsReporter Obtained from {@code ObserverProvider.Context.getMetricsReporter()}.
+   *        When null, no metrics are reported and no keys are tracked.
+   * @since 1.2.0
+   */
+  public default void registerObserver(Registry obsRegistry, Combiner<K, V> combiner,
+      ChangeObserver<K, V> updateObserver, MetricsReporter metricsReporter) {
+    registerObserver(obsRegistry, combiner, updateObserver);
+  }
+
+  /**
+   * Returns the keys with the most updates processed by the observer registered through this
+   * instance, which only includes buckets processed by this worker. The number of updates for each
+   * key is an estimate that may be too high, counts are halved periodically so that keys which
+   * stop getting updates are eventually dropped. Keys are only tracked when the observer was
+   * registered with a metrics reporter.
+   *
+   * @param n The maximum number of keys to return.
+   * @return keys mapped to their estimated number of updates, in descending order of updates.
+   * @since 1.2.0
+   */
+  public default Map<K, Long> getHotKeys(int n) {
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Declares a key that gets far more updates than others. When {@link FluentOptions#hotKeySplits}
+   * is configured, updates for the key are spread across multiple buckets and combined before
+   * reaching the key's own bucket. This takes effect within a minute, as each combine queue
+   * instance caches the hot keys. Hot keys detected by the observer expire after an hour, declared
+   * keys stay hot until removed.
+   *
+   * @param tx The transaction used to store the hot key.
+   * @throws UnsupportedOperationException if the implementation does not support hot keys
+   * @since 1.2.0
+   */
+  public default void addHotKey(TransactionBase tx, K key) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Removes a key declared with {@link #addHotKey(TransactionBase, Object)} or detected by the
+   * observer, so that its updates are no longer split across buckets.
+   *
+   * @throws UnsupportedOperationException if the implementation does not support hot keys
+   * @since 1.2.0
+   */
+  public default void removeHotKey(TransactionBase tx, K key) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Get a combiner queue instance.
    * 
@@ -123,12 +202,102 @@ public interface CombineQueue<K, V> {
      */
     public FluentOptions bufferSize(long bufferSize);
 
+    /**
+     * When enabled, the observer processing updates will combine the updates read for a key as
+     * soon as the scan moves on to another key, keeping only the serialized result. This means
+     * only one key's queued values are held at a time and the buffer size limit is counted against
+     * the serialized data actually retained, which allows a much larger buffer size for the same
+     * memory. Enabling this requires that the {@link Combiner} gives the same result when updates
+     * are combined in multiple steps. This is disabled by default.
+     *
+     * @since 1.2.0
+     */
+    public FluentOptions streamingCombine(boolean enabled);
+
+    /**
+     * Sets the serializer used for values in this combine queue. When not set, the serializer
+     * configured with {@link SimpleSerializer#setSerializer(FluoConfiguration, Class)} is used for
+     * both keys and values. A {@link BinaryCombiner} may require a specific serialized form for
+     * values.
+     *
+     * @since 1.2.0
+     */
+    public FluentOptions valueSerializer(Class<? extends SimpleSerializer> serializerType);
+
+    /**
+     * @see #valueSerializer(Class)
+     * @since 1.2.0
+     */
+    public FluentOptions valueSerializer(String serializerType);
+
+    /**
+     * When enabled, keys and values are serialized with
+     * {@link SimpleSerializer#serializeTyped(Object, Class)} using the configured key and value
+     * types. This allows the serializer to leave class names out of the data stored in Fluo. The
+     * keys and values added must be exactly of the configured types and not subclasses. This can
+     * not be changed once data is stored in the queue. Disabled by default.
+     *
+     * @since 1.2.0
+     */
+    public FluentOptions typedSerialization(boolean enabled);
+
+    /**
+     * When enabled, the observer that moves current values when resharding is registered along
+     * with the observer processing updates, and the combine queue can be resharded using
+     * {@link CombineQueue#reshard(TransactionBase, String, SimpleConfiguration, int)}. Enabling
+     * this for an existing application adds an observed column, so the application's observer
+     * configuration must be updated like for any other new observer. Disabled by default.
+     *
+     * @since 1.2.0
+     */
+    public FluentOptions resharding(boolean enabled);
+
     /**
      * Sets the number of buckets per tablet to generate. This affects how many split points will be
      * generated when optimizing the Accumulo table.
      */
     public FluentOptions bucketsPerTablet(int bucketsPerTablet);
 
+    /**
+     * Sets the maximum number of buckets a single transaction will process. When greater than one,
+     * a transaction processing a notified bucket will also process the buckets that follow it in
+     * the same tablet, until this limit or the buffer size is reached. All of the buckets are read
+     * with a single scan and the current values for all keys are read in a single batch, which
+     * amortizes per transaction overhead when many buckets have a small amount of updates. The
+     * tablet is determined by {@link #bucketsPerTablet(int)}. Processing other buckets may
+     * occasionally collide with transactions processing those buckets concurrently. Defaults to 1.
+     *
+     * @since 1.2.0
+     */
+    public FluentOptions bucketsPerTransaction(int bucketsPerTransaction);
+
+    /**
+     * Sets the maximum number of current values each worker will cache. Transactions processing
+     * updates normally read the current value of every key they update. With the cache enabled,
+     * values a worker wrote or read for a bucket are reused the next time the worker processes
+     * that bucket, as long as no other transaction changed values in the bucket in between. This
+     * is verified by reading a single version per bucket. Defaults to 0, which disables the cache.
+     *
+     * @since 1.2.0
+     */
+    public FluentOptions currentValueCacheSize(long cacheSize);
+
+    /**
+     * Sets the number of buckets the updates for a hot key are split across. Updates for a key
+     * normally all go to one bucket, so a key that gets far more updates than the buffer size can
+     * hold is processed serially by a single transaction at a time. When this is greater than one,
+     * updates for hot keys are spread across this many buckets, where they are combined and then
+     * forwarded as a single update to the key's own bucket, which combines them with the current
+     * value. Keys become hot when declared with
+     * {@link CombineQueue#addHotKey(TransactionBase, Object)} or when the observer finds more
+     * updates for a key than fit in the buffer. Enabling this requires that the {@link Combiner}
+     * gives the same result when updates are combined in multiple steps. Defaults to 0, which
+     * disables splitting.
+     *
+     * @since 1.2.0
+     */
+    public FluentOptions hotKeySplits(int splits);
+
     /**
      * Adds properties to the Fluo application configuration for this CombineQueue.
      */
@@ -153,15 +322,94 @@ public interface CombineQueue<K, V> {
     public RowColumnValue convert(K2 key, V2 val);
   }
 
+  /**
+   * Combines updates for a combine queue in memory until flushed. See
+   * {@link CombineQueue#newWriteBuffer(TransactionBase, Combiner)}
+   *
+   * @since 1.2.0
+   */
+  public static interface WriteBuffer<K2, V2> {
+    public void add(K2 key, V2 update);
+
+    public void addAll(Map<K2, V2> updates);
+
+    /**
+     * Combines the buffered updates for each key and queues the results. The buffer is empty after
+     * this is called and can be reused.
+     */
+    public void flush();
+  }
+
   /**
    * A {@link CombineQueue} stores data in its own data format in the Fluo table. When initializing
    * a Fluo table with something like Map Reduce or Spark, data will need to be written in this
    * format. Thats the purpose of this method, it provides a simple class that can do this
    * conversion.
+   *
+   * <p>
+   * The data generated is for the buckets the combine queue was configured with, so this should
+   * only be used before the combine queue is resharded. Data generated for a combine queue that was
+   * resharded is not found by its observers.
    */
   public static <K2, V2> Initializer<K2, V2> getInitializer(String cqId, int numBuckets,
       SimpleSerializer serializer) {
-    return new InitializerImpl<>(cqId, numBuckets, serializer);
+    return new InitializerImpl<>(cqId, numBuckets, serializer, serializer);
+  }
+
+  /**
+   * Same as {@link #getInitializer(String, int, SimpleSerializer)}, except it allows using a
+   * different serializer for values. Use this when the combine queue was configured with
+   * {@link FluentOptions#valueSerializer(Class)}.
+   *
+   * @since 1.2.0
+   */
+  public static <K2, V2> Initializer<K2, V2> getInitializer(String cqId, int numBuckets,
+      SimpleSerializer keySerializer, SimpleSerializer valueSerializer) {
+    return new InitializerImpl<>(cqId, numBuckets, keySerializer, valueSerializer);
+  }
+
+  /**
+   * Creates an initializer using the settings stored in the Fluo application configuration by
+   * {@link FluentOptions#save(FluoConfiguration)}. This is the only way to get an initializer for a
+   * combine queue configured with {@link FluentOptions#typedSerialization(boolean)}.
+   *
+   * @since 1.2.0
+   */
+  public static <K2, V2> Initializer<K2, V2> getInitializer(String cqId,
+      SimpleConfiguration appConfig) {
+    return InitializerImpl.create(cqId, appConfig);
+  }
+
+  /**
+   * Changes the number of buckets of a combine queue that is in use, without reinitializing Fluo.
+   * After the transaction commits, new updates are queued in the new buckets. Updates already
+   * queued in the old buckets are forwarded to the new buckets by the observer and an observer
+   * moves current values to the new buckets in the background. Observers must be running for this
+   * to complete. A combine queue can not be resharded again until all current values were moved.
+   *
+   * <p>
+   * This should be the only thing done by the transaction, as it writes to every old and new
+   * bucket.
+   *
+   * <p>
+   * Resharding must be enabled with {@link FluentOptions#resharding(boolean)}. It is not supported
+   * for combine queues used by the deprecated {@code CollisionFreeMap}. After resharding, an
+   * {@link Initializer} can no longer be used, because it generates data for the initial buckets.
+   *
+   * @param tx The transaction used to start resharding.
+   * @param cqId The id of the combine queue to reshard.
+   * @param appConfig Application configuration obtained from
+   *        {@code FluoClient.getAppConfiguration()}
+   * @param numBuckets The new number of buckets.
+   * @return Suggested table optimizations for the new buckets. These splits are not included in the
+   *         optimizations returned by {@link Optimizer}.
+   * @throws IllegalStateException if resharding is not enabled or current values are still being
+   *         moved for a previous reshard.
+   * @since 1.2.0
+   */
+  public static TableOptimizations reshard(TransactionBase tx, String cqId,
+      SimpleConfiguration appConfig, int numBuckets) {
+    return CqResharder.reshard(tx, cqId, appConfig, numBuckets);
   }
 
   /**
@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -27,9 +28,9 @@ import java.util.Optional;
 import java.util.Set;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
-import com.google.common.hash.Hashing;
 import org.apache.fluo.api.client.TransactionBase;
 import org.apache.fluo.api.config.SimpleConfiguration;
 import org.apache.fluo.api.data.Bytes;
@@ -38,6 +39,7 @@ import org.apache.fluo.api.data.Column;
 import org.apache.fluo.api.data.RowColumn;
 import org.apache.fluo.api.data.RowColumnValue;
 import org.apache.fluo.api.data.Span;
+import org.apache.fluo.api.metrics.MetricsReporter;
 import org.apache.fluo.api.observer.Observer.NotificationType;
 import org.apache.fluo.api.observer.ObserverProvider.Registry;
 import org.apache.fluo.recipes.core.combine.ChangeObserver.Change;
@@ -48,33 +50,72 @@ class CombineQueueImpl<K, V> implements CombineQueue<K, V> {
   static final Column DATA_COLUMN = new Column("data", "current");
   static final Column UPDATE_COL = new Column("u", "v");
   static final Column NEXT_COL = new Column("u", "next");
+  static final Column VERSION_COL = new Column("u", "version");
+
+  private static final Set<Column> NEXT_VERSION_COLS = ImmutableSet.of(NEXT_COL, VERSION_COL);
+  private static final Set<Column> BUCKET_COLS = ImmutableSet.of(NEXT_COL, CqLayout.RESHARD_COL,
+      CqLayout.FROM_COL);
+  private static final Set<Column> CACHED_BUCKET_COLS = ImmutableSet.of(NEXT_COL, VERSION_COL,
+      CqLayout.RESHARD_COL, CqLayout.FROM_COL);
+
+  // how long the layout used to queue updates is cached before it is read again
+  static final long LAYOUT_CACHE_TIME = 60000;
 
-  private Bytes updatePrefix;
-  private Bytes dataPrefix;
   private Column notifyColumn;
 
   private final String cqId;
   private final Class<K> keyType;
   private final Class<V> valType;
-  private final int numBuckets;
+  private final CqLayout initialLayout;
   private final long bufferSize;
+  private final boolean streamingCombine;
+  private final boolean typedSer;
+  private final int bucketsPerTx;
+  private final int bucketsPerTablet;
+  private final int hotKeySplits;
+  private final boolean resharding;
+  private final CurrentValueCache cache;
   private SimpleSerializer serializer;
+  private SimpleSerializer valSerializer;
+
+  // Updates queued using an old layout are forwarded by the observers of that layout, so the layout
+  // used for queuing can be cached.
+  private volatile CqLayout writeLayout;
+  private volatile long writeLayoutTime;
+
+  // Updates for a key are combined correctly whether or not they were split, so the hot keys can be
+  // cached like the layout.
+  private volatile Set<Bytes> hotKeys;
+  private volatile long hotKeysTime;
+
+  private volatile CqMetrics metrics = CqMetrics.NONE;
 
   @SuppressWarnings("unchecked")
   CombineQueueImpl(String cqId, SimpleConfiguration appConfig) throws Exception {
     this.cqId = cqId;
-    this.updatePrefix = Bytes.of(cqId + ":u:");
-    this.dataPrefix = Bytes.of(cqId + ":d:");
-    this.notifyColumn = new Column("fluoRecipes", "cfm:" + cqId);
+    this.notifyColumn = getNotifyColumn(cqId);
     this.keyType =
         (Class<K>) getClass().getClassLoader()
             .loadClass(CqConfigurator.getKeyType(cqId, appConfig));
     this.valType =
         (Class<V>) getClass().getClassLoader().loadClass(
             CqConfigurator.getValueType(cqId, appConfig));
-    this.numBuckets = CqConfigurator.getNumBucket(cqId, appConfig);
+    this.initialLayout = CqLayout.getInitial(cqId, appConfig);
     this.bufferSize = CqConfigurator.getBufferSize(cqId, appConfig);
+    this.streamingCombine = CqConfigurator.getStreamingCombine(cqId, appConfig);
+    this.typedSer = CqConfigurator.getTypedSerialization(cqId, appConfig);
+    this.bucketsPerTx = CqConfigurator.getBucketsPerTransaction(cqId, appConfig);
+    this.bucketsPerTablet = CqConfigurator.getBucketsPerTablet(cqId, appConfig);
+    this.hotKeySplits = CqConfigurator.getHotKeySplits(cqId, appConfig);
+    this.resharding = CqConfigurator.getResharding(cqId, appConfig);
+    long cacheSize = CqConfigurator.getCurrentValueCacheSize(cqId, appConfig);
+    this.cache = cacheSize > 0 ? new CurrentValueCache(cacheSize) : null;
     this.serializer = SimpleSerializer.getInstance(appConfig);
+    this.valSerializer = CqConfigurator.getValueSerializer(cqId, appConfig, serializer);
+  }
+
+  static Column getNotifyColumn(String cqId) {
+    return new Column("fluoRecipes", "cfm:" + cqId);
   }
 
   private static byte[] encSeq(long l) {
@@ -90,89 +131,443 @@ class CombineQueueImpl<K, V> implements CombineQueue<K, V> {
     return ret;
   }
 
-  static String genBucketId(int bucket, int maxBucket) {
-    Preconditions.checkArgument(bucket >= 0);
-    Preconditions.checkArgument(maxBucket > 0);
-
-    int bits = 32 - Integer.numberOfLeadingZeros(maxBucket);
-    int bucketLen = bits / 4 + (bits % 4 > 0 ? 1 : 0);
-
-    return Strings.padStart(Integer.toHexString(bucket), bucketLen, '0');
+  private CqLayout getWriteLayout(TransactionBase tx) {
+    CqLayout layout = writeLayout;
+    long now = System.currentTimeMillis();
+    if (layout == null || now - writeLayoutTime > LAYOUT_CACHE_TIME) {
+      layout = CqLayout.read(tx, cqId, initialLayout);
+      writeLayout = layout;
+      writeLayoutTime = now;
+    }
+    return layout;
   }
 
-  @Override
-  public void addAll(TransactionBase tx, Map<K, V> updates) {
-    Preconditions.checkState(numBuckets > 0, "Not initialized");
-
-    Set<String> buckets = new HashSet<>();
+  /**
+   * @return the serialized keys whose updates are split across buckets
+   */
+  private Set<Bytes> getHotKeySet(TransactionBase tx) {
+    Set<Bytes> keys = hotKeys;
+    long now = System.currentTimeMillis();
+    if (keys == null || now - hotKeysTime > LAYOUT_CACHE_TIME) {
+      keys = CqHotKeys.read(tx, cqId, now);
+      hotKeys = keys;
+      hotKeysTime = now;
+    }
+    return keys;
+  }
 
-    BytesBuilder rowBuilder = Bytes.builder();
-    rowBuilder.append(updatePrefix);
-    int prefixLength = rowBuilder.getLength();
+  /**
+   * Writes update rows using a layout and notifies the buckets that had updates written.
+   */
+  private static class UpdateWriter {
+    private final TransactionBase tx;
+    private final CqLayout layout;
+    // bit set of buckets that had updates added and need to be notified
+    private final long[] buckets;
+    private final BytesBuilder rowBuilder = Bytes.builder();
+    private final int prefixLength;
+    private final byte[] startTs;
+    private final Column notifyColumn;
+
+    UpdateWriter(TransactionBase tx, CqLayout layout, Column notifyColumn) {
+      this.tx = tx;
+      this.layout = layout;
+      this.notifyColumn = notifyColumn;
+      this.buckets = new long[(layout.getNumBuckets() + 63) >>> 6];
+      rowBuilder.append(layout.getUpdatePrefix());
+      this.prefixLength = rowBuilder.getLength();
+      this.startTs = encSeq(tx.getStartTimestamp());
+    }
 
-    byte[] startTs = encSeq(tx.getStartTimestamp());
+    void add(byte[] serializedKey, Bytes val) {
+      add(layout.getBucket(serializedKey), serializedKey, val);
+    }
 
-    for (Entry<K, V> entry : updates.entrySet()) {
-      byte[] k = serializer.serialize(entry.getKey());
-      int hash = Hashing.murmur3_32().hashBytes(k).asInt();
-      String bucketId = genBucketId(Math.abs(hash % numBuckets), numBuckets);
+    /**
+     * Adds an update for a hot key to one of the buckets its updates are split across. The split
+     * is picked using the start timestamp, so concurrent transactions use different buckets.
+     */
+    void addSplit(byte[] serializedKey, Bytes val, int splits) {
+      int split = (int) (tx.getStartTimestamp() % splits);
+      add(layout.getSplitBucket(serializedKey, split, splits), serializedKey, val);
+    }
 
+    private void add(int bucket, byte[] serializedKey, Bytes val) {
       // reset to the common row prefix
       rowBuilder.setLength(prefixLength);
 
-      Bytes row = rowBuilder.append(bucketId).append(':').append(k).append(startTs).toBytes();
-      Bytes val = Bytes.of(serializer.serialize(entry.getValue()));
+      Bytes row =
+          rowBuilder.append(layout.getBucketId(bucket)).append(':').append(serializedKey)
+              .append(startTs).toBytes();
 
       // TODO set if not exists would be comforting here.... but
       // collisions on bucketId+key+uuid should never occur
       tx.set(row, UPDATE_COL, val);
 
-      buckets.add(bucketId);
+      buckets[bucket >>> 6] |= 1L << bucket;
     }
 
-    for (String bucketId : buckets) {
-      rowBuilder.setLength(prefixLength);
-      rowBuilder.append(bucketId).append(':');
+    void notifyBuckets() {
+      for (int i = 0; i < buckets.length; i++) {
+        long word = buckets[i];
+        while (word != 0) {
+          int bucket = (i << 6) + Long.numberOfTrailingZeros(word);
+          word &= word - 1;
 
-      Bytes row = rowBuilder.toBytes();
+          rowBuilder.setLength(prefixLength);
+          rowBuilder.append(layout.getBucketId(bucket)).append(':');
 
-      tx.setWeakNotification(row, notifyColumn);
+          Bytes row = rowBuilder.toBytes();
+
+          tx.setWeakNotification(row, notifyColumn);
+        }
+      }
     }
   }
 
-  private Map<Bytes, Map<Column, Bytes>> getCurrentValues(TransactionBase tx, BytesBuilder prefix,
-      Set<Bytes> keySet) {
+  @Override
+  public void addAll(TransactionBase tx, Map<K, V> updates) {
+    UpdateWriter writer = new UpdateWriter(tx, getWriteLayout(tx), notifyColumn);
+    Set<Bytes> hotKeySet = hotKeySplits > 1 ? getHotKeySet(tx) : Collections.emptySet();
+
+    BytesBuilder valBuilder = Bytes.builder();
+
+    for (Entry<K, V> entry : updates.entrySet()) {
+      valBuilder.setLength(0);
+      serVal(entry.getValue(), valBuilder);
+      byte[] serializedKey = serKey(entry.getKey());
+      if (!hotKeySet.isEmpty() && hotKeySet.contains(Bytes.of(serializedKey))) {
+        writer.addSplit(serializedKey, valBuilder.toBytes(), hotKeySplits);
+      } else {
+        writer.add(serializedKey, valBuilder.toBytes());
+      }
+    }
+
+    writer.notifyBuckets();
+  }
 
+  /**
+   * @param bucketVersions the versions read for each bucket when the cache is in use, otherwise
+   *        null
+   * @param migrateFrom the layout data is being moved from or null when not resharding. When set,
+   *        current values not found in the new layout are read from the old layout and added to
+   *        movedRows.
+   * @return a map of data row to current value
+   */
+  private Map<Bytes, Bytes> getCurrentValues(TransactionBase tx, CqLayout layout,
+      BytesBuilder prefix, Set<Bytes> keySet, Map<Bytes, Bytes> bucketVersions,
+      CqLayout migrateFrom, Set<Bytes> movedRows) {
+
+    Map<Bytes, Bytes> currentVals = new HashMap<>();
     Set<Bytes> rows = new HashSet<>();
+    // maps data rows in the new layout to data rows in the old layout
+    Map<Bytes, Bytes> oldRows = migrateFrom == null ? null : new HashMap<>();
 
     int prefixLen = prefix.getLength();
     for (Bytes key : keySet) {
       prefix.setLength(prefixLen);
-      rows.add(prefix.append(key).toBytes());
+      Bytes row = prefix.append(key).toBytes();
+
+      if (bucketVersions != null) {
+        Bytes bucketRow = layout.getBucketRow(key);
+        Map<Bytes, Bytes> cached = cache.getValues(bucketRow, bucketVersions.get(bucketRow));
+        if (cached.containsKey(row)) {
+          Bytes val = cached.get(row);
+          if (val != null) {
+            currentVals.put(row, val);
+          }
+          continue;
+        }
+      }
+
+      rows.add(row);
+
+      if (oldRows != null) {
+        Bytes oldRow = migrateFrom.getDataRow(layout.getSerializedKey(key).toArray());
+        oldRows.put(row, oldRow);
+        rows.add(oldRow);
+      }
     }
 
-    try {
-      return tx.get(rows, Collections.singleton(DATA_COLUMN));
-    } catch (IllegalArgumentException e) {
-      System.out.println(rows.size());
-      throw e;
+    Map<Bytes, Map<Column, Bytes>> readVals = tx.get(rows, Collections.singleton(DATA_COLUMN));
+
+    readVals.forEach((row, cols) -> {
+      Bytes val = cols.get(DATA_COLUMN);
+      if (val != null) {
+        currentVals.put(row, val);
+      }
+    });
+
+    if (oldRows != null) {
+      for (Entry<Bytes, Bytes> entry : oldRows.entrySet()) {
+        Bytes oldVal = currentVals.remove(entry.getValue());
+        if (oldVal != null && !currentVals.containsKey(entry.getKey())) {
+          currentVals.put(entry.getKey(), oldVal);
+          movedRows.add(entry.getKey());
+        }
+        // Deleted even when absent, so that this transaction collides with any transaction that
+        // is processing the key using the old layout.
+        tx.delete(entry.getValue(), DATA_COLUMN);
+      }
     }
+
+    return currentVals;
   }
 
   private V deserVal(Bytes val) {
-    return serializer.deserialize(val.toArray(), valType);
+    if (typedSer) {
+      return valSerializer.deserializeTyped(val, valType);
+    }
+    return valSerializer.deserialize(val, valType);
+  }
+
+  private void serVal(V val, BytesBuilder builder) {
+    if (typedSer) {
+      valSerializer.serializeTyped(val, valType, builder);
+    } else {
+      valSerializer.serialize(val, builder);
+    }
+  }
+
+  private Bytes serVal(V val) {
+    BytesBuilder builder = Bytes.builder();
+    serVal(val, builder);
+    return builder.toBytes();
+  }
+
+  private K deserKey(Bytes key) {
+    if (typedSer) {
+      return serializer.deserializeTyped(key, keyType);
+    }
+    return serializer.deserialize(key, keyType);
+  }
+
+  private byte[] serKey(K key) {
+    if (typedSer) {
+      return serializer.serializeTyped(key, keyType);
+    }
+    return serializer.serialize(key);
+  }
+
+  private static Iterable<Bytes> concat(Bytes currentValue, List<Bytes> updates) {
+    if (currentValue == null) {
+      return updates;
+    }
+    return Iterables.concat(Collections.singletonList(currentValue), updates);
   }
 
   private Bytes getKeyFromUpdateRow(Bytes prefix, Bytes row) {
     return row.subSequence(prefix.length(), row.length() - 8);
   }
 
+  /**
+   * The result of combining the updates of a key. When the combiner created an object, it is kept
+   * so that reporting a change does not deserialize the value again.
+   */
+  private class Combined {
+    private final Bytes serializedKey;
+    // the serialized combined value, null when the key has no value
+    final Bytes value;
+    private K key;
+    private Optional<V> object;
+
+    Combined(Bytes serializedKey, K key, Bytes value, Optional<V> object) {
+      this.serializedKey = serializedKey;
+      this.key = key;
+      this.value = value;
+      this.object = object;
+    }
+
+    K getKey() {
+      if (key == null) {
+        key = deserKey(serializedKey);
+      }
+      return key;
+    }
+
+    Optional<V> getValue() {
+      if (object == null) {
+        object = Optional.ofNullable(value).map(CombineQueueImpl.this::deserVal);
+      }
+      return object;
+    }
+  }
+
+  /**
+   * Combines the serialized updates of a key with its current value. A {@link BinaryCombiner}
+   * combines them without deserializing, so objects are only created for changes that are
+   * reported.
+   *
+   * @param currVal the current value of the key or null
+   */
+  private Combined combine(Bytes serializedKey, Bytes currVal, List<Bytes> updateList,
+      Combiner<K, V> combiner) {
+    if (combiner instanceof BinaryCombiner) {
+      Optional<Bytes> nv = ((BinaryCombiner<K, V>) combiner).combineSerialized(serializedKey,
+          concat(currVal, updateList));
+      return new Combined(serializedKey, null, nv.orElse(null), null);
+    }
+
+    K key = deserKey(serializedKey);
+    Optional<V> nv = combiner.combine(new InputImpl<>(key, this::deserVal, currVal, updateList));
+    return new Combined(serializedKey, key, nv.isPresent() ? serVal(nv.get()) : null, nv);
+  }
+
+  /**
+   * Combines the queued updates for a key in place, leaving at most one serialized value in the
+   * list.
+   *
+   * @param bucketKey a bucket id, separator, and serialized key
+   *
+   * @return the change in the number of serialized bytes held by the list
+   */
+  private long combineUpdates(CqLayout layout, Bytes bucketKey, List<Bytes> updateList,
+      Combiner<K, V> combiner) {
+    if (updateList.size() < 2) {
+      return 0;
+    }
+
+    long sizeBefore = 0;
+    for (Bytes val : updateList) {
+      sizeBefore += val.length();
+    }
+
+    Bytes combined = combine(layout.getSerializedKey(bucketKey), null, updateList, combiner).value;
+
+    updateList.clear();
+    if (combined != null) {
+      updateList.add(combined);
+      return combined.length() - sizeBefore;
+    }
+
+    return -sizeBefore;
+  }
+
+  /**
+   * When processing multiple buckets per transaction is enabled, finds the last of the buckets
+   * following the notified bucket in the same tablet that can be processed with it. A bucket that
+   * was partially processed needs to continue where it left off, so buckets are only included up
+   * to the first one that was partially processed.
+   */
+  private Bytes getLastBucketRow(TransactionBase tx, CqLayout layout, Bytes ntfyRow,
+      Map<Bytes, Bytes> bucketVersions) {
+    if (bucketsPerTx <= 1) {
+      return ntfyRow;
+    }
+
+    int bucket = layout.parseBucket(ntfyRow);
+    int tabletEnd = (bucket / bucketsPerTablet + 1) * bucketsPerTablet;
+    int end = Math.min(Math.min(bucket + bucketsPerTx, tabletEnd), layout.getNumBuckets());
+
+    if (end - bucket <= 1) {
+      return ntfyRow;
+    }
+
+    List<Bytes> rows = new ArrayList<>(end - bucket - 1);
+    for (int b = bucket + 1; b < end; b++) {
+      rows.add(layout.getBucketRow(b));
+    }
+
+    Map<Bytes, Map<Column, Bytes>> bucketVals =
+        tx.get(rows, bucketVersions == null ? Collections.singleton(NEXT_COL) : NEXT_VERSION_COLS);
+
+    Bytes lastRow = ntfyRow;
+    for (Bytes row : rows) {
+      Map<Column, Bytes> cols = bucketVals.getOrDefault(row, Collections.emptyMap());
+      if (cols.containsKey(NEXT_COL)) {
+        break;
+      }
+      if (bucketVersions != null) {
+        bucketVersions.put(row, cols.getOrDefault(VERSION_COL, Bytes.EMPTY));
+      }
+      lastRow = row;
+    }
+
+    return lastRow;
+  }
+
+  /**
+   * Queues the combined updates read from buckets of a layout that was replaced by resharding into
+   * the buckets of the new layout. Also used to queue the combined updates of hot keys into the
+   * bucket each key hashes to, in which case both layouts are the same.
+   *
+   * @return the number of updates queued
+   */
+  private int forward(TransactionBase tx, CqLayout layout, CqLayout forwardTo,
+      Map<Bytes, List<Bytes>> updates, Combiner<K, V> combiner) {
+    int forwarded = 0;
+    UpdateWriter writer = new UpdateWriter(tx, forwardTo, notifyColumn);
+    for (Entry<Bytes, List<Bytes>> entry : updates.entrySet()) {
+      combineUpdates(layout, entry.getKey(), entry.getValue(), combiner);
+      for (Bytes val : entry.getValue()) {
+        writer.add(layout.getSerializedKey(entry.getKey()).toArray(), val);
+        forwarded++;
+      }
+    }
+    writer.notifyBuckets();
+    return forwarded;
+  }
+
+  /**
+   * Removes the updates of hot keys that were split into buckets other than the bucket each key
+   * hashes to. When the bucket a key hashes to was also read, the updates are added to the updates
+   * read there. Otherwise they are returned mapped by the bucket key of the bucket the key hashes
+   * to, so that updates for the same key read from multiple buckets are combined together.
+   */
+  private static Map<Bytes, List<Bytes>> removeSplitUpdates(CqLayout layout,
+      Map<Bytes, List<Bytes>> updates) {
+    Map<Bytes, List<Bytes>> splitUpdates = new HashMap<>();
+    Iterator<Entry<Bytes, List<Bytes>>> iter = updates.entrySet().iterator();
+    while (iter.hasNext()) {
+      Entry<Bytes, List<Bytes>> entry = iter.next();
+      if (!layout.isHomeBucket(entry.getKey())) {
+        iter.remove();
+        Bytes homeKey = layout.getHomeBucketKey(entry.getKey());
+        List<Bytes> homeUpdates = updates.get(homeKey);
+        if (homeUpdates == null) {
+          homeUpdates = splitUpdates.computeIfAbsent(homeKey, k -> new ArrayList<>());
+        }
+        homeUpdates.addAll(entry.getValue());
+      }
+    }
+    return splitUpdates;
+  }
+
   void process(TransactionBase tx, Bytes ntfyRow, Column col, Combiner<K, V> combiner,
       ChangeObserver<K, V> changeObserver) throws Exception {
 
-    Preconditions.checkState(ntfyRow.startsWith(updatePrefix));
+    CqLayout layout = CqLayout.ofUpdateRow(cqId, initialLayout, ntfyRow);
+
+    Preconditions.checkState(ntfyRow.startsWith(layout.getUpdatePrefix()));
 
-    Bytes nextKey = tx.get(ntfyRow, NEXT_COL);
+    CqMetrics.Round round = metrics.newRound(layout);
+    // records the time spent combining when metrics are enabled
+    Combiner<K, V> timedCombiner = round.time(combiner);
+
+    Map<Column, Bytes> bucketCols = tx.get(ntfyRow, cache == null ? BUCKET_COLS
+        : CACHED_BUCKET_COLS);
+    Bytes nextKey = bucketCols.get(NEXT_COL);
+
+    // set when resharding replaced the layout of this bucket
+    CqLayout forwardTo = null;
+    // set while resharding is moving data from the previous layout to the layout of this bucket
+    CqLayout migrateFrom = null;
+    if (bucketCols.containsKey(CqLayout.RESHARD_COL)) {
+      forwardTo = CqLayout.decode(cqId, bucketCols.get(CqLayout.RESHARD_COL));
+    } else if (bucketCols.containsKey(CqLayout.FROM_COL)) {
+      migrateFrom = CqLayout.decode(cqId, bucketCols.get(CqLayout.FROM_COL));
+    }
+
+    // the version of each bucket processed, only tracked when the cache is in use
+    Map<Bytes, Bytes> bucketVersions = null;
+
+    if (cache != null && forwardTo == null && migrateFrom == null) {
+      bucketVersions = new HashMap<>();
+      bucketVersions.put(ntfyRow, bucketCols.getOrDefault(VERSION_COL, Bytes.EMPTY));
+    }
+
+    // the scan may continue into buckets following the notified bucket
+    Span lastSpan = Span.prefix(getLastBucketRow(tx, layout, ntfyRow, bucketVersions));
 
     Span span;
 
@@ -180,88 +575,146 @@ class CombineQueueImpl<K, V> implements CombineQueue<K, V> {
       Bytes startRow =
           Bytes.builder(ntfyRow.length() + nextKey.length()).append(ntfyRow).append(nextKey)
               .toBytes();
-      Span tmpSpan = Span.prefix(ntfyRow);
-      Span nextSpan =
-          new Span(new RowColumn(startRow, UPDATE_COL), false, tmpSpan.getEnd(),
-              tmpSpan.isEndInclusive());
-      span = nextSpan;
+      span =
+          new Span(new RowColumn(startRow, UPDATE_COL), false, lastSpan.getEnd(),
+              lastSpan.isEndInclusive());
     } else {
-      span = Span.prefix(ntfyRow);
+      Span tmpSpan = Span.prefix(ntfyRow);
+      span =
+          new Span(tmpSpan.getStart(), tmpSpan.isStartInclusive(), lastSpan.getEnd(),
+              lastSpan.isEndInclusive());
     }
 
     Iterator<RowColumnValue> iter = tx.scanner().over(span).fetch(UPDATE_COL).build().iterator();
 
+    // maps bucket id and serialized key to serialized updates
     Map<Bytes, List<Bytes>> updates = new HashMap<>();
 
     long approxMemUsed = 0;
 
     Bytes partiallyReadKey = null;
-    boolean setNextKey = false;
+    // the bucket where reading stopped before all of its updates were read
+    Bytes stopBucketRow = null;
 
     if (iter.hasNext()) {
       Bytes lastKey = null;
+      // the number of updates read for the last key
+      int keyUpdates = 0;
       while (iter.hasNext() && approxMemUsed < bufferSize) {
         RowColumnValue rcv = iter.next();
         Bytes curRow = rcv.getRow();
 
         tx.delete(curRow, UPDATE_COL);
+        round.updateRead();
 
-        Bytes serializedKey = getKeyFromUpdateRow(ntfyRow, curRow);
-        lastKey = serializedKey;
+        Bytes bucketKey = getKeyFromUpdateRow(layout.getUpdatePrefix(), curRow);
 
-        List<Bytes> updateList = updates.get(serializedKey);
+        if (lastKey != null && !lastKey.equals(bucketKey)) {
+          // done reading a run of updates for the last key
+          round.keyRead(lastKey, keyUpdates);
+          keyUpdates = 0;
+          if (streamingCombine) {
+            // only keep the combined value of the last key
+            approxMemUsed += combineUpdates(layout, lastKey, updates.get(lastKey), timedCombiner);
+          }
+        }
+
+        lastKey = bucketKey;
+        keyUpdates++;
+
+        List<Bytes> updateList = updates.get(bucketKey);
         if (updateList == null) {
           updateList = new ArrayList<>();
-          updates.put(serializedKey, updateList);
+          updates.put(bucketKey, updateList);
         }
 
         Bytes val = rcv.getValue();
         updateList.add(val);
 
-        approxMemUsed += curRow.length();
+        if (!streamingCombine || updateList.size() == 1) {
+          // when streaming, only the first row read for a key is retained (the key refers to it)
+          approxMemUsed += curRow.length();
+        }
         approxMemUsed += val.length();
       }
 
-      if (iter.hasNext()) {
-        RowColumnValue rcv = iter.next();
-        Bytes curRow = rcv.getRow();
+      if (lastKey != null) {
+        round.keyRead(lastKey, keyUpdates);
+      }
 
-        // check if more updates for last key
-        if (getKeyFromUpdateRow(ntfyRow, curRow).equals(lastKey)) {
-          // there are still more updates for this key
-          partiallyReadKey = lastKey;
+      if (streamingCombine && lastKey != null) {
+        combineUpdates(layout, lastKey, updates.get(lastKey), timedCombiner);
+      }
 
-          // start next time at the current key
-          tx.set(ntfyRow, NEXT_COL, partiallyReadKey);
-        } else {
-          // start next time at the next possible key
-          Bytes nextPossible =
-              Bytes.builder(lastKey.length() + 1).append(lastKey).append(0).toBytes();
-          tx.set(ntfyRow, NEXT_COL, nextPossible);
+      if (iter.hasNext()) {
+        RowColumnValue rcv = iter.next();
+        Bytes nextBucketKey = getKeyFromUpdateRow(layout.getUpdatePrefix(), rcv.getRow());
+
+        // when the next update is in another bucket, the bucket of the last key was fully read
+        if (layout.inSameBucket(nextBucketKey, lastKey)) {
+          stopBucketRow = layout.getBucketRow(lastKey);
+          Bytes lastSerKey = layout.getSerializedKey(lastKey);
+          round.continued();
+
+          // check if more updates for last key
+          if (nextBucketKey.equals(lastKey)) {
+            // there are still more updates for this key
+            partiallyReadKey = lastKey;
+
+            if (hotKeySplits > 1 && layout.isHomeBucket(lastKey)
+                && !getHotKeySet(tx).contains(lastSerKey)) {
+              // split future updates for this key across buckets
+              CqHotKeys.detected(tx, cqId, lastSerKey, System.currentTimeMillis());
+            }
+
+            // start next time at the current key
+            tx.set(stopBucketRow, NEXT_COL, lastSerKey);
+          } else {
+            // start next time at the next possible key
+            Bytes nextPossible =
+                Bytes.builder(lastSerKey.length() + 1).append(lastSerKey).append(0).toBytes();
+            tx.set(stopBucketRow, NEXT_COL, nextPossible);
+          }
         }
-
-        setNextKey = true;
-      } else if (nextKey != null) {
-        // clear nextKey
-        tx.delete(ntfyRow, NEXT_COL);
       }
-    } else if (nextKey != null) {
+    }
+
+    if (nextKey != null && !ntfyRow.equals(stopBucketRow)) {
+      // clear nextKey
       tx.delete(ntfyRow, NEXT_COL);
     }
 
-    if (nextKey != null || setNextKey) {
-      // If not all data was read need to run again in the future. If scanning was started in the
-      // middle of the bucket, its possible there is new data before nextKey that still needs to be
-      // processed. If scanning stopped before reading the entire bucket there may be data after the
-      // stop point.
+    if (nextKey != null) {
+      // If scanning was started in the middle of the bucket, its possible there is new data before
+      // nextKey that still needs to be processed.
       tx.setWeakNotification(ntfyRow, col);
     }
 
+    if (stopBucketRow != null && !(nextKey != null && stopBucketRow.equals(ntfyRow))) {
+      // If scanning stopped before reading the entire bucket there may be data after the stop
+      // point, so need to run again in the future.
+      tx.setWeakNotification(stopBucketRow, col);
+    }
+
+    int keysRead = updates.size();
 
+    if (forwardTo == null) {
+      // Done even when splitting is disabled, because split updates may remain after disabling it.
+      Map<Bytes, List<Bytes>> splitUpdates = removeSplitUpdates(layout, updates);
+      if (!splitUpdates.isEmpty()) {
+        // the first stage of combining a hot key, the second stage runs in the key's own bucket
+        round.forwarded(forward(tx, layout, layout, splitUpdates, timedCombiner));
+      }
+    }
+
+    if (forwardTo != null) {
+      round.forwarded(forward(tx, layout, forwardTo, updates, timedCombiner));
+      round.report(keysRead);
+      return;
+    }
 
     BytesBuilder rowBuilder = Bytes.builder();
-    rowBuilder.append(dataPrefix);
-    rowBuilder.append(ntfyRow.subSequence(updatePrefix.length(), ntfyRow.length()));
+    rowBuilder.append(layout.getDataPrefix());
     int rowPrefixLen = rowBuilder.getLength();
 
     Set<Bytes> keysToFetch = updates.keySet();
@@ -269,54 +722,147 @@ class CombineQueueImpl<K, V> implements CombineQueue<K, V> {
       final Bytes prk = partiallyReadKey;
       keysToFetch = Sets.filter(keysToFetch, b -> !b.equals(prk));
     }
-    Map<Bytes, Map<Column, Bytes>> currentVals = getCurrentValues(tx, rowBuilder, keysToFetch);
+    // data rows whose current value was read from the layout being migrated from
+    Set<Bytes> movedRows = migrateFrom == null ? Collections.emptySet() : new HashSet<>();
+    Map<Bytes, Bytes> currentVals =
+        getCurrentValues(tx, layout, rowBuilder, keysToFetch, bucketVersions, migrateFrom,
+            movedRows);
+
+    // maps bucket row to the current values to cache for the bucket
+    Map<Bytes, Map<Bytes, Bytes>> valuesToCache = bucketVersions == null ? null : new HashMap<>();
+    Set<Bytes> changedBuckets = bucketVersions == null ? null : new HashSet<>();
 
     ArrayList<Change<K, V>> updatesToReport = new ArrayList<>(updates.size());
 
-    for (Entry<Bytes, List<Bytes>> entry : updates.entrySet()) {
+    Iterator<Entry<Bytes, List<Bytes>>> updatesIter = updates.entrySet().iterator();
+    while (updatesIter.hasNext()) {
+      Entry<Bytes, List<Bytes>> entry = updatesIter.next();
+      // release serialized updates as they are combined
+      updatesIter.remove();
+
       rowBuilder.setLength(rowPrefixLen);
       Bytes currentValueRow = rowBuilder.append(entry.getKey()).toBytes();
-      Bytes currVal =
-          currentVals.getOrDefault(currentValueRow, Collections.emptyMap()).get(DATA_COLUMN);
+      Bytes currVal = currentVals.get(currentValueRow);
+      // a value read from the old layout must be written to the new layout even if unchanged
+      boolean moved = movedRows.contains(currentValueRow);
 
-      K kd = serializer.deserialize(entry.getKey().toArray(), keyType);
+      Bytes serializedKey = layout.getSerializedKey(entry.getKey());
 
       if (partiallyReadKey != null && partiallyReadKey.equals(entry.getKey())) {
         // not all updates were read for this key, so requeue the combined updates as an update
-        Optional<V> nv = combiner.combine(new InputImpl<>(kd, this::deserVal, entry.getValue()));
-        if (nv.isPresent()) {
-          addAll(tx, Collections.singletonMap(kd, nv.get()));
+        Combined combined = combine(serializedKey, null, entry.getValue(), timedCombiner);
+        if (combined.value != null) {
+          requeue(tx, layout, serializedKey, combined.value);
         }
-      } else {
-        Optional<V> nv =
-            combiner.combine(new InputImpl<>(kd, this::deserVal, currVal, entry.getValue()));
-        Bytes newVal = nv.isPresent() ? Bytes.of(serializer.serialize(nv.get())) : null;
-        if (newVal != null ^ currVal != null || (currVal != null && !currVal.equals(newVal))) {
-          if (newVal == null) {
-            tx.delete(currentValueRow, DATA_COLUMN);
-          } else {
-            tx.set(currentValueRow, DATA_COLUMN, newVal);
-          }
+        round.requeued();
+        continue;
+      }
+
+      Combined combined = combine(serializedKey, currVal, entry.getValue(), timedCombiner);
+      Bytes newVal = combined.value;
+
+      if (valuesToCache != null) {
+        valuesToCache.computeIfAbsent(layout.getBucketRow(entry.getKey()), k -> new HashMap<>())
+            .put(currentValueRow, newVal);
+      }
 
-          Optional<V> cvd = Optional.ofNullable(currVal).map(this::deserVal);
-          updatesToReport.add(new ChangeImpl<>(kd, cvd, nv));
+      boolean changed =
+          newVal != null ^ currVal != null || (currVal != null && !currVal.equals(newVal));
+      if (changed || moved) {
+        if (newVal == null) {
+          tx.delete(currentValueRow, DATA_COLUMN);
+        } else {
+          tx.set(currentValueRow, DATA_COLUMN, newVal);
         }
       }
+
+      if (changed) {
+        if (changedBuckets != null) {
+          changedBuckets.add(layout.getBucketRow(entry.getKey()));
+        }
+
+        Optional<V> cvd = Optional.ofNullable(currVal).map(this::deserVal);
+        updatesToReport.add(new ChangeImpl<>(combined.getKey(), cvd, combined.getValue()));
+      }
     }
 
-    // TODO could clear these as converted to objects to avoid double memory usage
-    updates.clear();
     currentVals.clear();
 
+    if (valuesToCache != null) {
+      Bytes txVersion = Bytes.of(encSeq(tx.getStartTimestamp()));
+      for (Entry<Bytes, Map<Bytes, Bytes>> entry : valuesToCache.entrySet()) {
+        Bytes bucketRow = entry.getKey();
+        Bytes readVersion = bucketVersions.get(bucketRow);
+        Bytes newVersion = readVersion;
+        if (changedBuckets.contains(bucketRow)) {
+          // invalidates values other workers cached for this bucket
+          tx.set(bucketRow, VERSION_COL, txVersion);
+          newVersion = txVersion;
+        }
+        cache.update(bucketRow, readVersion, newVersion, entry.getValue());
+      }
+    }
+
     if (updatesToReport.size() > 0) {
+      long t1 = System.nanoTime();
       changeObserver.process(tx, updatesToReport);
+      round.changeObserverCalled(System.nanoTime() - t1);
     }
+
+    round.report(keysRead);
+  }
+
+  /**
+   * Queues the combined value of a key that was only partially read back into its bucket.
+   */
+  private void requeue(TransactionBase tx, CqLayout layout, Bytes serializedKey, Bytes val) {
+    UpdateWriter writer = new UpdateWriter(tx, layout, notifyColumn);
+    writer.add(serializedKey.toArray(), val);
+    writer.notifyBuckets();
+  }
+
+  @Override
+  public void registerObserver(Registry obsRegistry, Combiner<K, V> combiner,
+      ChangeObserver<K, V> changeObserver, MetricsReporter metricsReporter) {
+    metrics = CqMetrics.of(cqId, metricsReporter);
+    registerObserver(obsRegistry, combiner, changeObserver);
+  }
+
+  @Override
+  public void addHotKey(TransactionBase tx, K key) {
+    CqHotKeys.declare(tx, cqId, Bytes.of(serKey(key)));
+  }
+
+  @Override
+  public void removeHotKey(TransactionBase tx, K key) {
+    CqHotKeys.remove(tx, cqId, Bytes.of(serKey(key)));
+  }
+
+  @Override
+  public Map<K, Long> getHotKeys(int n) {
+    Map<K, Long> hotKeys = new LinkedHashMap<>();
+    metrics.getHotKeys().entrySet().stream()
+        .sorted(Entry.<Bytes, Long>comparingByValue().reversed()).limit(n)
+        .forEach(e -> hotKeys.put(deserKey(e.getKey()), e.getValue()));
+    return hotKeys;
   }
 
   @Override
   public void registerObserver(Registry obsRegistry, Combiner<K, V> combiner,
       ChangeObserver<K, V> changeObserver) {
+    if (combiner instanceof LongSumBinaryCombiner) {
+      // fail now instead of corrupting values or failing in the observer later
+      Preconditions.checkArgument(valSerializer instanceof LongSumBinaryCombiner.LongSerializer,
+          "Combine queue %s must use %s as its value serializer to be used with %s, but uses %s",
+          cqId, LongSumBinaryCombiner.LongSerializer.class.getName(),
+          LongSumBinaryCombiner.class.getSimpleName(), valSerializer.getClass().getName());
+    }
     obsRegistry.forColumn(notifyColumn, NotificationType.WEAK).withId("combineq-" + cqId)
         .useObserver((tx, row, col) -> process(tx, row, col, combiner, changeObserver));
+    if (resharding) {
+      obsRegistry.forColumn(CqResharder.getNotifyColumn(cqId), NotificationType.WEAK)
+          .withId("combineq-reshard-" + cqId)
+          .useObserver((tx, row, col) -> CqResharder.moveData(tx, cqId));
+    }
   }
 }
@@ -28,6 +28,7 @@ import org.apache.fluo.recipes.core.combine.CombineQueue.FluentOptions;
 import org.apache.fluo.recipes.core.common.RowRange;
 import org.apache.fluo.recipes.core.common.TableOptimizations;
 import org.apache.fluo.recipes.core.common.TransientRegistry;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
 
 // this class intentionally package private
 class CqConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOptions {
@@ -38,15 +39,28 @@ class CqConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOption
 
   int numBuckets;
   Integer bucketsPerTablet = null;
+  Integer bucketsPerTransaction = null;
+  Long currentValueCacheSize = null;
+  Integer hotKeySplits = null;
 
   Long bufferSize;
 
+  Boolean streamingCombine = null;
+
+  String valueSerializer = null;
+
+  Boolean typedSerialization = null;
+
+  Boolean resharding = null;
+
   String keyType;
   String valueType;
   String cqId;
 
   static final int DEFAULT_BUCKETS_PER_TABLET = 10;
 
+  static final int DEFAULT_BUCKETS_PER_TRANSACTION = 1;
+
   static final long DEFAULT_BUFFER_SIZE = 1 << 22;
 
   static final String PREFIX = "recipes.cfm.";
@@ -96,6 +110,57 @@ class CqConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOption
     return this;
   }
 
+  @Override
+  public FluentOptions bucketsPerTransaction(int bucketsPerTransaction) {
+    Preconditions.checkArgument(bucketsPerTransaction > 0, "bucketsPerTransaction is <= 0 : "
+        + bucketsPerTransaction);
+    this.bucketsPerTransaction = bucketsPerTransaction;
+    return this;
+  }
+
+  @Override
+  public FluentOptions currentValueCacheSize(long cacheSize) {
+    Preconditions.checkArgument(cacheSize >= 0, "Cache size must be non-negative");
+    this.currentValueCacheSize = cacheSize;
+    return this;
+  }
+
+  @Override
+  public FluentOptions hotKeySplits(int splits) {
+    Preconditions.checkArgument(splits >= 0, "Hot key splits must be non-negative");
+    this.hotKeySplits = splits;
+    return this;
+  }
+
+  @Override
+  public FluentOptions streamingCombine(boolean enabled) {
+    this.streamingCombine = enabled;
+    return this;
+  }
+
+  @Override
+  public FluentOptions valueSerializer(Class<? extends SimpleSerializer> serializerType) {
+    return valueSerializer(serializerType.getName());
+  }
+
+  @Override
+  public FluentOptions valueSerializer(String serializerType) {
+    this.valueSerializer = Objects.requireNonNull(serializerType);
+    return this;
+  }
+
+  @Override
+  public FluentOptions typedSerialization(boolean enabled) {
+    this.typedSerialization = enabled;
+    return this;
+  }
+
+  @Override
+  public FluentOptions resharding(boolean enabled) {
+    this.resharding = enabled;
+    return this;
+  }
+
   @Override
   public FluentOptions bucketsPerTablet(int bucketsPerTablet) {
     Preconditions.checkArgument(bucketsPerTablet > 0, "bucketsPerTablet is <= 0 : "
@@ -116,6 +181,27 @@ class CqConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOption
     if (bucketsPerTablet != null) {
       appConfig.setProperty(PREFIX + cqId + ".bucketsPerTablet", bucketsPerTablet);
     }
+    if (bucketsPerTransaction != null) {
+      appConfig.setProperty(PREFIX + cqId + ".bucketsPerTx", bucketsPerTransaction);
+    }
+    if (currentValueCacheSize != null) {
+      appConfig.setProperty(PREFIX + cqId + ".cacheSize", currentValueCacheSize);
+    }
+    if (hotKeySplits != null) {
+      appConfig.setProperty(PREFIX + cqId + ".hotKeySplits", hotKeySplits);
+    }
+    if (streamingCombine != null) {
+      appConfig.setProperty(PREFIX + cqId + ".streamingCombine", streamingCombine);
+    }
+    if (valueSerializer != null) {
+      appConfig.setProperty(PREFIX + cqId + ".valSerializer", valueSerializer);
+    }
+    if (typedSerialization != null) {
+      appConfig.setProperty(PREFIX + cqId + ".typedSer", typedSerialization);
+    }
+    if (resharding != null) {
+      appConfig.setProperty(PREFIX + cqId + ".resharding", resharding);
+    }
 
     Bytes dataRangeEnd = Bytes.of(cqId + DATA_RANGE_END);
     Bytes updateRangeEnd = Bytes.of(cqId + UPDATE_RANGE_END);
@@ -130,6 +216,48 @@ class CqConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOption
     return appConfig.getLong(PREFIX + cqId + ".bufferSize", DEFAULT_BUFFER_SIZE);
   }
 
+  static int getHotKeySplits(String cqId, SimpleConfiguration appConfig) {
+    return appConfig.getInt(PREFIX + cqId + ".hotKeySplits", 0);
+  }
+
+  static boolean getStreamingCombine(String cqId, SimpleConfiguration appConfig) {
+    return appConfig.getBoolean(PREFIX + cqId + ".streamingCombine", false);
+  }
+
+  static boolean getTypedSerialization(String cqId, SimpleConfiguration appConfig) {
+    return appConfig.getBoolean(PREFIX + cqId + ".typedSer", false);
+  }
+
+  static boolean getResharding(String cqId, SimpleConfiguration appConfig) {
+    return appConfig.getBoolean(PREFIX + cqId + ".resharding", false);
+  }
+
+  static String getValueSerializerType(String cqId, SimpleConfiguration appConfig) {
+    return appConfig.getString(PREFIX + cqId + ".valSerializer", null);
+  }
+
+  /**
+   * @return the serializer configured for values or the default serializer when none was
+   *         configured
+   */
+  static SimpleSerializer getValueSerializer(String cqId, SimpleConfiguration appConfig,
+      SimpleSerializer defaultSerializer) {
+    String serType = getValueSerializerType(cqId, appConfig);
+    if (serType == null) {
+      return defaultSerializer;
+    }
+
+    try {
+      SimpleSerializer serializer =
+          CqConfigurator.class.getClassLoader().loadClass(serType)
+              .asSubclass(SimpleSerializer.class).newInstance();
+      serializer.init(appConfig);
+      return serializer;
+    } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   static String getValueType(String cqId, SimpleConfiguration appConfig) {
     return appConfig.getString(PREFIX + cqId + ".val");
   }
@@ -142,6 +270,14 @@ class CqConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOption
     return appConfig.getInt(PREFIX + cqId + ".bucketsPerTablet", DEFAULT_BUCKETS_PER_TABLET);
   }
 
+  static int getBucketsPerTransaction(String cqId, SimpleConfiguration appConfig) {
+    return appConfig.getInt(PREFIX + cqId + ".bucketsPerTx", DEFAULT_BUCKETS_PER_TRANSACTION);
+  }
+
+  static long getCurrentValueCacheSize(String cqId, SimpleConfiguration appConfig) {
+    return appConfig.getLong(PREFIX + cqId + ".cacheSize", 0);
+  }
+
   static int getNumBucket(String cqId, SimpleConfiguration appConfig) {
     return appConfig.getInt(PREFIX + cqId + ".buckets");
   }
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.fluo.api.client.SnapshotBase;
+import org.apache.fluo.api.client.TransactionBase;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.RowColumnValue;
+import org.apache.fluo.api.data.Span;
+
+/**
+ * Stores the keys of a combine queue whose updates are split across multiple buckets. Each hot key
+ * is a column in the meta row with the serialized key as the qualifier. Keys declared by the user
+ * have an empty value and stay hot until removed. Keys detected by the observer have an expiration
+ * time as the value, so that keys which stop getting many updates go back to using a single bucket.
+ *
+ * <p>
+ * The expiration time is from the clock of the worker that detected the key and is compared with
+ * the clocks of other workers. Clocks that differ by minutes only make a key expire a few minutes
+ * early or late, compared with the hour it stays hot. Whether the updates for a key are split does
+ * not change the combined result, so this never affects correctness.
+ */
+// intentionally package private
+class CqHotKeys {
+
+  static final Bytes HOT_KEY_FAMILY = Bytes.of("h");
+
+  // how long a key detected by the observer stays hot
+  static final long DETECTED_EXPIRATION = 3600000;
+
+  private static Column getColumn(Bytes serializedKey) {
+    return new Column(HOT_KEY_FAMILY, serializedKey);
+  }
+
+  private static Iterable<RowColumnValue> scan(SnapshotBase tx, String cqId) {
+    return tx.scanner().over(Span.exact(CqLayout.getMetaRow(cqId)))
+        .fetch(new Column(HOT_KEY_FAMILY)).build();
+  }
+
+  private static boolean isExpired(Bytes expiration, long now) {
+    return expiration.length() > 0 && Long.parseLong(expiration.toString()) <= now;
+  }
+
+  /**
+   * @return the serialized keys that are hot at the given time
+   */
+  static Set<Bytes> read(SnapshotBase tx, String cqId, long now) {
+    Set<Bytes> hotKeys = new HashSet<>();
+    for (RowColumnValue rcv : scan(tx, cqId)) {
+      if (!isExpired(rcv.getValue(), now)) {
+        hotKeys.add(rcv.getColumn().getQualifier());
+      }
+    }
+    return hotKeys;
+  }
+
+  static void declare(TransactionBase tx, String cqId, Bytes serializedKey) {
+    tx.set(CqLayout.getMetaRow(cqId), getColumn(serializedKey), Bytes.EMPTY);
+  }
+
+  /**
+   * Marks a key detected by the observer as hot. Also deletes the keys whose expiration passed, so
+   * they do not accumulate in the meta row. This is only done by the observer, because deleting
+   * while reading would make concurrent transactions queuing updates collide.
+   */
+  static void detected(TransactionBase tx, String cqId, Bytes serializedKey, long now) {
+    Bytes metaRow = CqLayout.getMetaRow(cqId);
+    for (RowColumnValue rcv : scan(tx, cqId)) {
+      Column col = rcv.getColumn();
+      if (isExpired(rcv.getValue(), now) && !col.getQualifier().equals(serializedKey)) {
+        tx.delete(metaRow, col);
+      }
+    }
+    tx.set(metaRow, getColumn(serializedKey), Bytes.of(Long.toString(now + DETECTED_EXPIRATION)));
+  }
+
+  static void remove(TransactionBase tx, String cqId, Bytes serializedKey) {
+    tx.delete(CqLayout.getMetaRow(cqId), getColumn(serializedKey));
+  }
+}
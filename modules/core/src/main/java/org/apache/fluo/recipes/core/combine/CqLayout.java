@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import org.apache.fluo.api.client.SnapshotBase;
+import org.apache.fluo.api.config.SimpleConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.Span;
+
+/**
+ * Describes how the keys of a combine queue are spread across buckets and where the rows for those
+ * buckets are stored. A combine queue starts with generation 0, which uses the number of buckets
+ * from the application configuration and the original row format. Each time a combine queue is
+ * resharded, a new generation is created that stores its rows under a prefix containing the
+ * generation and number of buckets, so both layouts can exist in the table while data is moved.
+ */
+// intentionally package private
+class CqLayout {
+
+  // the current layout, stored in the meta row
+  static final Column LAYOUT_COL = new Column("u", "layout");
+  // the layout being migrated from, stored in the meta row and in the bucket rows of the new layout
+  static final Column FROM_COL = new Column("u", "from");
+  // the layout to forward updates to, stored in the bucket rows of a layout that was replaced
+  static final Column RESHARD_COL = new Column("u", "reshard");
+
+  private static class LayoutKey {
+    final String cqId;
+    final int generation;
+    final int numBuckets;
+
+    LayoutKey(String cqId, int generation, int numBuckets) {
+      this.cqId = cqId;
+      this.generation = generation;
+      this.numBuckets = numBuckets;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof LayoutKey) {
+        LayoutKey olk = (LayoutKey) o;
+        return generation == olk.generation && numBuckets == olk.numBuckets
+            && cqId.equals(olk.cqId);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(cqId, generation, numBuckets);
+    }
+  }
+
+  // Layouts of later generations are parsed from bucket rows while processing, so they are cached
+  // to avoid regenerating the bucket ids each time. A combine queue only has a few generations.
+  private static final ConcurrentMap<LayoutKey, CqLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+  private final int generation;
+  private final int numBuckets;
+  private final Bytes updatePrefix;
+  private final Bytes dataPrefix;
+  private final byte[][] bucketIds;
+  private final int bucketIdLen;
+
+  CqLayout(String cqId, int generation, int numBuckets) {
+    Preconditions.checkArgument(generation >= 0);
+    Preconditions.checkArgument(numBuckets > 0);
+    this.generation = generation;
+    this.numBuckets = numBuckets;
+    String genId = generation == 0 ? "" : "g" + generation + "n" + numBuckets + ":";
+    this.updatePrefix = Bytes.of(cqId + ":u:" + genId);
+    this.dataPrefix = Bytes.of(cqId + ":d:" + genId);
+    this.bucketIds = genBucketIds(numBuckets);
+    this.bucketIdLen = bucketIds[0].length;
+  }
+
+  static String genBucketId(int bucket, int maxBucket) {
+    Preconditions.checkArgument(bucket >= 0);
+    Preconditions.checkArgument(maxBucket > 0);
+
+    int bits = 32 - Integer.numberOfLeadingZeros(maxBucket);
+    int bucketLen = bits / 4 + (bits % 4 > 0 ? 1 : 0);
+
+    return Strings.padStart(Integer.toHexString(bucket), bucketLen, '0');
+  }
+
+  /**
+   * Precomputes the encoded id of every bucket, so that routing an update to a bucket does not need
+   * to create a string.
+   */
+  private static byte[][] genBucketIds(int numBuckets) {
+    byte[][] ids = new byte[numBuckets][];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = genBucketId(i, numBuckets).getBytes(StandardCharsets.UTF_8);
+    }
+    return ids;
+  }
+
+  /**
+   * @return a cached layout, which is created when not found
+   */
+  static CqLayout of(String cqId, int generation, int numBuckets) {
+    return LAYOUTS.computeIfAbsent(new LayoutKey(cqId, generation, numBuckets),
+        k -> new CqLayout(k.cqId, k.generation, k.numBuckets));
+  }
+
+  static Bytes getMetaRow(String cqId) {
+    return Bytes.of(cqId + ":m:");
+  }
+
+  static CqLayout getInitial(String cqId, SimpleConfiguration appConfig) {
+    return of(cqId, 0, CqConfigurator.getNumBucket(cqId, appConfig));
+  }
+
+  /**
+   * @param initial the layout of generation 0
+   * @return the layout stored in the meta row or the initial layout if the combine queue was never
+   *         resharded.
+   */
+  static CqLayout read(SnapshotBase tx, String cqId, CqLayout initial) {
+    Bytes encoded = tx.get(getMetaRow(cqId), LAYOUT_COL);
+    if (encoded == null) {
+      return initial;
+    }
+    return decode(cqId, encoded);
+  }
+
+  static CqLayout decode(String cqId, Bytes encoded) {
+    String[] fields = encoded.toString().split(":");
+    return of(cqId, Integer.parseInt(fields[0]), Integer.parseInt(fields[1]));
+  }
+
+  Bytes encode() {
+    return Bytes.of(generation + ":" + numBuckets);
+  }
+
+  /**
+   * Determines the layout of an update row by parsing the generation and number of buckets from
+   * the row.
+   *
+   * @param initial the layout of generation 0
+   */
+  static CqLayout ofUpdateRow(String cqId, CqLayout initial, Bytes row) {
+    int start = initial.updatePrefix.length();
+    if (row.length() <= start || row.byteAt(start) != 'g') {
+      return initial;
+    }
+
+    // parse g<generation>n<numBuckets>: without creating strings
+    int pos = start + 1;
+    int generation = 0;
+    while (row.byteAt(pos) != 'n') {
+      generation = generation * 10 + (row.byteAt(pos++) - '0');
+    }
+
+    pos++;
+    int numBuckets = 0;
+    while (row.byteAt(pos) != ':') {
+      numBuckets = numBuckets * 10 + (row.byteAt(pos++) - '0');
+    }
+
+    return of(cqId, generation, numBuckets);
+  }
+
+  int getGeneration() {
+    return generation;
+  }
+
+  int getNumBuckets() {
+    return numBuckets;
+  }
+
+  Bytes getUpdatePrefix() {
+    return updatePrefix;
+  }
+
+  Bytes getDataPrefix() {
+    return dataPrefix;
+  }
+
+  byte[] getBucketId(int bucket) {
+    return bucketIds[bucket];
+  }
+
+  int getBucket(byte[] serializedKey) {
+    int hash = Hashing.murmur3_32().hashBytes(serializedKey).asInt();
+    return Math.abs(hash % numBuckets);
+  }
+
+  /**
+   * @return one of the buckets the updates for a hot key are spread across. Split 0 is the bucket
+   *         the key hashes to, the others are spaced out so they are likely in other tablets.
+   */
+  int getSplitBucket(byte[] serializedKey, int split, int splits) {
+    int stride = Math.max(1, numBuckets / splits);
+    return (getBucket(serializedKey) + split * stride) % numBuckets;
+  }
+
+  /**
+   * @param bucketKey a bucket id, separator, and serialized key
+   * @return false when the key is in a bucket other than the one it hashes to, which only happens
+   *         when its updates were split across buckets because it is a hot key.
+   */
+  boolean isHomeBucket(Bytes bucketKey) {
+    byte[] bucketId = bucketIds[getBucket(getSerializedKey(bucketKey).toArray())];
+    for (int i = 0; i < bucketIdLen; i++) {
+      if (bucketKey.byteAt(i) != bucketId[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param bucketKey a bucket id, separator, and serialized key
+   * @return the bucket key for the bucket the key hashes to
+   */
+  Bytes getHomeBucketKey(Bytes bucketKey) {
+    Bytes serializedKey = getSerializedKey(bucketKey);
+    byte[] bucketId = bucketIds[getBucket(serializedKey.toArray())];
+    return Bytes.builder(bucketIdLen + 1 + serializedKey.length()).append(bucketId).append(':')
+        .append(serializedKey).toBytes();
+  }
+
+  /**
+   * @return the row used for notifications and for tracking progress of the bucket
+   */
+  Bytes getBucketRow(int bucket) {
+    return Bytes.builder(updatePrefix.length() + bucketIdLen + 1).append(updatePrefix)
+        .append(bucketIds[bucket]).append(':').toBytes();
+  }
+
+  /**
+   * @param bucketKey a bucket id, separator, and serialized key
+   */
+  Bytes getBucketRow(Bytes bucketKey) {
+    return Bytes.builder(updatePrefix.length() + bucketIdLen + 1).append(updatePrefix)
+        .append(bucketKey.subSequence(0, bucketIdLen + 1)).toBytes();
+  }
+
+  /**
+   * @return the bucket number of a row returned by {@link #getBucketRow(int)}
+   */
+  int parseBucket(Bytes bucketRow) {
+    return Integer.parseInt(bucketRow.subSequence(updatePrefix.length(), bucketRow.length() - 1)
+        .toString(), 16);
+  }
+
+  Bytes getSerializedKey(Bytes bucketKey) {
+    return bucketKey.subSequence(bucketIdLen + 1, bucketKey.length());
+  }
+
+  boolean inSameBucket(Bytes bucketKey1, Bytes bucketKey2) {
+    return bucketKey1.startsWith(bucketKey2.subSequence(0, bucketIdLen + 1));
+  }
+
+  /**
+   * @return the row where the current value for a key is stored
+   */
+  Bytes getDataRow(byte[] serializedKey) {
+    byte[] bucketId = bucketIds[getBucket(serializedKey)];
+    return Bytes.builder(dataPrefix.length() + bucketId.length + 1 + serializedKey.length)
+        .append(dataPrefix).append(bucketId).append(':').append(serializedKey).toBytes();
+  }
+
+  /**
+   * @return the serialized key of a row returned by {@link #getDataRow(byte[])}
+   */
+  Bytes getSerializedKeyFromDataRow(Bytes dataRow) {
+    return dataRow.subSequence(dataPrefix.length() + bucketIdLen + 1, dataRow.length());
+  }
+
+  /**
+   * @return the span of all data rows in this layout
+   */
+  Span getDataSpan() {
+    if (generation == 0) {
+      // bucket ids are hex, so data rows of later generations sort after the end of this span
+      Bytes end =
+          Bytes.builder(dataPrefix.length() + 1).append(dataPrefix).append('g').toBytes();
+      return new Span(dataPrefix, true, end, false);
+    }
+    return Span.prefix(dataPrefix);
+  }
+}
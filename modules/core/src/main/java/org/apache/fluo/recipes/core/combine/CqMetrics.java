@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.metrics.Histogram;
+import org.apache.fluo.api.metrics.Meter;
+import org.apache.fluo.api.metrics.MetricsReporter;
+import org.apache.fluo.api.metrics.Timer;
+
+/**
+ * Reports what the observer of a combine queue does and tracks the keys with the most updates in
+ * each bucket processed by this worker. All metric names start with {@code combineq.<cqId>.}
+ *
+ * <ul>
+ * <li>{@code updatesRead} : histogram of updates read per transaction
+ * <li>{@code keysCombined} : histogram of keys processed per transaction
+ * <li>{@code hotKeyUpdates} : histogram of the most updates read for a single key per transaction
+ * <li>{@code requeued} : meter of keys whose updates were not all read, so their combined updates
+ * were queued again
+ * <li>{@code continued} : meter of transactions that stopped reading a bucket before its end
+ * because the buffer size was reached
+ * <li>{@code forwarded} : meter of updates forwarded to new buckets after resharding or to the
+ * bucket of a hot key after its updates were split
+ * <li>{@code combineTime} : timer of the time spent in the combiner per transaction
+ * <li>{@code changeObserverTime} : timer of calls to the change observer
+ * </ul>
+ */
+// intentionally package private
+class CqMetrics {
+
+  static final int HOT_KEYS_PER_BUCKET = 16;
+
+  static final CqMetrics NONE = new CqMetrics();
+
+  private final boolean enabled;
+  private final Histogram updatesRead;
+  private final Histogram keysCombined;
+  private final Histogram hotKeyUpdates;
+  private final Meter requeued;
+  private final Meter continued;
+  private final Meter forwarded;
+  private final Timer combineTime;
+  private final Timer changeObserverTime;
+
+  // maps bucket row to the keys in the bucket with the most updates
+  private final Map<Bytes, HotKeySketch> hotKeys = new ConcurrentHashMap<>();
+
+  private CqMetrics() {
+    enabled = false;
+    updatesRead = null;
+    keysCombined = null;
+    hotKeyUpdates = null;
+    requeued = null;
+    continued = null;
+    forwarded = null;
+    combineTime = null;
+    changeObserverTime = null;
+  }
+
+  CqMetrics(String cqId, MetricsReporter reporter) {
+    String prefix = "combineq." + cqId + ".";
+    enabled = true;
+    updatesRead = reporter.histogram(prefix + "updatesRead");
+    keysCombined = reporter.histogram(prefix + "keysCombined");
+    hotKeyUpdates = reporter.histogram(prefix + "hotKeyUpdates");
+    requeued = reporter.meter(prefix + "requeued");
+    continued = reporter.meter(prefix + "continued");
+    forwarded = reporter.meter(prefix + "forwarded");
+    combineTime = reporter.timer(prefix + "combineTime");
+    changeObserverTime = reporter.timer(prefix + "changeObserverTime");
+  }
+
+  static CqMetrics of(String cqId, MetricsReporter reporter) {
+    return reporter == null ? NONE : new CqMetrics(cqId, reporter);
+  }
+
+  Round newRound(CqLayout layout) {
+    return new Round(layout);
+  }
+
+  /**
+   * @return the hot keys of all buckets, mapping serialized key to estimated number of updates
+   */
+  Map<Bytes, Long> getHotKeys() {
+    Map<Bytes, Long> merged = new HashMap<>();
+    for (HotKeySketch sketch : hotKeys.values()) {
+      sketch.getCounts().forEach((k, c) -> merged.merge(k, c, Long::sum));
+    }
+    return merged;
+  }
+
+  /**
+   * Collects what happens in one transaction processing buckets and reports it when done.
+   */
+  class Round {
+    private final CqLayout layout;
+    private Bytes sketchBucketKey;
+    private HotKeySketch sketch;
+
+    private int updates = 0;
+    private int requeues = 0;
+    private boolean stopped = false;
+    private int forwards = 0;
+    private long maxKeyUpdates = 0;
+    private long changeObserverNanos = -1;
+    private TimedCombiner<?, ?> timedCombiner;
+
+    private Round(CqLayout layout) {
+      this.layout = layout;
+    }
+
+    void updateRead() {
+      updates++;
+    }
+
+    /**
+     * Called once for each key after reading all of its updates in this round.
+     *
+     * @param bucketKey a bucket id, separator, and serialized key
+     */
+    void keyRead(Bytes bucketKey, long keyUpdates) {
+      if (!enabled) {
+        return;
+      }
+      maxKeyUpdates = Math.max(maxKeyUpdates, keyUpdates);
+      // keys are read in bucket order, so only look up the sketch when the bucket changes
+      if (sketch == null || !layout.inSameBucket(bucketKey, sketchBucketKey)) {
+        sketch =
+            hotKeys.computeIfAbsent(layout.getBucketRow(bucketKey), k -> new HotKeySketch(
+                HOT_KEYS_PER_BUCKET));
+        sketchBucketKey = bucketKey;
+      }
+      sketch.add(layout.getSerializedKey(bucketKey), keyUpdates);
+    }
+
+    void requeued() {
+      requeues++;
+    }
+
+    void continued() {
+      stopped = true;
+    }
+
+    void forwarded(int n) {
+      forwards += n;
+    }
+
+    void changeObserverCalled(long nanos) {
+      changeObserverNanos = nanos;
+    }
+
+    /**
+     * @return a combiner that records the time spent combining, or the passed combiner when
+     *         metrics are disabled.
+     */
+    <K, V> Combiner<K, V> time(Combiner<K, V> combiner) {
+      if (!enabled) {
+        return combiner;
+      }
+      TimedCombiner<K, V> tc;
+      if (combiner instanceof BinaryCombiner) {
+        tc = new TimedBinaryCombiner<>((BinaryCombiner<K, V>) combiner);
+      } else {
+        tc = new TimedCombiner<>(combiner);
+      }
+      timedCombiner = tc;
+      return tc;
+    }
+
+    void report(int keys) {
+      if (!enabled) {
+        return;
+      }
+      updatesRead.update(updates);
+      keysCombined.update(keys);
+      hotKeyUpdates.update(maxKeyUpdates);
+      if (requeues > 0) {
+        requeued.mark(requeues);
+      }
+      if (stopped) {
+        continued.mark();
+      }
+      if (forwards > 0) {
+        forwarded.mark(forwards);
+      }
+      if (timedCombiner != null) {
+        combineTime.update(timedCombiner.nanos, TimeUnit.NANOSECONDS);
+      }
+      if (changeObserverNanos >= 0) {
+        changeObserverTime.update(changeObserverNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  private static class TimedCombiner<K, V> implements Combiner<K, V> {
+    private final Combiner<K, V> combiner;
+    long nanos = 0;
+
+    TimedCombiner(Combiner<K, V> combiner) {
+      this.combiner = combiner;
+    }
+
+    @Override
+    public Optional<V> combine(Input<K, V> input) {
+      long t1 = System.nanoTime();
+      try {
+        return combiner.combine(input);
+      } finally {
+        nanos += System.nanoTime() - t1;
+      }
+    }
+  }
+
+  private static class TimedBinaryCombiner<K, V> extends TimedCombiner<K, V> implements
+      BinaryCombiner<K, V> {
+    private final BinaryCombiner<K, V> combiner;
+
+    TimedBinaryCombiner(BinaryCombiner<K, V> combiner) {
+      super(combiner);
+      this.combiner = combiner;
+    }
+
+    @Override
+    public Optional<Bytes> combineSerialized(Bytes serializedKey,
+        Iterable<Bytes> serializedValues) {
+      long t1 = System.nanoTime();
+      try {
+        return combiner.combineSerialized(serializedKey, serializedValues);
+      } finally {
+        nanos += System.nanoTime() - t1;
+      }
+    }
+  }
+}
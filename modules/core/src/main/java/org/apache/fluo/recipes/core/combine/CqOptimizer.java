@@ -32,33 +32,31 @@ class CqOptimizer {
     int numBuckets = CqConfigurator.getNumBucket(cqId, appConfig);
     int bpt = CqConfigurator.getBucketsPerTablet(cqId, appConfig);
 
-    BytesBuilder rowBuilder = Bytes.builder();
-    rowBuilder.append(cqId);
-
-    List<Bytes> dataSplits = new ArrayList<>();
-    for (int i = bpt; i < numBuckets; i += bpt) {
-      String bucketId = CombineQueueImpl.genBucketId(i, numBuckets);
-      rowBuilder.setLength(cqId.length());
-      dataSplits.add(rowBuilder.append(":d:").append(bucketId).toBytes());
-    }
-    Collections.sort(dataSplits);
-
-    List<Bytes> updateSplits = new ArrayList<>();
-    for (int i = bpt; i < numBuckets; i += bpt) {
-      String bucketId = CombineQueueImpl.genBucketId(i, numBuckets);
-      rowBuilder.setLength(cqId.length());
-      updateSplits.add(rowBuilder.append(":u:").append(bucketId).toBytes());
-    }
-    Collections.sort(updateSplits);
-
     Bytes dataRangeEnd = Bytes.of(cqId + CqConfigurator.DATA_RANGE_END);
     Bytes updateRangeEnd = Bytes.of(cqId + CqConfigurator.UPDATE_RANGE_END);
 
     List<Bytes> splits = new ArrayList<>();
     splits.add(dataRangeEnd);
     splits.add(updateRangeEnd);
-    splits.addAll(dataSplits);
-    splits.addAll(updateSplits);
+    splits.addAll(getBucketSplits(CqLayout.of(cqId, 0, numBuckets), bpt));
+
+    TableOptimizations tableOptim = new TableOptimizations();
+    tableOptim.setSplits(splits);
+
+    tableOptim.setTabletGroupingRegex(Pattern.quote(cqId + ":") + "[du]:");
+
+    return tableOptim;
+  }
+
+  /**
+   * @return optimizations for the rows of a layout created by resharding
+   */
+  static TableOptimizations getTableOptimizations(String cqId, CqLayout layout, int bpt) {
+    List<Bytes> splits = new ArrayList<>();
+    // keep the rows of the new layout out of the tablets of the previous layout
+    splits.add(layout.getDataPrefix());
+    splits.add(layout.getUpdatePrefix());
+    splits.addAll(getBucketSplits(layout, bpt));
 
     TableOptimizations tableOptim = new TableOptimizations();
     tableOptim.setSplits(splits);
@@ -67,4 +65,28 @@ class CqOptimizer {
 
     return tableOptim;
   }
+
+  private static List<Bytes> getBucketSplits(CqLayout layout, int bpt) {
+    BytesBuilder rowBuilder = Bytes.builder();
+
+    List<Bytes> dataSplits = new ArrayList<>();
+    for (int i = bpt; i < layout.getNumBuckets(); i += bpt) {
+      rowBuilder.setLength(0);
+      dataSplits.add(rowBuilder.append(layout.getDataPrefix()).append(layout.getBucketId(i))
+          .toBytes());
+    }
+    Collections.sort(dataSplits);
+
+    List<Bytes> updateSplits = new ArrayList<>();
+    for (int i = bpt; i < layout.getNumBuckets(); i += bpt) {
+      rowBuilder.setLength(0);
+      updateSplits.add(rowBuilder.append(layout.getUpdatePrefix()).append(layout.getBucketId(i))
+          .toBytes());
+    }
+    Collections.sort(updateSplits);
+
+    List<Bytes> splits = new ArrayList<>(dataSplits);
+    splits.addAll(updateSplits);
+    return splits;
+  }
 }
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import org.apache.fluo.api.client.TransactionBase;
+import org.apache.fluo.api.config.SimpleConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.RowColumn;
+import org.apache.fluo.api.data.RowColumnValue;
+import org.apache.fluo.api.data.Span;
+import org.apache.fluo.recipes.core.common.TableOptimizations;
+
+/**
+ * Changes the number of buckets of a combine queue while it is in use. Resharding creates a new
+ * {@link CqLayout} and then the following happens until all data is in the new layout.
+ *
+ * <ul>
+ * <li>Updates queued using the old layout are forwarded to the new layout by the observers of the
+ * old buckets.
+ * <li>When processing a key, the observers of the new buckets read its current value from the old
+ * layout if it was not moved yet, and move it.
+ * <li>An observer moves all other current values from the old layout to the new layout.
+ * </ul>
+ */
+// intentionally package private
+class CqResharder {
+
+  // the data row where moving should continue
+  private static final Column MOVE_NEXT_COL = new Column("u", "moveNext");
+  // set when the current pass over the old data rows moved something
+  private static final Column MOVED_COL = new Column("u", "moved");
+
+  private static final Set<Column> META_COLS = ImmutableSet.of(CqLayout.LAYOUT_COL,
+      CqLayout.FROM_COL, MOVE_NEXT_COL, MOVED_COL);
+
+  // the max number of data rows moved per transaction
+  static final int MOVE_BATCH_SIZE = 1000;
+
+  static Column getNotifyColumn(String cqId) {
+    return new Column("fluoRecipes", "cfr:" + cqId);
+  }
+
+  static TableOptimizations reshard(TransactionBase tx, String cqId,
+      SimpleConfiguration appConfig, int numBuckets) {
+    Preconditions.checkArgument(numBuckets > 0, "numBuckets is <= 0 : " + numBuckets);
+    // without the observer that moves current values, resharding would never complete
+    Preconditions.checkState(CqConfigurator.getResharding(cqId, appConfig),
+        "Resharding is not enabled for combine queue %s", cqId);
+
+    Bytes metaRow = CqLayout.getMetaRow(cqId);
+    Map<Column, Bytes> meta =
+        tx.get(metaRow, ImmutableSet.of(CqLayout.LAYOUT_COL, CqLayout.FROM_COL));
+
+    Preconditions.checkState(!meta.containsKey(CqLayout.FROM_COL),
+        "Combine queue %s is still moving data for a previous reshard", cqId);
+
+    CqLayout current = CqLayout.getInitial(cqId, appConfig);
+    if (meta.containsKey(CqLayout.LAYOUT_COL)) {
+      current = CqLayout.decode(cqId, meta.get(CqLayout.LAYOUT_COL));
+    }
+    CqLayout next = CqLayout.of(cqId, current.getGeneration() + 1, numBuckets);
+
+    tx.set(metaRow, CqLayout.LAYOUT_COL, next.encode());
+    tx.set(metaRow, CqLayout.FROM_COL, current.encode());
+
+    Column bucketNotifyCol = CombineQueueImpl.getNotifyColumn(cqId);
+    for (int b = 0; b < current.getNumBuckets(); b++) {
+      Bytes bucketRow = current.getBucketRow(b);
+      tx.set(bucketRow, CqLayout.RESHARD_COL, next.encode());
+      // forward anything still queued in the old bucket
+      tx.setWeakNotification(bucketRow, bucketNotifyCol);
+    }
+
+    for (int b = 0; b < next.getNumBuckets(); b++) {
+      tx.set(next.getBucketRow(b), CqLayout.FROM_COL, current.encode());
+    }
+
+    tx.setWeakNotification(metaRow, getNotifyColumn(cqId));
+
+    return CqOptimizer.getTableOptimizations(cqId, next,
+        CqConfigurator.getBucketsPerTablet(cqId, appConfig));
+  }
+
+  /**
+   * Moves a batch of current values from the old layout to the new layout and notifies itself to
+   * move the next batch.
+   */
+  static void moveData(TransactionBase tx, String cqId) {
+    Bytes metaRow = CqLayout.getMetaRow(cqId);
+    Map<Column, Bytes> meta = tx.get(metaRow, META_COLS);
+
+    if (!meta.containsKey(CqLayout.FROM_COL)) {
+      return;
+    }
+
+    CqLayout from = CqLayout.decode(cqId, meta.get(CqLayout.FROM_COL));
+    CqLayout to = CqLayout.decode(cqId, meta.get(CqLayout.LAYOUT_COL));
+
+    Span span = from.getDataSpan();
+    Bytes moveNext = meta.get(MOVE_NEXT_COL);
+    if (moveNext != null) {
+      span = new Span(new RowColumn(moveNext), true, span.getEnd(), span.isEndInclusive());
+    }
+
+    Iterator<RowColumnValue> iter =
+        tx.scanner().over(span).fetch(CombineQueueImpl.DATA_COLUMN).build().iterator();
+
+    List<RowColumnValue> batch = new ArrayList<>();
+    while (batch.size() < MOVE_BATCH_SIZE && iter.hasNext()) {
+      batch.add(iter.next());
+    }
+
+    // maps old data rows to new data rows
+    Map<Bytes, Bytes> newRows = new HashMap<>();
+    for (RowColumnValue rcv : batch) {
+      Bytes serializedKey = from.getSerializedKeyFromDataRow(rcv.getRow());
+      newRows.put(rcv.getRow(), to.getDataRow(serializedKey.toArray()));
+    }
+
+    Map<Bytes, Map<Column, Bytes>> existing =
+        tx.get(newRows.values(), Collections.singleton(CombineQueueImpl.DATA_COLUMN));
+
+    for (RowColumnValue rcv : batch) {
+      tx.delete(rcv.getRow(), CombineQueueImpl.DATA_COLUMN);
+      Bytes newRow = newRows.get(rcv.getRow());
+      // if an observer already wrote the new row, then it has the latest value
+      if (!existing.containsKey(newRow)) {
+        tx.set(newRow, CombineQueueImpl.DATA_COLUMN, rcv.getValue());
+      }
+    }
+
+    if (iter.hasNext()) {
+      tx.set(metaRow, MOVE_NEXT_COL, iter.next().getRow());
+      if (!batch.isEmpty() && !meta.containsKey(MOVED_COL)) {
+        tx.set(metaRow, MOVED_COL, Bytes.EMPTY);
+      }
+      tx.setWeakNotification(metaRow, getNotifyColumn(cqId));
+    } else if (!batch.isEmpty() || meta.containsKey(MOVED_COL)) {
+      // Transactions that started before resharding may have written to the old layout while this
+      // pass was running, so start another pass. Finish after a pass that moved nothing.
+      if (moveNext != null) {
+        tx.delete(metaRow, MOVE_NEXT_COL);
+      }
+      if (meta.containsKey(MOVED_COL)) {
+        tx.delete(metaRow, MOVED_COL);
+      }
+      tx.setWeakNotification(metaRow, getNotifyColumn(cqId));
+    } else {
+      if (moveNext != null) {
+        tx.delete(metaRow, MOVE_NEXT_COL);
+      }
+      tx.delete(metaRow, CqLayout.FROM_COL);
+      // stops the observers of the new buckets from looking for values in the old layout
+      for (int b = 0; b < to.getNumBuckets(); b++) {
+        tx.delete(to.getBucketRow(b), CqLayout.FROM_COL);
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.fluo.api.data.Bytes;
+
+/**
+ * A cache of the current values of keys in a combine queue, grouped by bucket. Every transaction
+ * that changes current values in a bucket also writes a version for the bucket, which is the start
+ * timestamp of that transaction. Cached values for a bucket are only used when the version read
+ * from the bucket matches the version the values were cached with. A failed transaction never
+ * commits its version, so values cached by it are never used.
+ */
+// intentionally package private
+class CurrentValueCache {
+
+  private static class BucketValues {
+    final Bytes version;
+    // maps data row to current value, null when the key has no current value
+    final Map<Bytes, Bytes> values;
+
+    BucketValues(Bytes version, Map<Bytes, Bytes> values) {
+      this.version = version;
+      this.values = values;
+    }
+  }
+
+  private final Cache<Bytes, BucketValues> cache;
+
+  /**
+   * @param maxSize The maximum number of key values to cache.
+   */
+  CurrentValueCache(long maxSize) {
+    this.cache =
+        CacheBuilder.newBuilder().maximumWeight(maxSize)
+            .weigher((Bytes bucketRow, BucketValues bv) -> bv.values.size()).build();
+  }
+
+  /**
+   * @return The cached values for the bucket, or an empty map if nothing is cached for the version
+   *         read from the bucket.
+   */
+  Map<Bytes, Bytes> getValues(Bytes bucketRow, Bytes version) {
+    BucketValues bv = cache.getIfPresent(bucketRow);
+    if (bv == null || !bv.version.equals(version)) {
+      return Collections.emptyMap();
+    }
+    return bv.values;
+  }
+
+  /**
+   * Caches values read or written by a transaction.
+   *
+   * @param readVersion The version of the bucket read by the transaction.
+   * @param newVersion The version written by the transaction, or the version read if the
+   *        transaction did not change any current values in the bucket.
+   * @param values Maps data rows to the current value after the transaction, null when the key has
+   *        no value.
+   */
+  void update(Bytes bucketRow, Bytes readVersion, Bytes newVersion, Map<Bytes, Bytes> values) {
+    BucketValues bv = cache.getIfPresent(bucketRow);
+
+    Map<Bytes, Bytes> newValues;
+    if (bv != null && bv.version.equals(readVersion)) {
+      // cached values not changed by the transaction are still valid for the new version
+      newValues = new HashMap<>(bv.values);
+      newValues.putAll(values);
+    } else {
+      newValues = new HashMap<>(values);
+    }
+
+    cache.put(bucketRow, new BucketValues(newVersion, Collections.unmodifiableMap(newValues)));
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.base.Preconditions;
+import org.apache.fluo.api.data.Bytes;
+
+/**
+ * Tracks the keys of one bucket with the most updates using the Space-Saving algorithm. At most
+ * {@code capacity} keys are tracked. When an untracked key is added and the sketch is full, the key
+ * with the lowest count is replaced and the new key inherits its count. So counts may be too high,
+ * but never too low, and any key with more than {@code total / capacity} updates is tracked. Counts
+ * are halved when the total reaches a limit, so keys that stopped getting updates are eventually
+ * replaced.
+ */
+// intentionally package private
+class HotKeySketch {
+
+  static final long DECAY_TOTAL = 1 << 20;
+
+  private final int capacity;
+  // maps serialized key to its estimated count
+  private final Map<Bytes, long[]> counts = new HashMap<>();
+  private long total = 0;
+
+  HotKeySketch(int capacity) {
+    Preconditions.checkArgument(capacity > 0);
+    this.capacity = capacity;
+  }
+
+  synchronized void add(Bytes serializedKey, long updates) {
+    long[] count = counts.get(serializedKey);
+    if (count != null) {
+      count[0] += updates;
+    } else if (counts.size() < capacity) {
+      // copy, the key may refer to a large row read from the table
+      counts.put(Bytes.of(serializedKey.toArray()), new long[] {updates});
+    } else {
+      Entry<Bytes, long[]> min = null;
+      for (Entry<Bytes, long[]> entry : counts.entrySet()) {
+        if (min == null || entry.getValue()[0] < min.getValue()[0]) {
+          min = entry;
+        }
+      }
+      counts.remove(min.getKey());
+      counts.put(Bytes.of(serializedKey.toArray()), new long[] {min.getValue()[0] + updates});
+    }
+
+    total += updates;
+    if (total >= DECAY_TOTAL) {
+      total /= 2;
+      Iterator<long[]> iter = counts.values().iterator();
+      while (iter.hasNext()) {
+        long[] c = iter.next();
+        c[0] /= 2;
+        if (c[0] == 0) {
+          iter.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the tracked keys and their estimated number of updates
+   */
+  synchronized Map<Bytes, Long> getCounts() {
+    Map<Bytes, Long> ret = new HashMap<>();
+    counts.forEach((k, c) -> ret.put(k, c[0]));
+    return ret;
+  }
+}
@@ -16,6 +16,7 @@
 package org.apache.fluo.recipes.core.combine;
 
 import com.google.common.hash.Hashing;
+import org.apache.fluo.api.config.SimpleConfiguration;
 import org.apache.fluo.api.data.Bytes;
 import org.apache.fluo.api.data.Bytes.BytesBuilder;
 import org.apache.fluo.api.data.RowColumnValue;
@@ -30,23 +31,66 @@ class InitializerImpl<K, V> implements Initializer<K, V> {
 
   private SimpleSerializer serializer;
 
+  private SimpleSerializer valSerializer;
+
   private int numBuckets = -1;
 
-  InitializerImpl(String cqId, int numBuckets, SimpleSerializer serializer) {
+  // only set when using typed serialization
+  private Class<K> keyType;
+  private Class<V> valType;
+
+  InitializerImpl(String cqId, int numBuckets, SimpleSerializer serializer,
+      SimpleSerializer valSerializer) {
+    this(cqId, numBuckets, serializer, valSerializer, null, null);
+  }
+
+  InitializerImpl(String cqId, int numBuckets, SimpleSerializer serializer,
+      SimpleSerializer valSerializer, Class<K> keyType, Class<V> valType) {
     this.dataPrefix = Bytes.of(cqId + ":d:");
     this.numBuckets = numBuckets;
     this.serializer = serializer;
+    this.valSerializer = valSerializer;
+    this.keyType = keyType;
+    this.valType = valType;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <K, V> InitializerImpl<K, V> create(String cqId, SimpleConfiguration appConfig) {
+    int numBuckets = CqConfigurator.getNumBucket(cqId, appConfig);
+    SimpleSerializer serializer = SimpleSerializer.getInstance(appConfig);
+    SimpleSerializer valSerializer =
+        CqConfigurator.getValueSerializer(cqId, appConfig, serializer);
+
+    if (!CqConfigurator.getTypedSerialization(cqId, appConfig)) {
+      return new InitializerImpl<>(cqId, numBuckets, serializer, valSerializer);
+    }
+
+    ClassLoader cl = InitializerImpl.class.getClassLoader();
+    try {
+      Class<K> keyType = (Class<K>) cl.loadClass(CqConfigurator.getKeyType(cqId, appConfig));
+      Class<V> valType = (Class<V>) cl.loadClass(CqConfigurator.getValueType(cqId, appConfig));
+      return new InitializerImpl<>(cqId, numBuckets, serializer, valSerializer, keyType, valType);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   public RowColumnValue convert(K key, V val) {
-    byte[] k = serializer.serialize(key);
+    byte[] k =
+        keyType == null ? serializer.serialize(key) : serializer.serializeTyped(key, keyType);
     int hash = Hashing.murmur3_32().hashBytes(k).asInt();
-    String bucketId = CombineQueueImpl.genBucketId(Math.abs(hash % numBuckets), numBuckets);
+    String bucketId = CqLayout.genBucketId(Math.abs(hash % numBuckets), numBuckets);
 
     BytesBuilder bb = Bytes.builder(dataPrefix.length() + bucketId.length() + 1 + k.length);
     Bytes row = bb.append(dataPrefix).append(bucketId).append(':').append(k).toBytes();
-    byte[] v = serializer.serialize(val);
 
-    return new RowColumnValue(row, CombineQueueImpl.DATA_COLUMN, Bytes.of(v));
+    BytesBuilder vb = Bytes.builder();
+    if (valType == null) {
+      valSerializer.serialize(val, vb);
+    } else {
+      valSerializer.serializeTyped(val, valType, vb);
+    }
+
+    return new RowColumnValue(row, CombineQueueImpl.DATA_COLUMN, vb.toBytes());
   }
 }
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.Optional;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Longs;
+import org.apache.fluo.api.config.SimpleConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+
+/**
+ * Sums long values without deserializing them and returns Optional.empty() when the sum is zero.
+ * Values must be serialized as fixed width 8 byte longs, which is done by configuring the combine
+ * queue to use {@link LongSerializer} for values. Registering an observer with this combiner fails
+ * when the combine queue uses another value serializer.
+ *
+ * <pre>
+ * <code>
+ *   CombineQueue.configure("wc").keyType(String.class).valueType(Long.class).buckets(119)
+ *       .valueSerializer(LongSumBinaryCombiner.LongSerializer.class).save(fluoConfig);
+ * </code>
+ * </pre>
+ *
+ * @since 1.2.0
+ */
+public class LongSumBinaryCombiner<K> extends SummingCombiner<K> implements
+    BinaryCombiner<K, Long> {
+
+  /**
+   * Serializes {@link Long} values as fixed width 8 byte big endian longs.
+   *
+   * @since 1.2.0
+   */
+  public static class LongSerializer implements SimpleSerializer {
+
+    @Override
+    public void init(SimpleConfiguration appConfig) {}
+
+    @Override
+    public <T> byte[] serialize(T obj) {
+      return Longs.toByteArray((Long) obj);
+    }
+
+    @Override
+    public <T> T deserialize(byte[] serObj, Class<T> clazz) {
+      Preconditions.checkArgument(serObj.length == 8, "Expected 8 bytes, saw %s", serObj.length);
+      return clazz.cast(Longs.fromByteArray(serObj));
+    }
+  }
+
+  private static long readLong(Bytes b) {
+    Preconditions.checkArgument(b.length() == 8, "Expected 8 bytes, saw %s", b.length());
+    long l = 0;
+    for (int i = 0; i < 8; i++) {
+      l = (l << 8) | (b.byteAt(i) & 0xff);
+    }
+    return l;
+  }
+
+  @Override
+  public Optional<Bytes> combineSerialized(Bytes serializedKey, Iterable<Bytes> serializedValues) {
+    long sum = 0;
+    for (Bytes b : serializedValues) {
+      sum += readLong(b);
+    }
+
+    return sum == 0 ? Optional.empty() : Optional.of(Bytes.of(Longs.toByteArray(sum)));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.apache.fluo.api.client.TransactionBase;
+import org.apache.fluo.recipes.core.combine.CombineQueue.WriteBuffer;
+
+// intentionally package private
+class WriteBufferImpl<K, V> implements WriteBuffer<K, V> {
+
+  private static class ListInput<K, V> implements Combiner.Input<K, V> {
+    private final K key;
+    private final List<V> values;
+
+    ListInput(K key, List<V> values) {
+      this.key = key;
+      this.values = values;
+    }
+
+    @Override
+    public K getKey() {
+      return key;
+    }
+
+    @Override
+    public Stream<V> stream() {
+      return values.stream();
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+      return values.iterator();
+    }
+  }
+
+  private final CombineQueue<K, V> combineQ;
+  private final TransactionBase tx;
+  private final Combiner<K, V> combiner;
+
+  private Map<K, List<V>> buffer = new HashMap<>();
+
+  WriteBufferImpl(CombineQueue<K, V> combineQ, TransactionBase tx, Combiner<K, V> combiner) {
+    this.combineQ = Objects.requireNonNull(combineQ);
+    this.tx = Objects.requireNonNull(tx);
+    this.combiner = Objects.requireNonNull(combiner);
+  }
+
+  @Override
+  public void add(K key, V update) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(update);
+    buffer.computeIfAbsent(key, k -> new ArrayList<>(1)).add(update);
+  }
+
+  @Override
+  public void addAll(Map<K, V> updates) {
+    updates.forEach(this::add);
+  }
+
+  @Override
+  public void flush() {
+    if (buffer.isEmpty()) {
+      return;
+    }
+
+    Map<K, V> combined = new HashMap<>();
+    for (Entry<K, List<V>> entry : buffer.entrySet()) {
+      List<V> updates = entry.getValue();
+      if (updates.size() == 1) {
+        combined.put(entry.getKey(), updates.get(0));
+      } else {
+        Optional<V> nv = combiner.combine(new ListInput<>(entry.getKey(), updates));
+        if (nv.isPresent()) {
+          combined.put(entry.getKey(), nv.get());
+        }
+      }
+    }
+
+    buffer = new HashMap<>();
+
+    if (!combined.isEmpty()) {
+      combineQ.addAll(tx, combined);
+    }
+  }
+}
@@ -16,9 +16,12 @@
 package org.apache.fluo.recipes.core.export;
 
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import org.apache.fluo.api.client.TransactionBase;
 import org.apache.fluo.api.client.scanner.CellScanner;
 import org.apache.fluo.api.data.Bytes;
@@ -38,16 +41,25 @@ import org.apache.fluo.recipes.core.types.TypedTransactionBase;
 class ExportBucket {
   private static final String NOTIFICATION_CF = "fluoRecipes";
   private static final String NOTIFICATION_CQ_PREFIX = "eq:";
-  private static final Column EXPORT_COL = new Column("e", "v");
+  static final Column EXPORT_COL = new Column("e", "v");
   private static final Column NEXT_COL = new Column("e", "next");
+  // set on the buckets of a layout that was resharded, contains the new layout. When resharding is
+  // enabled, transactions queuing in a bucket read lock it.
+  private static final Column RESHARD_COL = new Column("e", "reshard");
+  // set on the buckets of a new layout until the buckets of the previous layout are empty
+  private static final Column WAIT_COL = new Column("e", "wait");
+
+  private static final Set<Column> STATE_COLS = ImmutableSet.of(NEXT_COL, RESHARD_COL, WAIT_COL);
 
   static Column newNotificationColumn(String queueId) {
     return new Column(NOTIFICATION_CF, NOTIFICATION_CQ_PREFIX + queueId);
   }
 
+  private final TransactionBase tx;
   private final TypedTransactionBase ttx;
   private final String qid;
   private final Bytes bucketRow;
+  private Map<Column, Bytes> state;
 
   static String genBucketId(int bucket, int maxBucket) {
     Preconditions.checkArgument(bucket >= 0);
@@ -63,15 +75,18 @@ class ExportBucket {
     return Bytes.of(qid + ":" + genBucketId(bucket, numBuckets));
   }
 
-  ExportBucket(TransactionBase tx, String qid, int bucket, int numBuckets) {
+  ExportBucket(TransactionBase tx, ExportLayout layout, int bucket) {
     // TODO encode in a more robust way... but for now fail early
-    Preconditions.checkArgument(!qid.contains(":"), "Export QID can not contain :");
+    Preconditions.checkArgument(!layout.getQueueId().contains(":"),
+        "Export QID can not contain :");
+    this.tx = tx;
     this.ttx = new TypeLayer(new StringEncoder()).wrap(tx);
-    this.qid = qid;
-    this.bucketRow = generateBucketRow(qid, bucket, numBuckets);
+    this.qid = layout.getQueueId();
+    this.bucketRow = layout.getBucketRow(bucket);
   }
 
   ExportBucket(TransactionBase tx, Bytes bucketRow) {
+    this.tx = tx;
     this.ttx = new TypeLayer(new StringEncoder()).wrap(tx);
 
     int colonLoc = -1;
@@ -103,6 +118,36 @@ class ExportBucket {
     bb.append((byte) (l >>> 0));
   }
 
+  /**
+   * @return the bucket row of a row containing an export entry, without the trailing separator
+   */
+  static Bytes getBucketRow(Bytes exportRow) {
+    // the bucket rows of generations after the first contain one more separator
+    int separators = 2;
+    int firstColon = -1;
+    for (int i = 0; i < exportRow.length(); i++) {
+      if (exportRow.byteAt(i) == ':') {
+        if (firstColon == -1) {
+          firstColon = i;
+          if (i + 1 < exportRow.length() && exportRow.byteAt(i + 1) == 'g') {
+            separators = 3;
+          }
+        }
+        if (--separators == 0) {
+          return exportRow.subSequence(0, i);
+        }
+      }
+    }
+    throw new IllegalArgumentException("Invalid export row " + exportRow);
+  }
+
+  /**
+   * @return the sequence number of a row containing an export entry
+   */
+  static long getSequence(Bytes exportRow) {
+    return decodeSeq(exportRow.subSequence(exportRow.length() - 8, exportRow.length()));
+  }
+
   private static long decodeSeq(Bytes seq) {
     return (((long) seq.byteAt(0) << 56) + ((long) (seq.byteAt(1) & 255) << 48)
         + ((long) (seq.byteAt(2) & 255) << 40) + ((long) (seq.byteAt(3) & 255) << 32)
@@ -110,12 +155,20 @@ class ExportBucket {
         + ((seq.byteAt(6) & 255) << 8) + ((seq.byteAt(7) & 255) << 0));
   }
 
-  public void add(long seq, byte[] key, byte[] value) {
+  public void add(long seq, byte[] key, Bytes value) {
     BytesBuilder builder =
         Bytes.builder(bucketRow.length() + 1 + key.length + 8).append(bucketRow).append(':')
             .append(key);
     encSeq(builder, seq);
-    ttx.set(builder.toBytes(), EXPORT_COL, Bytes.of(value));
+    ttx.set(builder.toBytes(), EXPORT_COL, value);
+  }
+
+  public void add(long seq, Bytes key, Bytes value) {
+    BytesBuilder builder =
+        Bytes.builder(bucketRow.length() + 1 + key.length() + 8).append(bucketRow).append(':')
+            .append(key);
+    encSeq(builder, seq);
+    ttx.set(builder.toBytes(), EXPORT_COL, value);
   }
 
   /**
@@ -170,10 +223,9 @@ class ExportBucket {
 
       ExportEntry ee = new ExportEntry();
 
-      ee.key = keyBytes.toArray();
+      ee.key = keyBytes;
       ee.seq = decodeSeq(seqBytes);
-      // TODO maybe leave as Bytes?
-      ee.value = rowColVal.getValue().toArray();
+      ee.value = rowColVal.getValue();
 
       lastRow = row;
 
@@ -186,13 +238,63 @@ class ExportBucket {
     }
   }
 
+  /**
+   * Reads the continue row and resharding state of the bucket in a single get.
+   */
+  private Map<Column, Bytes> getState() {
+    if (state == null) {
+      state = ttx.get(getMinimalRow(), STATE_COLS);
+    }
+    return state;
+  }
+
   public Bytes getContinueRow() {
-    return ttx.get(getMinimalRow(), NEXT_COL);
+    return getState().get(NEXT_COL);
+  }
+
+  /**
+   * @return the layout entries in this bucket should be moved to, or null when this bucket was not
+   *         resharded.
+   */
+  public ExportLayout getReshardTarget() {
+    Bytes encoded = getState().get(RESHARD_COL);
+    if (encoded == null) {
+      return null;
+    }
+    return ExportLayout.decode(qid, encoded);
+  }
+
+  /**
+   * Checks if this bucket was resharded while acquiring a read lock, so that this transaction
+   * collides with any transaction that reshards the bucket before this one commits.
+   */
+  public boolean readLockResharded() {
+    return tx.withReadLock().get(getMinimalRow(), RESHARD_COL) != null;
+  }
+
+  public void setReshardTarget(ExportLayout layout) {
+    ttx.set(getMinimalRow(), RESHARD_COL, layout.encode());
+  }
+
+  /**
+   * @return true when this bucket must not export until the buckets of the previous layout are
+   *         empty.
+   */
+  public boolean isWaiting() {
+    return getState().containsKey(WAIT_COL);
+  }
+
+  public void setWaiting() {
+    ttx.set(getMinimalRow(), WAIT_COL, Bytes.EMPTY);
+  }
+
+  public void clearWaiting() {
+    ttx.delete(getMinimalRow(), WAIT_COL);
   }
 
   public void setContinueRow(ExportEntry ee) {
     BytesBuilder builder =
-        Bytes.builder(bucketRow.length() + 1 + ee.key.length + 8).append(bucketRow).append(':')
+        Bytes.builder(bucketRow.length() + 1 + ee.key.length() + 8).append(bucketRow).append(':')
             .append(ee.key);
     encSeq(builder, ee.seq);
     Bytes nextRow = builder.toBytes();
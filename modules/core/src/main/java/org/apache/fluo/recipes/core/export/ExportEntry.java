@@ -15,9 +15,12 @@
 
 package org.apache.fluo.recipes.core.export;
 
+import org.apache.fluo.api.data.Bytes;
+
 // This class intentionally package private.
 class ExportEntry {
-  byte[] key;
+  // these refer to the bytes of the row and value read, so no copies are made
+  Bytes key;
   long seq;
-  byte[] value;
+  Bytes value;
 }
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.export;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import org.apache.fluo.api.client.SnapshotBase;
+import org.apache.fluo.api.config.SimpleConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.Span;
+
+/**
+ * Describes how the keys of an export queue are spread across buckets. An export queue starts with
+ * generation 0, which uses the number of buckets from the application configuration and the
+ * original row format. Each time an export queue is resharded, a new generation is created whose
+ * bucket rows contain the generation and number of buckets, so old and new buckets can exist in
+ * the table at the same time.
+ */
+// This class intentionally package private.
+class ExportLayout {
+
+  // the current layout, stored in the meta row
+  static final Column LAYOUT_COL = new Column("e", "layout");
+
+  private final String queueId;
+  private final int generation;
+  private final int numBuckets;
+
+  ExportLayout(String queueId, int generation, int numBuckets) {
+    Preconditions.checkArgument(generation >= 0);
+    Preconditions.checkArgument(numBuckets > 0);
+    this.queueId = queueId;
+    this.generation = generation;
+    this.numBuckets = numBuckets;
+  }
+
+  /**
+   * @return the layout of generation 0, which uses the configured number of buckets
+   */
+  static ExportLayout getInitial(String queueId, SimpleConfiguration appConfig) {
+    return new ExportLayout(queueId, 0, FluentConfigurator.load(queueId, appConfig).buckets);
+  }
+
+  static Bytes getMetaRow(String queueId) {
+    return Bytes.of(queueId + ":m:");
+  }
+
+  /**
+   * @param initial the layout of generation 0
+   * @return the layout stored in the meta row or the initial layout if the export queue was never
+   *         resharded.
+   */
+  static ExportLayout read(SnapshotBase tx, String queueId, ExportLayout initial) {
+    Bytes encoded = tx.get(getMetaRow(queueId), LAYOUT_COL);
+    if (encoded == null) {
+      return initial;
+    }
+    return decode(queueId, encoded);
+  }
+
+  static ExportLayout decode(String queueId, Bytes encoded) {
+    String[] fields = encoded.toString().split(":");
+    return new ExportLayout(queueId, Integer.parseInt(fields[0]), Integer.parseInt(fields[1]));
+  }
+
+  Bytes encode() {
+    return Bytes.of(generation + ":" + numBuckets);
+  }
+
+  String getQueueId() {
+    return queueId;
+  }
+
+  int getGeneration() {
+    return generation;
+  }
+
+  int getNumBuckets() {
+    return numBuckets;
+  }
+
+  int getBucket(byte[] key) {
+    int hash = Hashing.murmur3_32().hashBytes(key).asInt();
+    return Math.abs(hash % numBuckets);
+  }
+
+  /**
+   * @return the bucket row in the format used by {@link ExportBucket}, without the trailing
+   *         separator. Bucket ids are hex, so the rows of later generations sort after all rows of
+   *         generation 0.
+   */
+  Bytes getBucketRow(int bucket) {
+    if (generation == 0) {
+      return ExportBucket.generateBucketRow(queueId, bucket, numBuckets);
+    }
+    return Bytes.of(queueId + ":g" + generation + "n" + numBuckets + ":"
+        + ExportBucket.genBucketId(bucket, numBuckets));
+  }
+
+  /**
+   * @return the row all bucket rows of this layout start with
+   */
+  Bytes getPrefix() {
+    if (generation == 0) {
+      return Bytes.of(queueId + ":");
+    }
+    return Bytes.of(queueId + ":g" + generation + "n" + numBuckets + ":");
+  }
+
+  /**
+   * @return a span that contains all rows of this layout and no rows of other layouts
+   */
+  Span getSpan() {
+    if (generation == 0) {
+      // bucket ids are hex, so this excludes later generations and the meta row
+      return new Span(Bytes.of(queueId + ":"), true, Bytes.of(queueId + ":g"), false);
+    }
+    return Span.prefix(getPrefix());
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.export;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.fluo.api.metrics.Histogram;
+import org.apache.fluo.api.metrics.Meter;
+import org.apache.fluo.api.metrics.MetricsReporter;
+import org.apache.fluo.api.metrics.Timer;
+
+/**
+ * Reports what the observer of an export queue does. All metric names start with
+ * {@code exportq.<queueId>.} The number of entries queued in a bucket is not reported, because the
+ * observer stops reading a bucket at the buffer size. {@link ExportQueue#getBacklog} scans for it.
+ *
+ * <ul>
+ * <li>{@code exported} : meter of entries passed to the exporter
+ * <li>{@code moved} : meter of entries moved to new buckets after resharding
+ * <li>{@code continued} : meter of transactions that stopped reading a bucket because the buffer
+ * size was reached
+ * <li>{@code batchSize} : histogram of entries read per transaction
+ * <li>{@code lag} : histogram of the age in milliseconds of the oldest entry passed to the
+ * exporter. Sequence numbers are Fluo timestamps, which {@link TimestampClock} converts to times
+ * using the start timestamps of transactions seen by this process. The age is a lower bound. Ages
+ * older than the samples kept, which cover at least the last hour, are reported as the age of the
+ * oldest sample.
+ * <li>{@code exportTime} : timer of calls to the exporter
+ * </ul>
+ */
+// This class intentionally package private.
+class ExportMetrics {
+
+  static final ExportMetrics NONE = new ExportMetrics();
+
+  private final boolean enabled;
+  private final Meter exported;
+  private final Meter moved;
+  private final Meter continued;
+  private final Histogram batchSize;
+  private final Histogram lag;
+  private final Timer exportTime;
+  private final TimestampClock clock;
+
+  private ExportMetrics() {
+    enabled = false;
+    exported = null;
+    moved = null;
+    continued = null;
+    batchSize = null;
+    lag = null;
+    exportTime = null;
+    clock = null;
+  }
+
+  ExportMetrics(String queueId, MetricsReporter reporter) {
+    String prefix = "exportq." + queueId + ".";
+    enabled = true;
+    exported = reporter.meter(prefix + "exported");
+    moved = reporter.meter(prefix + "moved");
+    continued = reporter.meter(prefix + "continued");
+    batchSize = reporter.histogram(prefix + "batchSize");
+    lag = reporter.histogram(prefix + "lag");
+    exportTime = reporter.timer(prefix + "exportTime");
+    clock = TimestampClock.forQueue(queueId);
+  }
+
+  static ExportMetrics of(String queueId, MetricsReporter reporter) {
+    return reporter == null ? NONE : new ExportMetrics(queueId, reporter);
+  }
+
+  void exported(int entries, long startTs, long oldestSeq, long nanos) {
+    if (enabled) {
+      exported.mark(entries);
+      batchSize.update(entries);
+      if (entries > 0) {
+        long now = System.currentTimeMillis();
+        clock.sample(startTs, now);
+        lag.update(clock.age(oldestSeq, now));
+      }
+      exportTime.update(nanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  void moved(int entries) {
+    if (enabled) {
+      moved.mark(entries);
+      batchSize.update(entries);
+    }
+  }
+
+  void continued() {
+    if (enabled) {
+      continued.mark();
+    }
+  }
+}
@@ -71,7 +71,8 @@ public class ExportObserver<K, V> extends org.apache.fluo.api.observer.AbstractO
     });
 
     this.eoi =
-        new ExportObserverImpl<K, V>(queueId, opts.fluentCfg, serializer, exporter::processExports);
+        new ExportObserverImpl<K, V>(queueId, opts.fluentCfg, serializer, exporter::processExports,
+            ExportMetrics.NONE);
 
   }
 
@@ -15,7 +15,9 @@
 
 package org.apache.fluo.recipes.core.export;
 
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 
 import com.google.common.collect.Iterators;
 import org.apache.fluo.api.client.TransactionBase;
@@ -33,11 +35,26 @@ class ExportObserverImpl<K, V> implements Observer {
   SimpleSerializer serializer;
   private org.apache.fluo.recipes.core.export.function.Exporter<K, V> exporter;
   private long memLimit;
+  private boolean typedSer;
+  private ExportMetrics metrics;
+
+  // counts the entries passed to the exporter and tracks the oldest
+  private static class BatchStats {
+    int entries = 0;
+    long oldestSeq = Long.MAX_VALUE;
+
+    void add(ExportEntry ee) {
+      entries++;
+      oldestSeq = Math.min(oldestSeq, ee.seq);
+    }
+  }
 
   @SuppressWarnings("unchecked")
   ExportObserverImpl(String queueId, FluentConfigurator opts, SimpleSerializer serializer,
-      org.apache.fluo.recipes.core.export.function.Exporter<K, V> exportConsumer) throws Exception {
+      org.apache.fluo.recipes.core.export.function.Exporter<K, V> exportConsumer,
+      ExportMetrics metrics) throws Exception {
     this.queueId = queueId;
+    this.metrics = metrics;
 
     // TODO move class loading to centralized place... also attempt to check type params
     keyType = (Class<K>) getClass().getClassLoader().loadClass(opts.keyType);
@@ -47,26 +64,49 @@ class ExportObserverImpl<K, V> implements Observer {
     this.serializer = serializer;
 
     memLimit = opts.getBufferSize();
+    typedSer = opts.getTypedSerialization();
+  }
+
+  private <T> T deserialize(Bytes serObj, Class<T> type) {
+    if (typedSer) {
+      return serializer.deserializeTyped(serObj, type);
+    }
+    return serializer.deserialize(serObj, type);
   }
 
   @Override
   public void process(TransactionBase tx, Bytes row, Column col) throws Exception {
     ExportBucket bucket = new ExportBucket(tx, row);
 
+    if (bucket.isWaiting()) {
+      // This bucket was created by resharding and the buckets of the previous layout still have
+      // entries. The resharder will notify this bucket when it can export.
+      return;
+    }
+
     Bytes continueRow = bucket.getContinueRow();
 
     Iterator<ExportEntry> input = bucket.getExportIterator(continueRow);
     MemLimitIterator memLimitIter = new MemLimitIterator(input, memLimit, 8 + queueId.length());
 
-    Iterator<SequencedExport<K, V>> exportIterator =
-        Iterators.transform(
-            memLimitIter,
-            ee -> new SequencedExport<>(serializer.deserialize(ee.key, keyType), serializer
-                .deserialize(ee.value, valType), ee.seq));
-
-    exportIterator = Iterators.consumingIterator(exportIterator);
-
-    exporter.export(exportIterator);
+    ExportLayout reshardTarget = bucket.getReshardTarget();
+    if (reshardTarget == null) {
+      BatchStats stats = new BatchStats();
+      Iterator<SequencedExport<K, V>> exportIterator = Iterators.transform(memLimitIter, ee -> {
+        stats.add(ee);
+        return new SequencedExport<>(deserialize(ee.key, keyType), deserialize(ee.value, valType),
+            ee.seq);
+      });
+
+      exportIterator = Iterators.consumingIterator(exportIterator);
+
+      long t1 = System.nanoTime();
+      exporter.export(exportIterator);
+      long exportTime = System.nanoTime() - t1;
+      metrics.exported(stats.entries, tx.getStartTimestamp(), stats.oldestSeq, exportTime);
+    } else {
+      metrics.moved(move(tx, memLimitIter, reshardTarget));
+    }
 
     if (input.hasNext() || continueRow != null) {
       // not everything was processed so notify self OR new data may have been inserted above the
@@ -79,6 +119,7 @@ class ExportObserverImpl<K, V> implements Observer {
         // stopped because of mem limit... set continue key
         bucket.setContinueRow(input.next());
         continueRow = null;
+        metrics.continued();
       }
     }
 
@@ -87,4 +128,29 @@ class ExportObserverImpl<K, V> implements Observer {
     }
   }
 
+  /**
+   * Moves entries from a bucket that was resharded to the buckets of the new layout, keeping the
+   * key and sequence number of each entry.
+   *
+   * @return the number of entries moved
+   */
+  private static int move(TransactionBase tx, Iterator<ExportEntry> entries, ExportLayout target) {
+    int moved = 0;
+    Set<Integer> bucketsNotified = new HashSet<>();
+    while (entries.hasNext()) {
+      ExportEntry ee = entries.next();
+      int bucketId = target.getBucket(ee.key.toArray());
+      ExportBucket bucket = new ExportBucket(tx, target, bucketId);
+      bucket.add(ee.seq, ee.key, ee.value);
+      entries.remove();
+      moved++;
+
+      if (bucketsNotified.add(bucketId)) {
+        // needed when the new buckets are already exporting
+        bucket.notifyExportObserver();
+      }
+    }
+    return moved;
+  }
+
 }
@@ -25,11 +25,16 @@ import java.util.Set;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Preconditions;
-import com.google.common.hash.Hashing;
+import org.apache.fluo.api.client.SnapshotBase;
 import org.apache.fluo.api.client.TransactionBase;
+import org.apache.fluo.api.client.scanner.CellScanner;
 import org.apache.fluo.api.config.FluoConfiguration;
 import org.apache.fluo.api.config.SimpleConfiguration;
 import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Bytes.BytesBuilder;
+import org.apache.fluo.api.data.RowColumnValue;
+import org.apache.fluo.api.data.Span;
+import org.apache.fluo.api.metrics.MetricsReporter;
 import org.apache.fluo.api.observer.Observer;
 import org.apache.fluo.api.observer.Observer.NotificationType;
 import org.apache.fluo.api.observer.ObserverProvider;
@@ -45,22 +50,57 @@ public class ExportQueue<K, V> {
   static final String RANGE_BEGIN = "#";
   static final String RANGE_END = ":~";
 
-  private int numBuckets;
+  // how long the layout used to queue exports is cached before it is read again
+  static final long LAYOUT_CACHE_TIME = 60000;
+
+  private final ExportLayout initialLayout;
   private SimpleSerializer serializer;
   private String queueId;
+  private TimestampClock clock;
   private FluentConfigurator opts;
+  private final boolean resharding;
+  // only set when using typed serialization
+  private Class<K> keyType;
+  private Class<V> valType;
+
+  // When resharding is enabled, queuing in a bucket checks if the bucket was resharded, so the
+  // layout used for queuing can be cached.
+  private volatile ExportLayout writeLayout;
+  private volatile long writeLayoutTime;
 
   // usage hint : could be created once in an observers init method
   // usage hint : maybe have a queue for each type of data being exported???
   // maybe less queues are
   // more efficient though because more batching at export time??
+  @SuppressWarnings("unchecked")
   ExportQueue(FluentConfigurator opts, SimpleSerializer serializer) throws Exception {
     // TODO sanity check key type based on type params
     // TODO defer creating classes until needed.. so that its not done during Fluo init
     this.queueId = opts.queueId;
-    this.numBuckets = opts.buckets;
+    this.clock = TimestampClock.forQueue(queueId);
+    this.initialLayout = new ExportLayout(queueId, 0, opts.buckets);
     this.serializer = serializer;
     this.opts = opts;
+    this.resharding = opts.getResharding();
+    if (opts.getTypedSerialization()) {
+      this.keyType = (Class<K>) getClass().getClassLoader().loadClass(opts.keyType);
+      this.valType = (Class<V>) getClass().getClassLoader().loadClass(opts.valueType);
+    }
+  }
+
+  private ExportLayout getWriteLayout(TransactionBase tx) {
+    ExportLayout layout = writeLayout;
+    if (layout == null || System.currentTimeMillis() - writeLayoutTime > LAYOUT_CACHE_TIME) {
+      layout = readWriteLayout(tx);
+    }
+    return layout;
+  }
+
+  private ExportLayout readWriteLayout(TransactionBase tx) {
+    ExportLayout layout = ExportLayout.read(tx, queueId, initialLayout);
+    writeLayout = layout;
+    writeLayoutTime = System.currentTimeMillis();
+    return layout;
   }
 
   public void add(TransactionBase tx, K key, V value) {
@@ -68,29 +108,82 @@ public class ExportQueue<K, V> {
   }
 
   public void addAll(TransactionBase tx, Iterator<Export<K, V>> exports) {
+    // helps estimate the age of entries for the lag metric, even in processes that do not export
+    clock.sample(tx.getStartTimestamp(), System.currentTimeMillis());
 
+    ExportLayout layout = null;
     Set<Integer> bucketsNotified = new HashSet<>();
+    BytesBuilder valBuilder = Bytes.builder();
     while (exports.hasNext()) {
       Export<K, V> export = exports.next();
 
-      byte[] k = serializer.serialize(export.getKey());
-      byte[] v = serializer.serialize(export.getValue());
+      byte[] k =
+          keyType == null ? serializer.serialize(export.getKey()) : serializer.serializeTyped(
+              export.getKey(), keyType);
+
+      valBuilder.setLength(0);
+      if (valType == null) {
+        serializer.serialize(export.getValue(), valBuilder);
+      } else {
+        serializer.serializeTyped(export.getValue(), valType, valBuilder);
+      }
+      Bytes v = valBuilder.toBytes();
 
-      int hash = Hashing.murmur3_32().hashBytes(k).asInt();
-      int bucketId = Math.abs(hash % numBuckets);
+      if (layout == null) {
+        layout = getWriteLayout(tx);
+      }
+      int bucketId = layout.getBucket(k);
 
-      ExportBucket bucket = new ExportBucket(tx, queueId, bucketId, numBuckets);
-      bucket.add(tx.getStartTimestamp(), k, v);
+      ExportBucket bucket = new ExportBucket(tx, layout, bucketId);
 
       if (!bucketsNotified.contains(bucketId)) {
+        // Read locking makes resharding collide with this transaction, so nothing can be queued in
+        // an old bucket after resharding commits. A reshard changes every bucket of a layout, so
+        // only the first bucket can find that the cached layout was replaced.
+        while (resharding && bucket.readLockResharded()) {
+          layout = readWriteLayout(tx);
+          bucketId = layout.getBucket(k);
+          bucket = new ExportBucket(tx, layout, bucketId);
+        }
         bucket.notifyExportObserver();
         bucketsNotified.add(bucketId);
       }
+
+      bucket.add(tx.getStartTimestamp(), k, v);
     }
   }
 
   // TODO maybe add for stream and interable
 
+  /**
+   * Changes the number of buckets of an export queue that is in use, without reinitializing Fluo.
+   * Resharding must be enabled with {@link FluentOptions#resharding(boolean)}. After the
+   * transaction commits, new exports are queued in the new buckets and the observers of the old
+   * buckets move queued exports to the new buckets. The new buckets start exporting after the old
+   * buckets are empty. This keeps exports for a key in sequence order. Observers must be running
+   * for this to complete. An export queue can not be resharded again until the new buckets start
+   * exporting.
+   *
+   * <p>
+   * This should be the only thing done by the transaction, as it writes to every old and new
+   * bucket.
+   *
+   * @param tx The transaction used to start resharding.
+   * @param queueId The id of the export queue to reshard.
+   * @param appConfig Application configuration obtained from
+   *        {@code FluoClient.getAppConfiguration()}
+   * @param numBuckets The new number of buckets.
+   * @return Suggested table optimizations for the new buckets. These splits are not included in the
+   *         optimizations returned by {@link Optimizer}.
+   * @throws IllegalStateException if resharding is not enabled for the export queue or the new
+   *         buckets of a previous reshard are not exporting yet.
+   * @since 1.2.0
+   */
+  public static TableOptimizations reshard(TransactionBase tx, String queueId,
+      SimpleConfiguration appConfig, int numBuckets) {
+    return ExportResharder.reshard(tx, queueId, appConfig, numBuckets);
+  }
+
   public static <K2, V2> ExportQueue<K2, V2> getInstance(String exportQueueId,
       SimpleConfiguration appConfig) {
     FluentConfigurator opts = FluentConfigurator.load(exportQueueId, appConfig);
@@ -159,6 +252,30 @@ public class ExportQueue<K, V> {
      */
     public FluentOptions bucketsPerTablet(int bucketsPerTablet);
 
+    /**
+     * When enabled, keys and values are serialized with
+     * {@link SimpleSerializer#serializeTyped(Object, Class)} using the configured key and value
+     * types, which allows the serializer to leave class names out of the export rows. The keys and
+     * values added must be exactly of the configured types and not subclasses. This can not be
+     * changed while the queue contains data. Disabled by default.
+     *
+     * @since 1.2.0
+     */
+    public FluentOptions typedSerialization(boolean enabled);
+
+    /**
+     * When enabled, the export queue can be resharded using
+     * {@link ExportQueue#reshard(TransactionBase, String, SimpleConfiguration, int)} and the
+     * observer that lets new buckets export after resharding is registered along with the observer
+     * exporting data. Each transaction queuing exports also acquires a read lock per bucket it
+     * queues in, so that it can not queue in an old bucket after resharding. Enabling this for an
+     * existing application adds an observed column, so the application's observer configuration
+     * must be updated like for any other new observer. Disabled by default.
+     *
+     * @since 1.2.0
+     */
+    public FluentOptions resharding(boolean enabled);
+
     /**
      * Adds properties to the Fluo application configuration for this CombineQueue.
      */
@@ -219,12 +336,8 @@ public class ExportQueue<K, V> {
       splits.add(exportRangeStart);
       splits.add(exportRangeStop);
 
-      List<Bytes> exportSplits = new ArrayList<>();
-      for (int i = opts.getBucketsPerTablet(); i < opts.buckets; i += opts.getBucketsPerTablet()) {
-        exportSplits.add(ExportBucket.generateBucketRow(opts.queueId, i, opts.buckets));
-      }
-      Collections.sort(exportSplits);
-      splits.addAll(exportSplits);
+      splits.addAll(ExportResharder.getBucketSplits(new ExportLayout(opts.queueId, 0,
+          opts.buckets), opts.getBucketsPerTablet()));
 
       TableOptimizations tableOptim = new TableOptimizations();
       tableOptim.setSplits(splits);
@@ -246,6 +359,22 @@ public class ExportQueue<K, V> {
    */
   public void registerObserver(ObserverProvider.Registry obsRegistry,
       org.apache.fluo.recipes.core.export.function.Exporter<K, V> exporter) {
+    registerObserver(obsRegistry, exporter, null);
+  }
+
+  /**
+   * Same as
+   * {@link #registerObserver(ObserverProvider.Registry, org.apache.fluo.recipes.core.export.function.Exporter)}
+   * , except the observer reports metrics about exporting. The names of these metrics start with
+   * {@code exportq.<queueId>.}, see docs/export-queue.md for a list.
+   *
+   * @param metricsReporter Obtained from {@code ObserverProvider.Context.getMetricsReporter()}.
+   *        When null, no metrics are reported.
+   * @since 1.2.0
+   */
+  public void registerObserver(ObserverProvider.Registry obsRegistry,
+      org.apache.fluo.recipes.core.export.function.Exporter<K, V> exporter,
+      MetricsReporter metricsReporter) {
     Preconditions
         .checkState(
             opts.exporterType == null,
@@ -253,12 +382,107 @@ public class ExportQueue<K, V> {
                 + "exporters at the same time.", opts.exporterType);
     Observer obs;
     try {
-      obs = new ExportObserverImpl<K, V>(queueId, opts, serializer, exporter);
+      obs =
+          new ExportObserverImpl<K, V>(queueId, opts, serializer, exporter, ExportMetrics.of(
+              queueId, metricsReporter));
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
     obsRegistry.forColumn(ExportBucket.newNotificationColumn(queueId), NotificationType.WEAK)
         .withId("exportq-" + queueId).useObserver(obs);
+    if (resharding) {
+      obsRegistry.forColumn(ExportResharder.getNotifyColumn(queueId), NotificationType.WEAK)
+          .withId("exportq-reshard-" + queueId)
+          .useObserver((tx, row, col) -> ExportResharder.release(tx, queueId));
+    }
+  }
+
+  /**
+   * The entries queued in one bucket of an export queue.
+   *
+   * @since 1.2.0
+   */
+  public static class BucketBacklog {
+    private final String bucketRow;
+    private final long entries;
+    private final long oldestSequence;
+
+    BucketBacklog(String bucketRow, long entries, long oldestSequence) {
+      this.bucketRow = bucketRow;
+      this.entries = entries;
+      this.oldestSequence = oldestSequence;
+    }
+
+    /**
+     * @return the row that identifies the bucket, which contains the bucket id in hex
+     */
+    public String getBucketRow() {
+      return bucketRow;
+    }
+
+    /**
+     * @return the number of entries queued in the bucket
+     */
+    public long getEntries() {
+      return entries;
+    }
+
+    /**
+     * @return the smallest sequence number queued in the bucket. Sequence numbers are Fluo
+     *         timestamps, so this can be compared with the start timestamp of a transaction to see
+     *         how far behind the bucket is.
+     */
+    public long getOldestSequence() {
+      return oldestSequence;
+    }
+
+    @Override
+    public String toString() {
+      return bucketRow + " entries:" + entries + " oldestSequence:" + oldestSequence;
+    }
+  }
+
+  /**
+   * Scans all entries queued in an export queue and counts them per bucket. This reads the entire
+   * row range of the export queue, so it is meant for occasionally checking if exporting keeps up
+   * and for sizing workers. Only buckets that have entries are returned.
+   *
+   * @param snapshot Used to scan the export queue. Entries that are queued but not committed when
+   *        the snapshot starts are not seen.
+   * @return the backlog of each bucket with entries, in row order
+   * @since 1.2.0
+   */
+  public static List<BucketBacklog> getBacklog(SnapshotBase snapshot, String queueId) {
+    Span span = new Span(queueId + ":", true, queueId + RANGE_END, false);
+
+    List<BucketBacklog> backlog = new ArrayList<>();
+    Bytes bucketRow = null;
+    long entries = 0;
+    long oldestSeq = Long.MAX_VALUE;
+
+    CellScanner scanner = snapshot.scanner().over(span).fetch(ExportBucket.EXPORT_COL).build();
+    for (RowColumnValue rcv : scanner) {
+      Bytes row = rcv.getRow();
+      // entries are sorted by bucket, so only parse the bucket row when it changes
+      if (bucketRow == null || !row.startsWith(bucketRow)
+          || row.byteAt(bucketRow.length()) != ':') {
+        if (bucketRow != null) {
+          backlog.add(new BucketBacklog(bucketRow.toString(), entries, oldestSeq));
+        }
+        bucketRow = ExportBucket.getBucketRow(row);
+        entries = 0;
+        oldestSeq = Long.MAX_VALUE;
+      }
+
+      entries++;
+      oldestSeq = Math.min(oldestSeq, ExportBucket.getSequence(row));
+    }
+
+    if (bucketRow != null) {
+      backlog.add(new BucketBacklog(bucketRow.toString(), entries, oldestSeq));
+    }
+
+    return backlog;
   }
 
   /**
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.export;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import org.apache.fluo.api.client.TransactionBase;
+import org.apache.fluo.api.config.SimpleConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.recipes.core.common.TableOptimizations;
+
+/**
+ * Changes the number of buckets of an export queue while it is in use. Resharding creates a new
+ * {@link ExportLayout} and then the following happens.
+ *
+ * <ul>
+ * <li>The observers of the old buckets move queued entries to the new buckets, keeping their keys
+ * and sequence numbers, instead of exporting them.
+ * <li>The new buckets queue entries but do not export them.
+ * <li>An observer waits until the old buckets are empty. Then it lets the new buckets export.
+ * </ul>
+ *
+ * <p>
+ * Transactions queuing entries acquire a read lock on the reshard state of each bucket they queue
+ * in, which resharding writes. So a transaction that queues in an old bucket either commits before
+ * resharding or collides with it, and after resharding commits nothing new is queued in the old
+ * buckets. Once they are empty, every entry queued before resharding was exported or moved to a
+ * new bucket, so the entries for a key are exported in sequence order across a reshard.
+ */
+// This class intentionally package private.
+class ExportResharder {
+
+  // the previous layout, present until the new buckets are allowed to export
+  private static final Column FROM_COL = new Column("e", "from");
+
+  private static final Set<Column> META_COLS = ImmutableSet.of(ExportLayout.LAYOUT_COL, FROM_COL);
+
+  static Column getNotifyColumn(String queueId) {
+    return new Column("fluoRecipes", "efr:" + queueId);
+  }
+
+  static TableOptimizations reshard(TransactionBase tx, String queueId,
+      SimpleConfiguration appConfig, int numBuckets) {
+    Preconditions.checkArgument(numBuckets > 0, "numBuckets is <= 0 : " + numBuckets);
+
+    FluentConfigurator opts = FluentConfigurator.load(queueId, appConfig);
+    Preconditions.checkState(opts.getResharding(),
+        "Resharding is not enabled for export queue %s", queueId);
+    // the deprecated ExportObserver does not register the observer that releases the new buckets
+    Preconditions.checkState(opts.exporterType == null,
+        "Export queue %s must use registerObserver() to be resharded", queueId);
+
+    Bytes metaRow = ExportLayout.getMetaRow(queueId);
+    Map<Column, Bytes> meta = tx.get(metaRow, META_COLS);
+
+    Preconditions.checkState(!meta.containsKey(FROM_COL),
+        "Export queue %s is still draining the buckets of a previous reshard", queueId);
+
+    ExportLayout current = new ExportLayout(queueId, 0, opts.buckets);
+    if (meta.containsKey(ExportLayout.LAYOUT_COL)) {
+      current = ExportLayout.decode(queueId, meta.get(ExportLayout.LAYOUT_COL));
+    }
+    ExportLayout next = new ExportLayout(queueId, current.getGeneration() + 1, numBuckets);
+
+    tx.set(metaRow, ExportLayout.LAYOUT_COL, next.encode());
+    tx.set(metaRow, FROM_COL, current.encode());
+
+    for (int b = 0; b < current.getNumBuckets(); b++) {
+      ExportBucket bucket = new ExportBucket(tx, current, b);
+      // collides with transactions that read locked this to queue in the old bucket
+      bucket.setReshardTarget(next);
+      // move anything still queued in the old bucket
+      bucket.notifyExportObserver();
+    }
+
+    for (int b = 0; b < next.getNumBuckets(); b++) {
+      new ExportBucket(tx, next, b).setWaiting();
+    }
+
+    tx.setWeakNotification(metaRow, getNotifyColumn(queueId));
+
+    return getTableOptimizations(next, opts.getBucketsPerTablet());
+  }
+
+  /**
+   * Lets the buckets of the new layout export once the buckets of the previous layout are empty.
+   * Nothing can be queued in them after resharding commits, so once empty they stay empty. Until
+   * then, notifies itself to check again later.
+   */
+  static void release(TransactionBase tx, String queueId) {
+    Bytes metaRow = ExportLayout.getMetaRow(queueId);
+    Map<Column, Bytes> meta = tx.get(metaRow, META_COLS);
+
+    if (!meta.containsKey(FROM_COL)) {
+      return;
+    }
+
+    ExportLayout from = ExportLayout.decode(queueId, meta.get(FROM_COL));
+    ExportLayout to = ExportLayout.decode(queueId, meta.get(ExportLayout.LAYOUT_COL));
+
+    if (tx.scanner().over(from.getSpan()).fetch(ExportBucket.EXPORT_COL).build().iterator()
+        .hasNext()) {
+      tx.setWeakNotification(metaRow, getNotifyColumn(queueId));
+      return;
+    }
+
+    tx.delete(metaRow, FROM_COL);
+
+    for (int b = 0; b < to.getNumBuckets(); b++) {
+      ExportBucket bucket = new ExportBucket(tx, to, b);
+      bucket.clearWaiting();
+      bucket.notifyExportObserver();
+    }
+  }
+
+  static List<Bytes> getBucketSplits(ExportLayout layout, int bucketsPerTablet) {
+    List<Bytes> splits = new ArrayList<>();
+    for (int i = bucketsPerTablet; i < layout.getNumBuckets(); i += bucketsPerTablet) {
+      splits.add(layout.getBucketRow(i));
+    }
+    Collections.sort(splits);
+    return splits;
+  }
+
+  /**
+   * @return optimizations for the rows of a layout created by resharding
+   */
+  private static TableOptimizations getTableOptimizations(ExportLayout layout,
+      int bucketsPerTablet) {
+    List<Bytes> splits = new ArrayList<>();
+    // keep the rows of the new layout out of the tablets of the previous layout
+    splits.add(layout.getPrefix());
+    splits.addAll(getBucketSplits(layout, bucketsPerTablet));
+
+    TableOptimizations tableOptim = new TableOptimizations();
+    tableOptim.setSplits(splits);
+    tableOptim.setTabletGroupingRegex(Pattern.quote(layout.getQueueId() + ":"));
+
+    return tableOptim;
+  }
+}
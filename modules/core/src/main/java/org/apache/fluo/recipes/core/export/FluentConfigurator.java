@@ -44,6 +44,8 @@ class FluentConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOp
   Integer bucketsPerTablet = null;
   String keyType;
   String exporterType;
+  Boolean typedSerialization = null;
+  Boolean resharding = null;
 
   FluentConfigurator(String queueId) {
     this.queueId = queueId;
@@ -64,6 +66,18 @@ class FluentConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOp
     return this;
   }
 
+  @Override
+  public FluentOptions typedSerialization(boolean enabled) {
+    this.typedSerialization = enabled;
+    return this;
+  }
+
+  @Override
+  public FluentOptions resharding(boolean enabled) {
+    this.resharding = enabled;
+    return this;
+  }
+
   void save(SimpleConfiguration appConfig) {
     appConfig.setProperty(PREFIX + queueId + ".buckets", buckets + "");
     appConfig.setProperty(PREFIX + queueId + ".key", keyType);
@@ -81,6 +95,14 @@ class FluentConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOp
       appConfig.setProperty(PREFIX + queueId + ".bucketsPerTablet", bucketsPerTablet);
     }
 
+    if (typedSerialization != null) {
+      appConfig.setProperty(PREFIX + queueId + ".typedSer", typedSerialization);
+    }
+
+    if (resharding != null) {
+      appConfig.setProperty(PREFIX + queueId + ".resharding", resharding);
+    }
+
     Bytes exportRangeStart = Bytes.of(queueId + ExportQueue.RANGE_BEGIN);
     Bytes exportRangeStop = Bytes.of(queueId + ExportQueue.RANGE_END);
 
@@ -104,6 +126,8 @@ class FluentConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOp
     fc.bucketsPerTablet =
         appConfig.getInt(PREFIX + queueId + ".bucketsPerTablet", DEFAULT_BUCKETS_PER_TABLET);
     fc.exporterType = appConfig.getString(PREFIX + queueId + ".exporter", null);
+    fc.typedSerialization = appConfig.getBoolean(PREFIX + queueId + ".typedSer", false);
+    fc.resharding = appConfig.getBoolean(PREFIX + queueId + ".resharding", false);
     return fc;
   }
 
@@ -115,6 +139,14 @@ class FluentConfigurator implements FluentArg1, FluentArg2, FluentArg3, FluentOp
     return bufferSize;
   }
 
+  boolean getTypedSerialization() {
+    return typedSerialization != null && typedSerialization;
+  }
+
+  boolean getResharding() {
+    return resharding != null && resharding;
+  }
+
   int getBucketsPerTablet() {
     if (bucketsPerTablet == null) {
       return DEFAULT_BUCKETS_PER_TABLET;
@@ -43,7 +43,7 @@ class MemLimitIterator implements Iterator<ExportEntry> {
       throw new NoSuchElementException();
     }
     ExportEntry ee = source.next();
-    memConsumed += ee.key.length + extraPerKey + ee.value.length;
+    memConsumed += ee.key.length() + extraPerKey + ee.value.length();
     return ee;
   }
 
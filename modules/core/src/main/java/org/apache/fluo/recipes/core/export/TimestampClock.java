@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.fluo.recipes.core.export;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimates when a Fluo timestamp was allocated. Fluo does not expose the time of a timestamp, so
+ * this records the start timestamps of transactions seen by this process along with the time they
+ * were seen. All processes get timestamps from the same oracle, so the samples also apply to
+ * timestamps allocated by other processes.
+ */
+// This class intentionally package private.
+class TimestampClock {
+
+  private static final Map<String, TimestampClock> clocks = new ConcurrentHashMap<>();
+
+  private final long sampleIntervalMs;
+  private final int maxSamples;
+
+  // start timestamp to the time in millis it was seen
+  private final ConcurrentSkipListMap<Long, Long> samples = new ConcurrentSkipListMap<>();
+  private final AtomicInteger numSamples = new AtomicInteger();
+  private final AtomicLong lastSample = new AtomicLong();
+
+  TimestampClock(long sampleIntervalMs, int maxSamples) {
+    this.sampleIntervalMs = sampleIntervalMs;
+    this.maxSamples = maxSamples;
+  }
+
+  /**
+   * @return the clock shared by everything in this process using an export queue
+   */
+  static TimestampClock forQueue(String queueId) {
+    return clocks.computeIfAbsent(queueId, qid -> new TimestampClock(100, 36000));
+  }
+
+  /**
+   * Records that a transaction with the given start timestamp was seen at the given time. At most
+   * one sample is kept per sample interval.
+   */
+  void sample(long startTs, long millis) {
+    long last = lastSample.get();
+    if (millis - last >= sampleIntervalMs && lastSample.compareAndSet(last, millis)) {
+      Map.Entry<Long, Long> newest = samples.lastEntry();
+      if (newest != null && newest.getKey() > startTs) {
+        // timestamps went backwards, so these are from another Fluo instance, like in tests
+        samples.clear();
+        numSamples.set(0);
+      }
+      samples.put(startTs, millis);
+      if (numSamples.incrementAndGet() > maxSamples && samples.pollFirstEntry() != null) {
+        numSamples.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * @return the time in millis since the timestamp was allocated. This is a lower bound, which is
+   *         based on the first sample at or after the timestamp. For a timestamp older than all
+   *         samples, this is the age of the oldest sample. For a timestamp newer than all samples,
+   *         this is zero, because it was allocated within about a sample interval.
+   */
+  long age(long ts, long nowMillis) {
+    Map.Entry<Long, Long> sample = samples.ceilingEntry(ts);
+    return sample == null ? 0 : Math.max(0, nowMillis - sample.getValue());
+  }
+}
@@ -68,6 +68,8 @@ public class CollisionFreeMap<K, V> {
   private CombineQueue<K, V> combineQ;
   private Observer combineQueueObserver;
 
+  // captures the observer that processes queued updates, which is the only one registered because
+  // resharding is never enabled for a collision free map
   private static class CfmRegistry implements ObserverProvider.Registry {
 
     Observer observer;
@@ -82,12 +84,13 @@ public class CollisionFreeMap<K, V> {
 
       @Override
       public void useObserver(Observer obs) {
+        Preconditions.checkState(observer == null, "Only one observer expected");
         observer = obs;
       }
 
       @Override
       public void useStrObserver(StringObserver obs) {
-        observer = obs;
+        useObserver(obs);
       }
     }
 
@@ -128,7 +131,7 @@ public class CollisionFreeMap<K, V> {
   }
 
   private V deserVal(Bytes val) {
-    return serializer.deserialize(val.toArray(), valType);
+    return serializer.deserialize(val, valType);
   }
 
   void process(TransactionBase tx, Bytes ntfyRow, Column col) throws Exception {
@@ -15,8 +15,12 @@
 
 package org.apache.fluo.recipes.core.serialization;
 
+import java.nio.ByteBuffer;
+
 import org.apache.fluo.api.config.FluoConfiguration;
 import org.apache.fluo.api.config.SimpleConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Bytes.BytesBuilder;
 
 /**
  * @since 1.0.0
@@ -28,11 +32,75 @@ public interface SimpleSerializer {
    */
   void init(SimpleConfiguration appConfig);
 
-  // TODO refactor to support reuse of objects and byte arrays???
   <T> byte[] serialize(T obj);
 
   <T> T deserialize(byte[] serObj, Class<T> clazz);
 
+  /**
+   * Deserializes the remaining bytes in the buffer. Implementations should override this to read
+   * directly from the buffer. The default implementation copies the bytes to an array.
+   *
+   * @since 1.2.0
+   */
+  default <T> T deserialize(ByteBuffer serObj, Class<T> clazz) {
+    byte[] copy = new byte[serObj.remaining()];
+    serObj.duplicate().get(copy);
+    return deserialize(copy, clazz);
+  }
+
+  /**
+   * Appends the serialized form of an object to a builder. Implementations should override this to
+   * write directly into the builder. The default implementation appends the array returned by
+   * {@link #serialize(Object)}.
+   *
+   * @since 1.2.0
+   */
+  default <T> void serialize(T obj, BytesBuilder builder) {
+    builder.append(serialize(obj));
+  }
+
+  /**
+   * Deserializes an object without copying the passed in bytes. The default implementation calls
+   * {@link #deserialize(ByteBuffer, Class)}.
+   *
+   * @since 1.2.0
+   */
+  default <T> T deserialize(Bytes serObj, Class<T> clazz) {
+    return deserialize(serObj.toByteBuffer(), clazz);
+  }
+
+  /**
+   * Serializes an object that will only be read by {@link #deserializeTyped(Bytes, Class)} with
+   * the same type. This allows implementations to leave type information out of the serialized
+   * data. The class of the object must be exactly the passed type. The default implementation
+   * calls {@link #serialize(Object)}.
+   *
+   * @since 1.2.0
+   */
+  default <T> byte[] serializeTyped(T obj, Class<T> type) {
+    return serialize(obj);
+  }
+
+  /**
+   * Same as {@link #serializeTyped(Object, Class)}, except it appends to a builder. The default
+   * implementation calls {@link #serialize(Object, BytesBuilder)}.
+   *
+   * @since 1.2.0
+   */
+  default <T> void serializeTyped(T obj, Class<T> type, BytesBuilder builder) {
+    serialize(obj, builder);
+  }
+
+  /**
+   * Deserializes data written by {@link #serializeTyped(Object, Class)}. The default
+   * implementation calls {@link #deserialize(Bytes, Class)}.
+   *
+   * @since 1.2.0
+   */
+  default <T> T deserializeTyped(Bytes serObj, Class<T> type) {
+    return deserialize(serObj, type);
+  }
+
   static void setSerializer(FluoConfiguration fluoConfig,
       Class<? extends SimpleSerializer> serializerType) {
     setSerializer(fluoConfig, serializerType.getName());
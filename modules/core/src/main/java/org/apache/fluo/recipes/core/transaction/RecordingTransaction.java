@@ -40,6 +40,11 @@ public class RecordingTransaction extends RecordingTransactionBase implements Tr
     this.tx = tx;
   }
 
+  private RecordingTransaction(Transaction tx, Predicate<LogEntry> filter, boolean compact) {
+    super(tx, filter, compact);
+    this.tx = tx;
+  }
+
   @Override
   public void commit() throws CommitException {
     tx.commit();
@@ -63,4 +68,15 @@ public class RecordingTransaction extends RecordingTransactionBase implements Tr
   public static RecordingTransaction wrap(Transaction tx, Predicate<LogEntry> filter) {
     return new RecordingTransaction(tx, filter);
   }
+
+  /**
+   * Creates a RecordingTransaction whose TxLog only keeps the first GET of each row/column. A
+   * transaction reads the same snapshot every time, so repeated GETs log the same value. SETs and
+   * DELETEs are never compacted, because a transaction can only write a row/column once.
+   *
+   * @since 1.2.0
+   */
+  public static RecordingTransaction wrapCompacting(Transaction tx, Predicate<LogEntry> filter) {
+    return new RecordingTransaction(tx, filter, true);
+  }
 }
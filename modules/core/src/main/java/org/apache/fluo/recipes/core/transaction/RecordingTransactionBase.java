@@ -46,12 +46,17 @@ import org.apache.fluo.api.exceptions.AlreadySetException;
 public class RecordingTransactionBase extends AbstractTransactionBase implements TransactionBase {
 
   private final TransactionBase txb;
-  private final TxLog txLog = new TxLog();
+  private final TxLog txLog;
   private final Predicate<LogEntry> filter;
 
-  RecordingTransactionBase(TransactionBase txb, Predicate<LogEntry> filter) {
+  RecordingTransactionBase(TransactionBase txb, Predicate<LogEntry> filter, boolean compact) {
     this.txb = txb;
     this.filter = filter;
+    this.txLog = new TxLog(compact);
+  }
+
+  RecordingTransactionBase(TransactionBase txb, Predicate<LogEntry> filter) {
+    this(txb, filter, false);
   }
 
   RecordingTransactionBase(TransactionBase txb) {
@@ -65,14 +70,15 @@ public class RecordingTransactionBase extends AbstractTransactionBase implements
 
   @Override
   public void set(Bytes row, Column col, Bytes value) throws AlreadySetException {
-    txLog.filteredAdd(LogEntry.newSet(row, col, value), filter);
     txb.set(row, col, value);
+    // only log after the set succeeds, a caller may catch the AlreadySetException and continue
+    txLog.filteredAdd(LogEntry.newSet(row, col, value), filter);
   }
 
   @Override
   public void delete(Bytes row, Column col) {
-    txLog.filteredAdd(LogEntry.newDelete(row, col), filter);
     txb.delete(row, col);
+    txLog.filteredAdd(LogEntry.newDelete(row, col), filter);
   }
 
   /**
@@ -293,6 +299,8 @@ public class RecordingTransactionBase extends AbstractTransactionBase implements
   }
 
   public TxLog getTxLog() {
+    // the log is usually serialized after this is called, so drop unused buffer space
+    txLog.trim();
     return txLog;
   }
 
@@ -310,4 +318,16 @@ public class RecordingTransactionBase extends AbstractTransactionBase implements
   public static RecordingTransactionBase wrap(TransactionBase txb, Predicate<LogEntry> filter) {
     return new RecordingTransactionBase(txb, filter);
   }
+
+  /**
+   * Creates a RecordingTransactionBase whose TxLog only keeps the first GET of each row/column. A
+   * transaction reads the same snapshot every time, so repeated GETs log the same value. SETs and
+   * DELETEs are never compacted, because a transaction can only write a row/column once.
+   *
+   * @since 1.2.0
+   */
+  public static RecordingTransactionBase wrapCompacting(TransactionBase txb,
+      Predicate<LogEntry> filter) {
+    return new RecordingTransactionBase(txb, filter, true);
+  }
 }
@@ -16,31 +16,153 @@
 package org.apache.fluo.recipes.core.transaction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.function.Predicate;
 
+import com.google.common.base.Preconditions;
 import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
 import org.apache.fluo.api.data.RowColumn;
 
 /**
  * Contains list of operations (GET, SET, DELETE) performed during a {@link RecordingTransaction}
  *
+ * <p>
+ * Operations are stored as length prefixed records in a single byte array, instead of an object
+ * per operation. This also keeps the serialized form of a log small.
+ *
+ * <p>
+ * Logs serialized by versions before 1.2.0 stored a list of {@link LogEntry}. Those can still be
+ * deserialized, for example by Kryo, and are converted to the compact form when first used. Logs
+ * serialized by this version can not be read by earlier versions.
+ *
  * @since 1.0.0
  */
 public class TxLog {
 
-  private List<LogEntry> logEntries = new ArrayList<>();
+  private static final LogEntry.Operation[] OPS = LogEntry.Operation.values();
+
+  // bits of the record header, after the operation, that indicate which parts of the column are set
+  private static final int FAMILY_SET = 1 << 2;
+  private static final int QUALIFIER_SET = 1 << 3;
+  private static final int VISIBILITY_SET = 1 << 4;
+
+  private static final byte[] EMPTY = new byte[0];
+
+  /**
+   * The serialized form of a log. The version allows changing the record format later.
+   */
+  private static class Records {
+    static final int VERSION_1 = 1;
+
+    private int version = VERSION_1;
+    // record format : header byte, then row, family, qualifier, visibility and value each written
+    // as a variable length integer length followed by the bytes
+    private byte[] buffer = EMPTY;
+    private int length = 0;
+    private int count = 0;
+
+    private void ensureCapacity(int needed) {
+      if (length + needed > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(length + needed, Math.max(64, buffer.length * 2)));
+      }
+    }
+
+    private void writeVInt(int i) {
+      while ((i & ~0x7f) != 0) {
+        buffer[length++] = (byte) ((i & 0x7f) | 0x80);
+        i >>>= 7;
+      }
+      buffer[length++] = (byte) i;
+    }
+
+    private void write(Bytes b) {
+      writeVInt(b.length());
+      b.copyTo(0, b.length(), buffer, length);
+      length += b.length();
+    }
+  }
+
+  // Either Records or, for a log serialized before 1.2.0, a List<LogEntry>. The name and the type
+  // not being final keep the serialized form compatible with the list field earlier versions had,
+  // so serializers that write fields, like Kryo, read the old form into this field.
+  private Object logEntries = new Records();
+
+  // row/columns with a GET in the log, only present when compacting
+  private transient Set<RowColumn> gets;
 
   public TxLog() {}
 
+  TxLog(boolean compact) {
+    if (compact) {
+      gets = new HashSet<>();
+    }
+  }
+
+  private Records records() {
+    if (logEntries instanceof Records) {
+      Records records = (Records) logEntries;
+      Preconditions.checkState(records.version == Records.VERSION_1, "Unknown TxLog version %s",
+          records.version);
+      return records;
+    }
+
+    // convert a list of LogEntry read from a log serialized before 1.2.0
+    Records records = new Records();
+    Object old = logEntries;
+    logEntries = records;
+    if (old != null) {
+      for (Object entry : (List<?>) old) {
+        add((LogEntry) entry);
+      }
+    }
+    return records;
+  }
+
   /**
    * Adds LogEntry to TxLog
    */
   public void add(LogEntry entry) {
-    logEntries.add(entry);
+    add(entry.getOp(), entry.getRow(), entry.getColumn(), entry.getValue());
+  }
+
+  void add(LogEntry.Operation op, Bytes row, Column col, Bytes value) {
+    if (gets != null && op == LogEntry.Operation.GET && !gets.add(new RowColumn(row, col))) {
+      // a transaction reads the same snapshot every time, so the value was already logged
+      return;
+    }
+
+    Records records = records();
+    // 5 is the max length of a variable length integer
+    records.ensureCapacity(1 + 5 * 5 + row.length() + col.getFamily().length()
+        + col.getQualifier().length() + col.getVisibility().length() + value.length());
+
+    int header = op.ordinal();
+    if (col.isFamilySet()) {
+      header |= FAMILY_SET;
+    }
+    if (col.isQualifierSet()) {
+      header |= QUALIFIER_SET;
+    }
+    if (col.isVisibilitySet()) {
+      header |= VISIBILITY_SET;
+    }
+
+    records.buffer[records.length++] = (byte) header;
+    records.write(row);
+    records.write(col.getFamily());
+    records.write(col.getQualifier());
+    records.write(col.getVisibility());
+    records.write(value);
+    records.count++;
   }
 
   /**
@@ -52,18 +174,151 @@ public class TxLog {
     }
   }
 
+  /**
+   * Releases unused space in the internal buffer. This is called before a log is handed out to be
+   * serialized, so that the serialized form does not include unused space.
+   *
+   * @since 1.2.0
+   */
+  public void trim() {
+    Records records = records();
+    if (records.buffer.length > records.length) {
+      records.buffer = records.length == 0 ? EMPTY : Arrays.copyOf(records.buffer, records.length);
+    }
+  }
+
+  /**
+   * A reusable view of an operation in a {@link TxLog}. The data of the view changes as iteration
+   * advances, so it should not be retained. Objects are only created for the parts of an
+   * operation that are requested, and each request copies that part out of the log.
+   *
+   * @since 1.2.0
+   */
+  public class Entry {
+    private final byte[] buffer;
+    private int header;
+    // offsets of the length prefixed fields of the current record
+    private final int[] offsets = new int[5];
+    private final int[] lengths = new int[5];
+
+    private Entry(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    private int read(int pos) {
+      int start = pos;
+      for (int i = 0; i < 5; i++) {
+        int len = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = buffer[pos++];
+          len |= (b & 0x7f) << shift;
+          shift += 7;
+        } while ((b & 0x80) != 0);
+        offsets[i] = pos;
+        lengths[i] = len;
+        pos += len;
+      }
+      return pos - start;
+    }
+
+    private Bytes get(int field) {
+      return Bytes.of(buffer, offsets[field], lengths[field]);
+    }
+
+    public LogEntry.Operation getOp() {
+      return OPS[header & 0x03];
+    }
+
+    public Bytes getRow() {
+      return get(0);
+    }
+
+    public Column getColumn() {
+      if ((header & VISIBILITY_SET) != 0) {
+        return new Column(get(1), get(2), get(3));
+      } else if ((header & QUALIFIER_SET) != 0) {
+        return new Column(get(1), get(2));
+      } else if ((header & FAMILY_SET) != 0) {
+        return new Column(get(1));
+      } else {
+        return Column.EMPTY;
+      }
+    }
+
+    public Bytes getValue() {
+      return get(4);
+    }
+
+    public LogEntry toLogEntry() {
+      switch (getOp()) {
+        case GET:
+          return LogEntry.newGet(getRow(), getColumn(), getValue());
+        case SET:
+          return LogEntry.newSet(getRow(), getColumn(), getValue());
+        case DELETE:
+          return LogEntry.newDelete(getRow(), getColumn());
+        default:
+          throw new IllegalStateException("Unknown op " + getOp());
+      }
+    }
+  }
+
+  /**
+   * Iterates over the operations in the log without creating a {@link LogEntry} for each one. The
+   * iterator always returns the same {@link Entry}, positioned at the current operation. The row,
+   * column, and value of an operation are copied out of the log each time they are requested.
+   *
+   * @since 1.2.0
+   */
+  public Iterator<Entry> entryIterator() {
+    Records records = records();
+    return new Iterator<Entry>() {
+      private final Entry entry = new Entry(records.buffer);
+      private int pos = 0;
+      private int remaining = records.count;
+
+      @Override
+      public boolean hasNext() {
+        return remaining > 0;
+      }
+
+      @Override
+      public Entry next() {
+        if (remaining <= 0) {
+          throw new NoSuchElementException();
+        }
+        entry.header = entry.buffer[pos++];
+        pos += entry.read(pos);
+        remaining--;
+        return entry;
+      }
+    };
+  }
+
   /**
    * Returns all LogEntry in TxLog
    */
   public List<LogEntry> getLogEntries() {
-    return Collections.unmodifiableList(logEntries);
+    List<LogEntry> entries = new ArrayList<>(size());
+    entryIterator().forEachRemaining(e -> entries.add(e.toLogEntry()));
+    return Collections.unmodifiableList(entries);
   }
 
   /**
    * Returns true if TxLog is empty
    */
   public boolean isEmpty() {
-    return logEntries.isEmpty();
+    return size() == 0;
+  }
+
+  /**
+   * @return the number of operations in the log
+   * @since 1.2.0
+   */
+  public int size() {
+    return records().count;
   }
 
   /**
@@ -71,7 +326,9 @@ public class TxLog {
    */
   public Map<RowColumn, Bytes> getOperationMap(LogEntry.Operation op) {
     Map<RowColumn, Bytes> opMap = new HashMap<>();
-    for (LogEntry entry : logEntries) {
+    Iterator<Entry> iter = entryIterator();
+    while (iter.hasNext()) {
+      Entry entry = iter.next();
       if (entry.getOp().equals(op)) {
         opMap.put(new RowColumn(entry.getRow(), entry.getColumn()), entry.getValue());
       }
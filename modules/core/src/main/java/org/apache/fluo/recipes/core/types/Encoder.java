@@ -16,6 +16,7 @@
 package org.apache.fluo.recipes.core.types;
 
 import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Bytes.BytesBuilder;
 
 /**
  * Transforms Java primitives to and from bytes using desired encoding
@@ -83,4 +84,84 @@ public interface Encoder {
    * Decodes a boolean from {@link Bytes}
    */
   boolean decodeBoolean(Bytes b);
+
+  /**
+   * Appends an encoded integer to a builder. Implementations should override this to avoid
+   * creating intermediate objects.
+   *
+   * @since 1.2.0
+   */
+  default void encode(int i, BytesBuilder builder) {
+    builder.append(encode(i));
+  }
+
+  /**
+   * Appends an encoded long to a builder.
+   *
+   * @see #encode(int, BytesBuilder)
+   * @since 1.2.0
+   */
+  default void encode(long l, BytesBuilder builder) {
+    builder.append(encode(l));
+  }
+
+  /**
+   * Appends an encoded float to a builder.
+   *
+   * @see #encode(int, BytesBuilder)
+   * @since 1.2.0
+   */
+  default void encode(float f, BytesBuilder builder) {
+    builder.append(encode(f));
+  }
+
+  /**
+   * Appends an encoded double to a builder.
+   *
+   * @see #encode(int, BytesBuilder)
+   * @since 1.2.0
+   */
+  default void encode(double d, BytesBuilder builder) {
+    builder.append(encode(d));
+  }
+
+  /**
+   * Decodes an integer from a range of {@link Bytes}, like a field in a row made of multiple
+   * encoded values. Implementations should override this to avoid creating intermediate objects.
+   *
+   * @since 1.2.0
+   */
+  default int decodeInteger(Bytes b, int offset, int length) {
+    return decodeInteger(b.subSequence(offset, offset + length));
+  }
+
+  /**
+   * Decodes a long from a range of {@link Bytes}.
+   *
+   * @see #decodeInteger(Bytes, int, int)
+   * @since 1.2.0
+   */
+  default long decodeLong(Bytes b, int offset, int length) {
+    return decodeLong(b.subSequence(offset, offset + length));
+  }
+
+  /**
+   * Decodes a float from a range of {@link Bytes}.
+   *
+   * @see #decodeInteger(Bytes, int, int)
+   * @since 1.2.0
+   */
+  default float decodeFloat(Bytes b, int offset, int length) {
+    return decodeFloat(b.subSequence(offset, offset + length));
+  }
+
+  /**
+   * Decodes a double from a range of {@link Bytes}.
+   *
+   * @see #decodeInteger(Bytes, int, int)
+   * @since 1.2.0
+   */
+  default double decodeDouble(Bytes b, int offset, int length) {
+    return decodeDouble(b.subSequence(offset, offset + length));
+  }
 }
@@ -16,6 +16,7 @@
 package org.apache.fluo.recipes.core.types;
 
 import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Bytes.BytesBuilder;
 
 /**
  * Transforms Java primitives to and from bytes using a String encoding
@@ -54,6 +55,26 @@ public class StringEncoder implements Encoder {
     return encode(Boolean.toString(b));
   }
 
+  @Override
+  public void encode(int i, BytesBuilder builder) {
+    builder.append(Integer.toString(i));
+  }
+
+  @Override
+  public void encode(long l, BytesBuilder builder) {
+    builder.append(Long.toString(l));
+  }
+
+  @Override
+  public void encode(float f, BytesBuilder builder) {
+    builder.append(Float.toString(f));
+  }
+
+  @Override
+  public void encode(double d, BytesBuilder builder) {
+    builder.append(Double.toString(d));
+  }
+
   @Override
   public int decodeInteger(Bytes b) {
     return Integer.parseInt(decodeString(b));
@@ -37,7 +37,9 @@ public abstract class TypedLoader implements Loader {
 
   @Override
   public void load(TransactionBase tx, Context context) throws Exception {
-    load(tl.wrap(tx), context);
+    TypedTransactionBase ttx = tl.wrap(tx);
+    load(ttx, context);
+    ttx.flush();
   }
 
   public abstract void load(TypedTransactionBase tx, Context context) throws Exception;
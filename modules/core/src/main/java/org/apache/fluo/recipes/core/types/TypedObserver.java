@@ -39,7 +39,9 @@ public abstract class TypedObserver implements Observer {
 
   @Override
   public void process(TransactionBase tx, Bytes row, Column col) {
-    process(tl.wrap(tx), row, col);
+    TypedTransactionBase ttx = tl.wrap(tx);
+    process(ttx, row, col);
+    ttx.flush();
   }
 
   public abstract void process(TypedTransactionBase tx, Bytes row, Column col);
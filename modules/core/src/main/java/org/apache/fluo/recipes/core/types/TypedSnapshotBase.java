@@ -22,6 +22,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -51,6 +53,7 @@ public class TypedSnapshotBase extends AbstractSnapshotBase implements SnapshotB
   private SnapshotBase snapshot;
   private Encoder encoder;
   private TypeLayer tl;
+  private ValueBatch asyncBatch = null;
 
   /**
    * @since 1.0.0
@@ -58,27 +61,31 @@ public class TypedSnapshotBase extends AbstractSnapshotBase implements SnapshotB
   public class VisibilityMethods extends Value {
 
     VisibilityMethods(Data data) {
-      super(data);
+      this(data, null);
+    }
+
+    VisibilityMethods(Data data, ValueBatch batch) {
+      super(data, batch);
     }
 
     public Value vis(Bytes cv) {
       data.vis = cv;
-      return new Value(data);
+      return new Value(data, batch);
     }
 
     public Value vis(byte[] cv) {
       data.vis = Bytes.of(cv);
-      return new Value(data);
+      return new Value(data, batch);
     }
 
     public Value vis(ByteBuffer bb) {
       data.vis = Bytes.of(bb);
-      return new Value(data);
+      return new Value(data, batch);
     }
 
     public Value vis(String cv) {
       data.vis = Bytes.of(cv);
-      return new Value(data);
+      return new Value(data, batch);
     }
   }
 
@@ -89,8 +96,13 @@ public class TypedSnapshotBase extends AbstractSnapshotBase implements SnapshotB
     private Bytes bytes;
     private boolean gotBytes = false;
     Data data;
+    ValueBatch batch;
 
     public Bytes getBytes() {
+      if (!gotBytes && batch != null) {
+        batch.resolve();
+      }
+
       if (!gotBytes) {
         try {
           bytes = snapshot.get(data.row, data.getCol());
@@ -112,8 +124,16 @@ public class TypedSnapshotBase extends AbstractSnapshotBase implements SnapshotB
     }
 
     private Value(Data data) {
+      this(data, null);
+    }
+
+    private Value(Data data, ValueBatch batch) {
       this.data = data;
       this.gotBytes = false;
+      this.batch = batch;
+      if (batch != null) {
+        batch.add(this);
+      }
     }
 
     public Integer toInteger() {
@@ -258,13 +278,20 @@ public class TypedSnapshotBase extends AbstractSnapshotBase implements SnapshotB
    */
   public class ValueQualifierBuilder extends QualifierMethods<VisibilityMethods> {
 
+    private final ValueBatch batch;
+
     ValueQualifierBuilder(Data data) {
+      this(data, null);
+    }
+
+    ValueQualifierBuilder(Data data, ValueBatch batch) {
       tl.super(data);
+      this.batch = batch;
     }
 
     @Override
     VisibilityMethods create(Data data) {
-      return new VisibilityMethods(data);
+      return new VisibilityMethods(data, batch);
     }
   }
 
@@ -273,18 +300,25 @@ public class TypedSnapshotBase extends AbstractSnapshotBase implements SnapshotB
    */
   public class ValueFamilyMethods extends FamilyMethods<ValueQualifierBuilder, Value> {
 
+    private final ValueBatch batch;
+
     ValueFamilyMethods(Data data) {
+      this(data, null);
+    }
+
+    ValueFamilyMethods(Data data, ValueBatch batch) {
       tl.super(data);
+      this.batch = batch;
     }
 
     @Override
     ValueQualifierBuilder create1(Data data) {
-      return new ValueQualifierBuilder(data);
+      return new ValueQualifierBuilder(data, batch);
     }
 
     @Override
     Value create2(Data data) {
-      return new Value(data);
+      return new Value(data, batch);
     }
 
     public Map<Column, Value> columns(Set<Column> columns) {
@@ -487,6 +521,110 @@ public class TypedSnapshotBase extends AbstractSnapshotBase implements SnapshotB
 
   }
 
+  /**
+   * Creates values that are read together. Values are created the same way as with
+   * {@link TypedSnapshotBase#get()}, however nothing is read until a value is accessed or
+   * {@link #resolve()} is called. At that point every value created by the batch that was not yet
+   * read is read using a single call to {@link SnapshotBase#get(Collection)}. Values created after
+   * that are read in another batch when one of them is accessed.
+   *
+   * <pre>
+   * <code>
+   *   ValueBatch batch = tx.getBatch();
+   *   Value v1 = batch.row(row).fam("meta").qual("size");
+   *   Value v2 = batch.row(row).fam("meta").qual("count");
+   *   // reads both values
+   *   long size = v1.toLong(0);
+   *   long count = v2.toLong(0);
+   * </code>
+   * </pre>
+   *
+   * <p>
+   * The {@code columns()} methods of {@link ValueFamilyMethods} read immediately, as they do when
+   * not using a batch.
+   *
+   * @since 1.2.0
+   */
+  public class ValueBatch extends RowMethods<ValueFamilyMethods> {
+
+    // identity based because Value.equals() and Value.hashCode() read the value
+    private final Set<Value> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Value> values = new ArrayList<>();
+    private final List<Runnable> resolveActions = new ArrayList<>();
+
+    ValueBatch() {
+      tl.super();
+    }
+
+    @Override
+    ValueFamilyMethods create(Data data) {
+      return new ValueFamilyMethods(data, this);
+    }
+
+    void add(Value value) {
+      pending.add(value);
+      values.add(value);
+    }
+
+    /**
+     * Runs an action the next time values are read. The values are available to the action.
+     */
+    void afterResolve(Runnable action) {
+      resolveActions.add(action);
+    }
+
+    Value newValue(Data data) {
+      return new Value(data, this);
+    }
+
+    private RowColumn getRowColumn(Value value) {
+      return new RowColumn(value.data.row, value.data.getCol());
+    }
+
+    /**
+     * Reads all values created by this batch that were not read yet.
+     */
+    public void resolve() {
+      if (pending.isEmpty()) {
+        return;
+      }
+
+      Set<RowColumn> rowCols = new HashSet<>();
+      for (Value value : pending) {
+        rowCols.add(getRowColumn(value));
+      }
+
+      Map<RowColumn, Bytes> read = snapshot.get(rowCols);
+
+      for (Value value : pending) {
+        value.bytes = read.get(getRowColumn(value));
+        value.gotBytes = true;
+      }
+
+      pending.clear();
+
+      if (!resolveActions.isEmpty()) {
+        List<Runnable> actions = new ArrayList<>(resolveActions);
+        resolveActions.clear();
+        actions.forEach(Runnable::run);
+      }
+    }
+
+    /**
+     * Reads all values created by this batch that were not read yet and returns every value
+     * created by this batch. Values for row columns that do not exist are included and return null
+     * or the default passed to their conversion methods.
+     */
+    public Map<RowColumn, Value> toMap() {
+      resolve();
+      Map<RowColumn, Value> ret = new HashMap<>();
+      for (Value value : values) {
+        ret.put(getRowColumn(value), value);
+      }
+      return Collections.unmodifiableMap(ret);
+    }
+  }
+
   TypedSnapshotBase(SnapshotBase snapshot, Encoder encoder, TypeLayer tl) {
     this.snapshot = snapshot;
     this.encoder = encoder;
@@ -517,6 +655,50 @@ public class TypedSnapshotBase extends AbstractSnapshotBase implements SnapshotB
     return new ValueRowMethods();
   }
 
+  /**
+   * @return A new batch for reading multiple values at once. See {@link ValueBatch}
+   * @since 1.2.0
+   */
+  public ValueBatch getBatch() {
+    return new ValueBatch();
+  }
+
+  /**
+   * Queues reads in a batch shared by all calls to this method on this object. Values returned
+   * act as futures, nothing is read until one of them is accessed or {@link #flush()} is called.
+   * At that point all queued values are read using a single call to
+   * {@link SnapshotBase#get(Collection)}. This allows code that reads many values in a
+   * transaction, possibly in different places, to avoid a round trip per value.
+   *
+   * <pre>
+   * <code>
+   *   Value c1 = tx.getAsync().row(r1).fam("stats").qual("count");
+   *   Value c2 = tx.getAsync().row(r2).fam("stats").qual("count");
+   *   // reads both values
+   *   tx.mutate().row(r1).fam("stats").qual("count").set(c1.toLong(0) + c2.toLong(0));
+   * </code>
+   * </pre>
+   *
+   * @since 1.2.0
+   */
+  public ValueBatch getAsync() {
+    if (asyncBatch == null) {
+      asyncBatch = new ValueBatch();
+    }
+    return asyncBatch;
+  }
+
+  /**
+   * Reads all values queued by {@link #getAsync()} that were not read yet.
+   *
+   * @since 1.2.0
+   */
+  public void flush() {
+    if (asyncBatch != null) {
+      asyncBatch.resolve();
+    }
+  }
+
   @Override
   public ScannerBuilder scanner() {
     return snapshot.scanner();
@@ -36,6 +36,7 @@ public class TypedTransaction extends TypedTransactionBase implements Transactio
 
   @Override
   public void commit() throws CommitException {
+    flush();
     closeTx.commit();
   }
 
@@ -18,6 +18,7 @@ package org.apache.fluo.recipes.core.types;
 import java.nio.ByteBuffer;
 
 import com.google.common.annotations.VisibleForTesting;
+import org.apache.fluo.api.client.SnapshotBase;
 import org.apache.fluo.api.client.TransactionBase;
 import org.apache.fluo.api.data.Bytes;
 import org.apache.fluo.api.data.Column;
@@ -141,6 +142,44 @@ public class TypedTransactionBase extends TypedSnapshotBase implements Transacti
       return v;
     }
 
+    /**
+     * Same as {@link #increment(int)}, except the current value is read later in a batch with
+     * other values queued by {@link TypedTransactionBase#getAsync()}. The sum is set when that
+     * batch is read, which happens when one of the values is accessed or
+     * {@link TypedTransactionBase#flush()} is called. {@link TypedObserver},
+     * {@link TypedLoader} and {@link TypedTransaction#commit()} call flush, otherwise it must be
+     * called before the transaction commits.
+     *
+     * @param i Integer increment amount
+     * @return The current value (before incrementing), which is read when accessed.
+     * @since 1.2.0
+     */
+    public Value incrementAsync(int i) {
+      checkNotSet();
+      set = true;
+      Value current = getAsync().newValue(data);
+      getAsync().afterResolve(
+          () -> tx.set(data.row, data.getCol(), encoder.encode(current.toInteger(0) + i)));
+      return current;
+    }
+
+    /**
+     * Same as {@link #increment(long)}, except the current value is read later in a batch. See
+     * {@link #incrementAsync(int)}
+     *
+     * @param l Long increment amount
+     * @return The current value (before incrementing), which is read when accessed.
+     * @since 1.2.0
+     */
+    public Value incrementAsync(long l) {
+      checkNotSet();
+      set = true;
+      Value current = getAsync().newValue(data);
+      getAsync().afterResolve(
+          () -> tx.set(data.row, data.getCol(), encoder.encode(current.toLong(0) + l)));
+      return current;
+    }
+
     public void delete() throws AlreadySetException {
       checkNotSet();
       tx.delete(data.row, data.getCol());
@@ -281,4 +320,12 @@ public class TypedTransactionBase extends TypedSnapshotBase implements Transacti
   public void delete(CharSequence row, Column col) {
     tx.delete(row, col);
   }
+
+  /**
+   * @since 1.2.0
+   */
+  @Override
+  public SnapshotBase withReadLock() {
+    return tx.withReadLock();
+  }
 }
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.RowColumn;
+import org.apache.fluo.api.data.Span;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CqLayoutTest {
+
+  @Test
+  public void testRows() {
+    CqLayout initial = new CqLayout("cq", 0, 20);
+    CqLayout next = CqLayout.decode("cq", new CqLayout("cq", 3, 300).encode());
+
+    Assert.assertEquals(Bytes.of("cq:u:"), initial.getUpdatePrefix());
+    Assert.assertEquals(Bytes.of("cq:d:"), initial.getDataPrefix());
+    Assert.assertEquals(Bytes.of("cq:u:g3n300:"), next.getUpdatePrefix());
+    Assert.assertEquals(Bytes.of("cq:d:g3n300:"), next.getDataPrefix());
+
+    Assert.assertEquals(Bytes.of("cq:u:0f:"), initial.getBucketRow(15));
+    Assert.assertEquals(Bytes.of("cq:u:g3n300:10f:"), next.getBucketRow(271));
+
+    // layouts are cached, so parsing a bucket row does not create the bucket ids again
+    Assert.assertSame(CqLayout.of("cq", 3, 300), next);
+    Assert.assertSame(next, CqLayout.ofUpdateRow("cq", initial, next.getBucketRow(271)));
+
+    for (CqLayout layout : new CqLayout[] {initial, next}) {
+      for (int b : new int[] {0, 7, layout.getNumBuckets() - 1}) {
+        Bytes bucketRow = layout.getBucketRow(b);
+        CqLayout parsed = CqLayout.ofUpdateRow("cq", initial, bucketRow);
+        Assert.assertEquals(layout.getGeneration(), parsed.getGeneration());
+        Assert.assertEquals(layout.getNumBuckets(), parsed.getNumBuckets());
+        Assert.assertEquals(b, parsed.parseBucket(bucketRow));
+      }
+
+      byte[] key = "k1".getBytes();
+      Bytes dataRow = layout.getDataRow(key);
+      Assert.assertTrue(dataRow.startsWith(layout.getDataPrefix()));
+      Assert.assertEquals(Bytes.of(key), layout.getSerializedKeyFromDataRow(dataRow));
+    }
+  }
+
+  @Test
+  public void testSplitBuckets() {
+    CqLayout layout = new CqLayout("cq", 0, 20);
+    byte[] key = "k1".getBytes();
+    int home = layout.getBucket(key);
+
+    Assert.assertEquals(home, layout.getSplitBucket(key, 0, 4));
+
+    Set<Integer> buckets = new HashSet<>();
+    for (int split = 0; split < 4; split++) {
+      int bucket = layout.getSplitBucket(key, split, 4);
+      Assert.assertTrue(bucket >= 0 && bucket < 20);
+      buckets.add(bucket);
+
+      Bytes bucketKey =
+          Bytes.builder().append(layout.getBucketId(bucket)).append(':').append(key).toBytes();
+      Bytes homeKey = layout.getHomeBucketKey(bucketKey);
+      Assert.assertEquals(split == 0, layout.isHomeBucket(bucketKey));
+      Assert.assertTrue(layout.isHomeBucket(homeKey));
+      Assert.assertEquals(Bytes.of(key), layout.getSerializedKey(homeKey));
+      Assert.assertEquals(layout.getBucketRow(home), layout.getBucketRow(homeKey));
+    }
+    Assert.assertEquals(4, buckets.size());
+
+    // more splits than buckets wraps around
+    CqLayout small = new CqLayout("cq", 0, 3);
+    for (int split = 0; split < 8; split++) {
+      int bucket = small.getSplitBucket(key, split, 8);
+      Assert.assertTrue(bucket >= 0 && bucket < 3);
+    }
+  }
+
+  @Test
+  public void testDataSpan() {
+    Span span = new CqLayout("cq", 0, 20).getDataSpan();
+    Bytes nextDataRow = new CqLayout("cq", 1, 40).getDataRow("k1".getBytes());
+
+    Assert.assertTrue(span.getStart().compareTo(new RowColumn("cq:d:13:k1")) < 0);
+    Assert.assertTrue(span.getEnd().compareTo(new RowColumn("cq:d:13:k1")) > 0);
+    Assert.assertTrue(span.getEnd().compareTo(new RowColumn(nextDataRow)) <= 0);
+  }
+}
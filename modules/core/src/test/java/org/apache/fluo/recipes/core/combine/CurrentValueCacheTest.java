@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.fluo.api.data.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CurrentValueCacheTest {
+
+  private static final Bytes BUCKET = Bytes.of("cq:u:1:");
+  private static final Bytes V1 = Bytes.of("v1");
+  private static final Bytes V2 = Bytes.of("v2");
+
+  @Test
+  public void testVersions() {
+    CurrentValueCache cache = new CurrentValueCache(100);
+
+    Assert.assertEquals(Collections.emptyMap(), cache.getValues(BUCKET, Bytes.EMPTY));
+
+    Map<Bytes, Bytes> vals = new HashMap<>();
+    vals.put(Bytes.of("r1"), Bytes.of("a"));
+    vals.put(Bytes.of("r2"), null);
+    cache.update(BUCKET, Bytes.EMPTY, V1, vals);
+
+    // the version was not committed, or another transaction changed the bucket
+    Assert.assertEquals(Collections.emptyMap(), cache.getValues(BUCKET, Bytes.EMPTY));
+    Assert.assertEquals(Collections.emptyMap(), cache.getValues(BUCKET, V2));
+
+    Assert.assertEquals(vals, cache.getValues(BUCKET, V1));
+    Assert.assertTrue(cache.getValues(BUCKET, V1).containsKey(Bytes.of("r2")));
+
+    // values cached for the version read should be kept
+    cache.update(BUCKET, V1, V2, Collections.singletonMap(Bytes.of("r3"), Bytes.of("c")));
+    Map<Bytes, Bytes> expected = new HashMap<>(vals);
+    expected.put(Bytes.of("r3"), Bytes.of("c"));
+    Assert.assertEquals(expected, cache.getValues(BUCKET, V2));
+
+    // values cached for another version should be dropped
+    cache.update(BUCKET, V1, V1, Collections.singletonMap(Bytes.of("r4"), Bytes.of("d")));
+    Assert.assertEquals(Collections.singletonMap(Bytes.of("r4"), Bytes.of("d")),
+        cache.getValues(BUCKET, V1));
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.util.Map;
+
+import org.apache.fluo.api.data.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HotKeySketchTest {
+
+  @Test
+  public void testHotKeys() {
+    HotKeySketch sketch = new HotKeySketch(4);
+
+    for (int i = 0; i < 1000; i++) {
+      sketch.add(Bytes.of("k" + i), 1);
+      if (i % 10 == 0) {
+        sketch.add(Bytes.of("hot"), 20);
+      }
+    }
+
+    Map<Bytes, Long> counts = sketch.getCounts();
+    Assert.assertEquals(4, counts.size());
+    // keys with more than total / capacity updates are always tracked, counts are never too low
+    Assert.assertTrue(counts.get(Bytes.of("hot")) >= 2000);
+  }
+
+  @Test
+  public void testDecay() {
+    HotKeySketch sketch = new HotKeySketch(4);
+    sketch.add(Bytes.of("old"), 1);
+    sketch.add(Bytes.of("new"), HotKeySketch.DECAY_TOTAL);
+
+    Map<Bytes, Long> counts = sketch.getCounts();
+    Assert.assertFalse(counts.containsKey(Bytes.of("old")));
+    Assert.assertEquals(HotKeySketch.DECAY_TOTAL / 2, counts.get(Bytes.of("new")).longValue());
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.observer.ObserverProvider.Registry;
+import org.apache.fluo.recipes.core.map.it.TestSerializer;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongSumBinaryCombinerTest {
+
+  private static final SimpleSerializer SERIALIZER = new LongSumBinaryCombiner.LongSerializer();
+
+  private static Bytes ser(long l) {
+    return Bytes.of(SERIALIZER.serialize(l));
+  }
+
+  @Test
+  public void testSerializer() {
+    for (long l : new long[] {0, 1, -1, 255, 256, Long.MAX_VALUE, Long.MIN_VALUE}) {
+      Bytes b = ser(l);
+      Assert.assertEquals(8, b.length());
+      Assert.assertEquals(l, (long) SERIALIZER.deserialize(b.toArray(), Long.class));
+    }
+  }
+
+  @Test
+  public void testCombine() {
+    LongSumBinaryCombiner<String> combiner = new LongSumBinaryCombiner<>();
+    Bytes key = Bytes.of("k1");
+
+    Assert.assertEquals(Optional.of(ser(6)),
+        combiner.combineSerialized(key, Arrays.asList(ser(1), ser(2), ser(3))));
+    Assert.assertEquals(Optional.of(ser(-300)),
+        combiner.combineSerialized(key, Arrays.asList(ser(-556), ser(256))));
+    Assert.assertEquals(Optional.empty(),
+        combiner.combineSerialized(key, Arrays.asList(ser(5), ser(-5))));
+    Assert.assertEquals(Optional.empty(), combiner.combineSerialized(key, Collections.emptyList()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadLength() {
+    new LongSumBinaryCombiner<String>().combineSerialized(Bytes.of("k1"),
+        Collections.singletonList(Bytes.of("abc")));
+  }
+
+  // returns a proxy that does nothing, methods returning interfaces return another proxy
+  private static Object newNoopProxy(Class<?> type) {
+    return Proxy.newProxyInstance(LongSumBinaryCombinerTest.class.getClassLoader(),
+        new Class<?>[] {type}, (proxy, method, args) -> method.getReturnType().isInterface()
+            ? newNoopProxy(method.getReturnType()) : null);
+  }
+
+  @Test
+  public void testSerializerCheck() {
+    FluoConfiguration conf = new FluoConfiguration();
+    SimpleSerializer.setSerializer(conf, TestSerializer.class);
+    CombineQueue.configure("cq1").keyType(String.class).valueType(Long.class).buckets(7)
+        .save(conf);
+    CombineQueue.configure("cq2").keyType(String.class).valueType(Long.class).buckets(7)
+        .valueSerializer(LongSumBinaryCombiner.LongSerializer.class).save(conf);
+
+    Registry registry = (Registry) newNoopProxy(Registry.class);
+
+    CombineQueue<String, Long> cq1 = CombineQueue.getInstance("cq1", conf.getAppConfiguration());
+    try {
+      cq1.registerObserver(registry, new LongSumBinaryCombiner<>(), (tx, changes) -> {
+      });
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("cq1"));
+    }
+
+    // a combiner that works on deserialized values can be used with any serializer
+    cq1.registerObserver(registry, new SummingCombiner<>(), (tx, changes) -> {
+    });
+
+    CombineQueue<String, Long> cq2 = CombineQueue.getInstance("cq2", conf.getAppConfiguration());
+    cq2.registerObserver(registry, new LongSumBinaryCombiner<>(), (tx, changes) -> {
+    });
+  }
+}
@@ -27,7 +27,9 @@ public class OptionsTest {
 
     CombineQueue.configure("Q1").keyType("KT").valueType("VT").buckets(100).save(conf);
     CombineQueue.configure("Q2").keyType("KT2").valueType("VT2").buckets(200).bucketsPerTablet(20)
-        .bufferSize(1000000).save(conf);
+        .bufferSize(1000000).bucketsPerTransaction(5).currentValueCacheSize(1000)
+        .streamingCombine(true).typedSerialization(true).hotKeySplits(8)
+        .resharding(true).valueSerializer(LongSumBinaryCombiner.LongSerializer.class).save(conf);
 
     SimpleConfiguration appConfig = conf.getAppConfiguration();
 
@@ -38,11 +40,34 @@ public class OptionsTest {
         CqConfigurator.DEFAULT_BUCKETS_PER_TABLET);
     Assert.assertEquals(CqConfigurator.getBufferSize("Q1", appConfig),
         CqConfigurator.DEFAULT_BUFFER_SIZE);
+    Assert.assertEquals(CqConfigurator.getBucketsPerTransaction("Q1", appConfig),
+        CqConfigurator.DEFAULT_BUCKETS_PER_TRANSACTION);
+    Assert.assertEquals(CqConfigurator.getCurrentValueCacheSize("Q1", appConfig), 0);
+    Assert.assertFalse(CqConfigurator.getStreamingCombine("Q1", appConfig));
+    Assert.assertEquals(CqConfigurator.getHotKeySplits("Q1", appConfig), 0);
+    Assert.assertFalse(CqConfigurator.getTypedSerialization("Q1", appConfig));
+    Assert.assertNull(CqConfigurator.getValueSerializerType("Q1", appConfig));
+    Assert.assertFalse(CqConfigurator.getResharding("Q1", appConfig));
 
     Assert.assertEquals(CqConfigurator.getKeyType("Q2", appConfig), "KT2");
     Assert.assertEquals(CqConfigurator.getValueType("Q2", appConfig), "VT2");
     Assert.assertEquals(CqConfigurator.getNumBucket("Q2", appConfig), 200);
     Assert.assertEquals(CqConfigurator.getBucketsPerTablet("Q2", appConfig), 20);
     Assert.assertEquals(CqConfigurator.getBufferSize("Q2", appConfig), 1000000);
+    Assert.assertEquals(CqConfigurator.getBucketsPerTransaction("Q2", appConfig), 5);
+    Assert.assertEquals(CqConfigurator.getCurrentValueCacheSize("Q2", appConfig), 1000);
+    Assert.assertTrue(CqConfigurator.getStreamingCombine("Q2", appConfig));
+    Assert.assertEquals(CqConfigurator.getHotKeySplits("Q2", appConfig), 8);
+    Assert.assertTrue(CqConfigurator.getTypedSerialization("Q2", appConfig));
+    Assert.assertTrue(CqConfigurator.getResharding("Q2", appConfig));
+    Assert.assertEquals(CqConfigurator.getValueSerializerType("Q2", appConfig),
+        LongSumBinaryCombiner.LongSerializer.class.getName());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReshardingDisabled() {
+    FluoConfiguration conf = new FluoConfiguration();
+    CombineQueue.configure("Q1").keyType("KT").valueType("VT").buckets(100).save(conf);
+    CombineQueue.reshard(null, "Q1", conf.getAppConfiguration(), 200);
   }
 }
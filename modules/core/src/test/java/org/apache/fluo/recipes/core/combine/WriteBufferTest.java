@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.fluo.api.client.TransactionBase;
+import org.apache.fluo.api.observer.ObserverProvider.Registry;
+import org.apache.fluo.recipes.core.combine.CombineQueue.WriteBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WriteBufferTest {
+
+  private static class CapturingQueue implements CombineQueue<String, Long> {
+    List<Map<String, Long>> added = new ArrayList<>();
+
+    @Override
+    public void addAll(TransactionBase tx, Map<String, Long> updates) {
+      added.add(new HashMap<>(updates));
+    }
+
+    @Override
+    public void registerObserver(Registry obsRegistry, Combiner<String, Long> combiner,
+        ChangeObserver<String, Long> updateObserver) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static TransactionBase newTx() {
+    return (TransactionBase) Proxy.newProxyInstance(WriteBufferTest.class.getClassLoader(),
+        new Class<?>[] {TransactionBase.class}, (proxy, method, args) -> {
+          throw new UnsupportedOperationException();
+        });
+  }
+
+  @Test
+  public void testCombining() {
+    CapturingQueue cq = new CapturingQueue();
+    WriteBuffer<String, Long> buffer = cq.newWriteBuffer(newTx(), new SummingCombiner<>());
+
+    buffer.add("a", 1L);
+    buffer.addAll(ImmutableMap.of("a", 2L, "b", 3L, "c", 4L));
+    buffer.addAll(ImmutableMap.of("a", 3L, "c", -4L));
+
+    Assert.assertEquals(0, cq.added.size());
+
+    buffer.flush();
+
+    Assert.assertEquals(1, cq.added.size());
+    Assert.assertEquals(ImmutableMap.of("a", 6L, "b", 3L), cq.added.get(0));
+
+    // flushing an empty buffer should not queue anything
+    buffer.flush();
+    Assert.assertEquals(1, cq.added.size());
+
+    buffer.add("b", 5L);
+    buffer.flush();
+    Assert.assertEquals(2, cq.added.size());
+    Assert.assertEquals(ImmutableMap.of("b", 5L), cq.added.get(1));
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.fluo.recipes.core.combine.it;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.fluo.api.client.FluoClient;
+import org.apache.fluo.api.client.FluoFactory;
+import org.apache.fluo.api.client.LoaderExecutor;
+import org.apache.fluo.api.client.Snapshot;
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.RowColumnValue;
+import org.apache.fluo.api.data.Span;
+import org.apache.fluo.api.mini.MiniFluo;
+import org.apache.fluo.api.observer.ObserverProvider;
+import org.apache.fluo.recipes.core.combine.ChangeObserver.Change;
+import org.apache.fluo.recipes.core.combine.CombineQueue;
+import org.apache.fluo.recipes.core.combine.SummingCombiner;
+import org.apache.fluo.recipes.core.map.it.TestSerializer;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BucketsPerTransactionIT {
+
+  private static final String CQ_ID = "bpt";
+  private static final Column COUNT_COL = new Column("count", "total");
+  private static final int BUCKETS = 8;
+  private static final int BUCKETS_PER_TABLET = 4;
+  private static final int BUCKETS_PER_TX = 3;
+
+  // the keys reported by each call to the change observer, including calls by transactions that
+  // later failed to commit
+  private static final List<Set<String>> REPORTED = new CopyOnWriteArrayList<>();
+
+  public static class BptObserverProvider implements ObserverProvider {
+    @Override
+    public void provide(Registry or, Context ctx) {
+      CombineQueue<String, Long> cq = CombineQueue.getInstance(CQ_ID, ctx.getAppConfiguration());
+      cq.registerObserver(or, new SummingCombiner<>(), (tx, changes) -> {
+        Set<String> keys = new HashSet<>();
+        for (Change<String, Long> change : changes) {
+          keys.add(change.getKey());
+          tx.set("count:" + change.getKey(), COUNT_COL, change.getNewValue().get() + "");
+        }
+        REPORTED.add(keys);
+      });
+    }
+  }
+
+  private MiniFluo miniFluo;
+
+  @Before
+  public void setUpFluo() throws Exception {
+    FileUtils.deleteQuietly(new File("target/mini"));
+
+    REPORTED.clear();
+
+    FluoConfiguration props = new FluoConfiguration();
+    props.setApplicationName("bpt");
+    props.setWorkerThreads(20);
+    props.setMiniDataDir("target/mini");
+
+    CombineQueue.configure(CQ_ID).keyType(String.class).valueType(Long.class).buckets(BUCKETS)
+        .bucketsPerTablet(BUCKETS_PER_TABLET).bucketsPerTransaction(BUCKETS_PER_TX).save(props);
+
+    props.setObserverProvider(BptObserverProvider.class);
+
+    SimpleSerializer.setSerializer(props, TestSerializer.class);
+
+    miniFluo = FluoFactory.newMiniFluo(props);
+  }
+
+  @After
+  public void tearDownFluo() throws Exception {
+    if (miniFluo != null) {
+      miniFluo.close();
+    }
+  }
+
+  @Test
+  public void testBucketsProcessed() {
+    Map<String, Long> expected = new HashMap<>();
+    // data rows are <cqId>:d:<bucket>:<key>
+    Map<String, Integer> keyBuckets = new HashMap<>();
+
+    try (FluoClient fc = FluoFactory.newClient(miniFluo.getClientConfiguration())) {
+      CombineQueue<String, Long> cq = CombineQueue.getInstance(CQ_ID, fc.getAppConfiguration());
+
+      // Concurrent transactions processing neighboring buckets collide, which must not lose or
+      // double count updates.
+      for (int round = 0; round < 5; round++) {
+        try (LoaderExecutor loader = fc.newLoaderExecutor()) {
+          for (int i = 0; i < 100; i++) {
+            String key = "k" + ((i * 7 + round) % 61);
+            long update = i + round;
+            loader.execute((tx, ctx) -> cq.add(tx, key, update));
+            expected.merge(key, update, Long::sum);
+          }
+        }
+      }
+
+      miniFluo.waitForObservers();
+
+      Map<String, Long> counts = new HashMap<>();
+      try (Snapshot snap = fc.newSnapshot()) {
+        for (RowColumnValue rcv : snap.scanner().over(Span.prefix("count:")).build()) {
+          counts.put(rcv.getsRow().substring("count:".length()), Long.parseLong(rcv.getsValue()));
+        }
+        for (RowColumnValue rcv : snap.scanner().over(Span.prefix(CQ_ID + ":d:")).build()) {
+          String[] parts = rcv.getsRow().substring((CQ_ID + ":d:").length()).split(":", 2);
+          keyBuckets.put(parts[1], Integer.parseInt(parts[0], 16));
+        }
+      }
+
+      Assert.assertEquals(expected, counts);
+      Assert.assertEquals(expected.keySet(), keyBuckets.keySet());
+    }
+
+    Assert.assertFalse(REPORTED.isEmpty());
+    for (Set<String> keys : REPORTED) {
+      Set<Integer> buckets = new HashSet<>();
+      Set<Integer> tablets = new HashSet<>();
+      for (String key : keys) {
+        int bucket = keyBuckets.get(key);
+        buckets.add(bucket);
+        tablets.add(bucket / BUCKETS_PER_TABLET);
+      }
+      // limited by the number of buckets per transaction and by the end of the tablet
+      Assert.assertTrue(buckets.size() <= BUCKETS_PER_TX);
+      Assert.assertEquals(1, tablets.size());
+    }
+  }
+}
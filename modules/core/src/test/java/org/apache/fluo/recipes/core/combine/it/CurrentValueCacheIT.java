@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.fluo.recipes.core.combine.it;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.fluo.api.client.FluoClient;
+import org.apache.fluo.api.client.FluoFactory;
+import org.apache.fluo.api.client.LoaderExecutor;
+import org.apache.fluo.api.client.Snapshot;
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.RowColumnValue;
+import org.apache.fluo.api.data.Span;
+import org.apache.fluo.api.mini.MiniFluo;
+import org.apache.fluo.api.observer.Observer;
+import org.apache.fluo.api.observer.Observer.NotificationType;
+import org.apache.fluo.api.observer.ObserverProvider;
+import org.apache.fluo.api.observer.StringObserver;
+import org.apache.fluo.recipes.core.combine.ChangeObserver;
+import org.apache.fluo.recipes.core.combine.ChangeObserver.Change;
+import org.apache.fluo.recipes.core.combine.CombineQueue;
+import org.apache.fluo.recipes.core.combine.SummingCombiner;
+import org.apache.fluo.recipes.core.map.it.TestSerializer;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that workers with their own current value caches never use a cached value another
+ * worker has since changed.
+ */
+public class CurrentValueCacheIT {
+
+  private static final String CQ_ID = "cvc";
+  private static final Column COUNT_COL = new Column("count", "total");
+  private static final Column ERROR_COL = new Column("count", "error");
+
+  /**
+   * Captures the observer a combine queue registers, so it can be registered again by
+   * {@link TwoWorkerObserverProvider}.
+   */
+  private static class CapturingRegistry implements ObserverProvider.Registry,
+      ObserverProvider.Registry.IdentityOption, ObserverProvider.Registry.ObserverArgument {
+
+    Column column;
+    NotificationType ntfyType;
+    String id;
+    Observer observer;
+
+    @Override
+    public IdentityOption forColumn(Column observedColumn, NotificationType ntfyType) {
+      this.column = observedColumn;
+      this.ntfyType = ntfyType;
+      return this;
+    }
+
+    @Override
+    public ObserverArgument withId(String alias) {
+      this.id = alias;
+      return this;
+    }
+
+    @Override
+    public void useObserver(Observer obs) {
+      Assert.assertNull(observer);
+      this.observer = obs;
+    }
+
+    @Override
+    public void useStrObserver(StringObserver obs) {
+      useObserver(obs);
+    }
+  }
+
+  /**
+   * Emulates two workers in one process by randomly passing each notification to one of two
+   * combine queue instances, each of which has its own cache.
+   */
+  public static class TwoWorkerObserverProvider implements ObserverProvider {
+    @Override
+    public void provide(Registry or, Context ctx) {
+      ChangeObserver<String, Long> changeObserver = (tx, changes) -> {
+        for (Change<String, Long> change : changes) {
+          String row = "count:" + change.getKey();
+          String count = tx.gets(row, COUNT_COL);
+          Optional<Long> current =
+              count == null ? Optional.empty() : Optional.of(Long.parseLong(count));
+          if (!current.equals(change.getOldValue())) {
+            tx.set(row, ERROR_COL, change.getOldValue() + " != " + current);
+          }
+          tx.set(row, COUNT_COL, change.getNewValue().get() + "");
+        }
+      };
+
+      List<Observer> workers = new ArrayList<>();
+      CapturingRegistry captured = null;
+      for (int i = 0; i < 2; i++) {
+        captured = new CapturingRegistry();
+        CombineQueue<String, Long> cq =
+            CombineQueue.getInstance(CQ_ID, ctx.getAppConfiguration());
+        cq.registerObserver(captured, new SummingCombiner<>(), changeObserver);
+        workers.add(captured.observer);
+      }
+
+      or.forColumn(captured.column, captured.ntfyType).withId(captured.id)
+          .useObserver((tx, row, col) -> workers.get(ThreadLocalRandom.current().nextInt(2))
+              .process(tx, row, col));
+    }
+  }
+
+  private MiniFluo miniFluo;
+
+  @Before
+  public void setUpFluo() throws Exception {
+    FileUtils.deleteQuietly(new File("target/mini"));
+
+    FluoConfiguration props = new FluoConfiguration();
+    props.setApplicationName("cvc");
+    props.setWorkerThreads(20);
+    props.setMiniDataDir("target/mini");
+
+    CombineQueue.configure(CQ_ID).keyType(String.class).valueType(Long.class).buckets(4)
+        .currentValueCacheSize(1000).save(props);
+
+    props.setObserverProvider(TwoWorkerObserverProvider.class);
+
+    SimpleSerializer.setSerializer(props, TestSerializer.class);
+
+    miniFluo = FluoFactory.newMiniFluo(props);
+  }
+
+  @After
+  public void tearDownFluo() throws Exception {
+    if (miniFluo != null) {
+      miniFluo.close();
+    }
+  }
+
+  @Test
+  public void testWorkers() {
+    Map<String, Long> expected = new HashMap<>();
+
+    try (FluoClient fc = FluoFactory.newClient(miniFluo.getClientConfiguration())) {
+      CombineQueue<String, Long> cq = CombineQueue.getInstance(CQ_ID, fc.getAppConfiguration());
+
+      for (int round = 0; round < 10; round++) {
+        try (LoaderExecutor loader = fc.newLoaderExecutor()) {
+          for (int i = 0; i < 50; i++) {
+            String key = "k" + ((i * 3 + round) % 17);
+            loader.execute((tx, ctx) -> cq.add(tx, key, 1L));
+            expected.merge(key, 1L, Long::sum);
+          }
+        }
+        miniFluo.waitForObservers();
+      }
+
+      Map<String, Long> counts = new HashMap<>();
+      Map<String, String> errors = new HashMap<>();
+      try (Snapshot snap = fc.newSnapshot()) {
+        for (RowColumnValue rcv : snap.scanner().over(Span.prefix("count:")).build()) {
+          String key = rcv.getsRow().substring("count:".length());
+          if (rcv.getColumn().equals(ERROR_COL)) {
+            errors.put(key, rcv.getsValue());
+          } else {
+            counts.put(key, Long.parseLong(rcv.getsValue()));
+          }
+        }
+      }
+
+      Assert.assertEquals(expected, counts);
+      Assert.assertEquals(Collections.emptyMap(), errors);
+    }
+  }
+}
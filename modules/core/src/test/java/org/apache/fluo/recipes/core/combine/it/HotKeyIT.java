@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine.it;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.fluo.api.client.FluoClient;
+import org.apache.fluo.api.client.FluoFactory;
+import org.apache.fluo.api.client.Snapshot;
+import org.apache.fluo.api.client.Transaction;
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.RowColumnValue;
+import org.apache.fluo.api.data.Span;
+import org.apache.fluo.api.mini.MiniFluo;
+import org.apache.fluo.api.observer.ObserverProvider;
+import org.apache.fluo.recipes.core.combine.ChangeObserver.Change;
+import org.apache.fluo.recipes.core.combine.CombineQueue;
+import org.apache.fluo.recipes.core.combine.SummingCombiner;
+import org.apache.fluo.recipes.core.map.it.TestSerializer;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HotKeyIT {
+
+  private static final String CQ_ID = "hk";
+  private static final Column COUNT_COL = new Column("count", "total");
+
+  public static class HotKeyObserverProvider implements ObserverProvider {
+    @Override
+    public void provide(Registry or, Context ctx) {
+      CombineQueue<String, Long> cq = CombineQueue.getInstance(CQ_ID, ctx.getAppConfiguration());
+      cq.registerObserver(or, new SummingCombiner<>(), (tx, changes) -> {
+        for (Change<String, Long> change : changes) {
+          tx.set("count:" + change.getKey(), COUNT_COL, change.getNewValue().get() + "");
+        }
+      });
+    }
+  }
+
+  private MiniFluo miniFluo;
+
+  @Before
+  public void setUpFluo() throws Exception {
+    FileUtils.deleteQuietly(new File("target/mini"));
+
+    FluoConfiguration props = new FluoConfiguration();
+    props.setApplicationName("hotkey");
+    props.setWorkerThreads(20);
+    props.setMiniDataDir("target/mini");
+
+    // a small buffer makes the observer detect keys with many updates as hot
+    CombineQueue.configure(CQ_ID).keyType(String.class).valueType(Long.class).buckets(13)
+        .bufferSize(256).hotKeySplits(4).save(props);
+
+    props.setObserverProvider(HotKeyObserverProvider.class);
+
+    SimpleSerializer.setSerializer(props, TestSerializer.class);
+
+    miniFluo = FluoFactory.newMiniFluo(props);
+  }
+
+  @After
+  public void tearDownFluo() throws Exception {
+    if (miniFluo != null) {
+      miniFluo.close();
+    }
+  }
+
+  private static Map<String, Long> readCounts(Snapshot snap) {
+    Map<String, Long> counts = new HashMap<>();
+    for (RowColumnValue rcv : snap.scanner().over(Span.prefix("count:")).build()) {
+      counts.put(rcv.getsRow().substring("count:".length()), Long.parseLong(rcv.getsValue()));
+    }
+    return counts;
+  }
+
+  private static int countRows(Snapshot snap, String start, String end) {
+    int count = 0;
+    for (@SuppressWarnings("unused")
+    RowColumnValue rcv : snap.scanner().over(new Span(start, true, end, false)).build()) {
+      count++;
+    }
+    return count;
+  }
+
+  @Test
+  public void testHotKeys() {
+    Map<String, Long> expected = new HashMap<>();
+    Column hotCol = new Column("h", "hot");
+
+    try (FluoClient fc = FluoFactory.newClient(miniFluo.getClientConfiguration())) {
+      CombineQueue<String, Long> cq = CombineQueue.getInstance(CQ_ID, fc.getAppConfiguration());
+
+      try (Transaction tx = fc.newTransaction()) {
+        cq.addHotKey(tx, "hot");
+        tx.commit();
+      }
+
+      for (int i = 0; i < 100; i++) {
+        Map<String, Long> updates = new HashMap<>();
+        updates.put("hot", 1L);
+        updates.put("warm", 2L);
+        updates.put("w" + (i % 7), 1L);
+        try (Transaction tx = fc.newTransaction()) {
+          cq.addAll(tx, updates);
+          tx.commit();
+        }
+        updates.forEach((k, v) -> expected.merge(k, v, Long::sum));
+      }
+
+      miniFluo.waitForObservers();
+
+      try (Snapshot snap = fc.newSnapshot()) {
+        Assert.assertEquals(expected, readCounts(snap));
+        // all updates, including those split across buckets, should be processed
+        Assert.assertEquals(0, countRows(snap, CQ_ID + ":u:", CQ_ID + ":u:~"));
+        Assert.assertEquals(Bytes.EMPTY, snap.get(Bytes.of(CQ_ID + ":m:"), hotCol));
+      }
+
+      try (Transaction tx = fc.newTransaction()) {
+        cq.removeHotKey(tx, "hot");
+        tx.commit();
+      }
+
+      try (Snapshot snap = fc.newSnapshot()) {
+        Assert.assertNull(snap.get(Bytes.of(CQ_ID + ":m:"), hotCol));
+      }
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine.it;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.fluo.api.metrics.Counter;
+import org.apache.fluo.api.metrics.Histogram;
+import org.apache.fluo.api.metrics.Meter;
+import org.apache.fluo.api.metrics.MetricsReporter;
+import org.apache.fluo.api.metrics.Timer;
+
+/**
+ * Records the sum and the maximum of the values reported for each metric name, so tests can check
+ * what observers reported.
+ */
+public class RecordingReporter implements MetricsReporter {
+
+  private final Map<String, Long> sums = new ConcurrentHashMap<>();
+  private final Map<String, Long> maxes = new ConcurrentHashMap<>();
+
+  private void add(String name, long value) {
+    sums.merge(name, value, Long::sum);
+    maxes.merge(name, value, Math::max);
+  }
+
+  public long getSum(String name) {
+    return sums.getOrDefault(name, 0L);
+  }
+
+  public long getMax(String name) {
+    return maxes.getOrDefault(name, 0L);
+  }
+
+  public void clear() {
+    sums.clear();
+    maxes.clear();
+  }
+
+  @Override
+  public Counter counter(String name) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Histogram histogram(String name) {
+    return value -> add(name, value);
+  }
+
+  @Override
+  public Meter meter(String name) {
+    return new Meter() {
+      @Override
+      public void mark() {
+        add(name, 1);
+      }
+
+      @Override
+      public void mark(long numEvents) {
+        add(name, numEvents);
+      }
+    };
+  }
+
+  @Override
+  public Timer timer(String name) {
+    return (duration, unit) -> add(name, unit.toNanos(duration));
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine.it;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.fluo.api.client.FluoClient;
+import org.apache.fluo.api.client.FluoFactory;
+import org.apache.fluo.api.client.Snapshot;
+import org.apache.fluo.api.client.Transaction;
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.RowColumnValue;
+import org.apache.fluo.api.data.Span;
+import org.apache.fluo.api.mini.MiniFluo;
+import org.apache.fluo.api.observer.ObserverProvider;
+import org.apache.fluo.recipes.core.combine.ChangeObserver.Change;
+import org.apache.fluo.recipes.core.combine.CombineQueue;
+import org.apache.fluo.recipes.core.combine.SummingCombiner;
+import org.apache.fluo.recipes.core.common.TableOptimizations;
+import org.apache.fluo.recipes.core.map.it.TestSerializer;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReshardIT {
+
+  private static final String CQ_ID = "wc";
+  private static final Column COUNT_COL = new Column("count", "total");
+
+  public static class ReshardObserverProvider implements ObserverProvider {
+    @Override
+    public void provide(Registry or, Context ctx) {
+      CombineQueue<String, Long> cq = CombineQueue.getInstance(CQ_ID, ctx.getAppConfiguration());
+      cq.registerObserver(or, new SummingCombiner<>(), (tx, changes) -> {
+        for (Change<String, Long> change : changes) {
+          if (change.getNewValue().isPresent()) {
+            tx.set("count:" + change.getKey(), COUNT_COL, change.getNewValue().get() + "");
+          } else {
+            tx.delete("count:" + change.getKey(), COUNT_COL);
+          }
+        }
+      }, ctx.getMetricsReporter());
+    }
+  }
+
+  private MiniFluo miniFluo;
+
+  @Before
+  public void setUpFluo() throws Exception {
+    FileUtils.deleteQuietly(new File("target/mini"));
+
+    FluoConfiguration props = new FluoConfiguration();
+    props.setApplicationName("reshard");
+    props.setWorkerThreads(20);
+    props.setMiniDataDir("target/mini");
+
+    CombineQueue.configure(CQ_ID).keyType(String.class).valueType(Long.class).buckets(3)
+        .bucketsPerTransaction(2).resharding(true).save(props);
+
+    props.setObserverProvider(ReshardObserverProvider.class);
+
+    SimpleSerializer.setSerializer(props, TestSerializer.class);
+
+    miniFluo = FluoFactory.newMiniFluo(props);
+  }
+
+  @After
+  public void tearDownFluo() throws Exception {
+    if (miniFluo != null) {
+      miniFluo.close();
+    }
+  }
+
+  private static Map<String, Long> genUpdates(int start, int end) {
+    Map<String, Long> updates = new HashMap<>();
+    for (int i = start; i < end; i++) {
+      updates.put("w" + (i % 137), 1L);
+    }
+    return updates;
+  }
+
+  private static Map<String, Long> readCounts(Snapshot snap) {
+    Map<String, Long> counts = new HashMap<>();
+    for (RowColumnValue rcv : snap.scanner().over(Span.prefix("count:")).build()) {
+      counts.put(rcv.getsRow().substring("count:".length()), Long.parseLong(rcv.getsValue()));
+    }
+    return counts;
+  }
+
+  private static int countRows(Snapshot snap, String start, String end) {
+    int count = 0;
+    for (@SuppressWarnings("unused")
+    RowColumnValue rcv : snap.scanner().over(new Span(start, true, end, false)).build()) {
+      count++;
+    }
+    return count;
+  }
+
+  @Test
+  public void testReshard() {
+    Map<String, Long> expected = new HashMap<>();
+
+    try (FluoClient fc = FluoFactory.newClient(miniFluo.getClientConfiguration())) {
+      CombineQueue<String, Long> cq = CombineQueue.getInstance(CQ_ID, fc.getAppConfiguration());
+
+      for (int i = 0; i < 10; i++) {
+        Map<String, Long> updates = genUpdates(i * 100, i * 100 + 100);
+        try (Transaction tx = fc.newTransaction()) {
+          cq.addAll(tx, updates);
+          tx.commit();
+        }
+        updates.forEach((k, v) -> expected.merge(k, v, Long::sum));
+      }
+
+      miniFluo.waitForObservers();
+
+      // queue more updates that the observers will have to forward
+      try (Transaction tx = fc.newTransaction()) {
+        Map<String, Long> updates = genUpdates(1000, 1100);
+        cq.addAll(tx, updates);
+        tx.commit();
+        updates.forEach((k, v) -> expected.merge(k, v, Long::sum));
+      }
+
+      for (int numBuckets : new int[] {17, 5}) {
+        try (Transaction tx = fc.newTransaction()) {
+          TableOptimizations optimizations =
+              CombineQueue.reshard(tx, CQ_ID, fc.getAppConfiguration(), numBuckets);
+          Assert.assertFalse(optimizations.getSplits().isEmpty());
+          tx.commit();
+        }
+
+        // this instance caches the old layout, so these updates are forwarded
+        for (int i = 0; i < 3; i++) {
+          Map<String, Long> updates = genUpdates(i * 50, i * 50 + 75);
+          try (Transaction tx = fc.newTransaction()) {
+            cq.addAll(tx, updates);
+            tx.commit();
+          }
+          updates.forEach((k, v) -> expected.merge(k, v, Long::sum));
+        }
+
+        // a new instance reads the new layout
+        CombineQueue<String, Long> cq2 =
+            CombineQueue.getInstance(CQ_ID, fc.getAppConfiguration());
+        try (Transaction tx = fc.newTransaction()) {
+          Map<String, Long> updates = genUpdates(0, 200);
+          cq2.addAll(tx, updates);
+          tx.commit();
+          updates.forEach((k, v) -> expected.merge(k, v, Long::sum));
+        }
+
+        miniFluo.waitForObservers();
+
+        try (Snapshot snap = fc.newSnapshot()) {
+          Assert.assertEquals(expected, readCounts(snap));
+          // all current values should be in the new layout and all update rows processed
+          int dataRows = countRows(snap, CQ_ID + ":d:", CQ_ID + ":d:~");
+          Assert.assertEquals(expected.size(), countRows(snap, CQ_ID + ":d:g", CQ_ID + ":d:~"));
+          Assert.assertEquals(expected.size(), dataRows);
+          Assert.assertNull(snap.gets(CQ_ID + ":m:", new Column("u", "from")));
+        }
+      }
+
+      try (Transaction tx = fc.newTransaction()) {
+        Map<String, Long> updates = genUpdates(0, 300);
+        cq.addAll(tx, updates);
+        tx.commit();
+        updates.forEach((k, v) -> expected.merge(k, v, Long::sum));
+      }
+
+      miniFluo.waitForObservers();
+
+      try (Snapshot snap = fc.newSnapshot()) {
+        Assert.assertEquals(expected, readCounts(snap));
+        Assert.assertEquals(Bytes.of("2:5"), snap.get(Bytes.of(CQ_ID + ":m:"), new Column("u",
+            "layout")));
+      }
+    }
+  }
+}
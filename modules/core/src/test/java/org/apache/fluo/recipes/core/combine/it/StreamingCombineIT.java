@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.combine.it;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.commons.io.FileUtils;
+import org.apache.fluo.api.client.FluoClient;
+import org.apache.fluo.api.client.FluoFactory;
+import org.apache.fluo.api.client.LoaderExecutor;
+import org.apache.fluo.api.client.Snapshot;
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.mini.MiniFluo;
+import org.apache.fluo.api.observer.ObserverProvider;
+import org.apache.fluo.recipes.core.combine.ChangeObserver.Change;
+import org.apache.fluo.recipes.core.combine.CombineQueue;
+import org.apache.fluo.recipes.core.combine.SummingCombiner;
+import org.apache.fluo.recipes.core.map.it.TestSerializer;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamingCombineIT {
+
+  private static final String CQ_ID = "sc";
+  private static final Column COUNT_COL = new Column("count", "total");
+  private static final int BUFFER_SIZE = 256;
+  private static final int UPDATES = 1000;
+
+  private static final RecordingReporter REPORTER = new RecordingReporter();
+
+  // holds up the first transaction that reports changes until all updates are queued, so later
+  // transactions find more updates for the key than fit in the buffer
+  private static volatile CountDownLatch loaded;
+
+  public static class StreamingObserverProvider implements ObserverProvider {
+    @Override
+    public void provide(Registry or, Context ctx) {
+      CombineQueue<String, Long> cq = CombineQueue.getInstance(CQ_ID, ctx.getAppConfiguration());
+      cq.registerObserver(or, new SummingCombiner<>(), (tx, changes) -> {
+        Uninterruptibles.awaitUninterruptibly(loaded);
+        for (Change<String, Long> change : changes) {
+          tx.set("count:" + change.getKey(), COUNT_COL, change.getNewValue().get() + "");
+        }
+      }, REPORTER);
+    }
+  }
+
+  private MiniFluo miniFluo;
+
+  @Before
+  public void setUpFluo() throws Exception {
+    FileUtils.deleteQuietly(new File("target/mini"));
+
+    REPORTER.clear();
+    loaded = new CountDownLatch(1);
+
+    FluoConfiguration props = new FluoConfiguration();
+    props.setApplicationName("streaming");
+    props.setWorkerThreads(20);
+    props.setMiniDataDir("target/mini");
+
+    CombineQueue.configure(CQ_ID).keyType(String.class).valueType(Long.class).buckets(3)
+        .bufferSize(BUFFER_SIZE).streamingCombine(true).save(props);
+
+    props.setObserverProvider(StreamingObserverProvider.class);
+
+    SimpleSerializer.setSerializer(props, TestSerializer.class);
+
+    miniFluo = FluoFactory.newMiniFluo(props);
+  }
+
+  @After
+  public void tearDownFluo() throws Exception {
+    loaded.countDown();
+    if (miniFluo != null) {
+      miniFluo.close();
+    }
+  }
+
+  @Test
+  public void testSingleKey() {
+    try (FluoClient fc = FluoFactory.newClient(miniFluo.getClientConfiguration())) {
+      CombineQueue<String, Long> cq = CombineQueue.getInstance(CQ_ID, fc.getAppConfiguration());
+
+      try (LoaderExecutor loader = fc.newLoaderExecutor()) {
+        for (int i = 0; i < UPDATES; i++) {
+          loader.execute((tx, ctx) -> cq.addAll(tx, Collections.singletonMap("hot", 1L)));
+        }
+      }
+
+      loaded.countDown();
+      miniFluo.waitForObservers();
+
+      try (Snapshot snap = fc.newSnapshot()) {
+        Assert.assertEquals(UPDATES + "", snap.gets("count:hot", COUNT_COL));
+      }
+    }
+
+    String prefix = "combineq." + CQ_ID + ".";
+    // the key had more updates than fit in the buffer, so they were read by multiple transactions
+    Assert.assertTrue(REPORTER.getSum(prefix + "continued") > 0);
+    Assert.assertTrue(REPORTER.getSum(prefix + "requeued") > 0);
+    // Each update read takes at least one byte of the buffer, which bounds what a transaction
+    // holds. Only the values of the key count against the buffer, not a row per update, so a
+    // transaction reads far more updates than it could without streaming.
+    long maxRead = REPORTER.getMax(prefix + "updatesRead");
+    Assert.assertTrue(maxRead <= BUFFER_SIZE);
+    Assert.assertTrue(maxRead > BUFFER_SIZE / 2);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.export;
+
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Bytes.BytesBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExportBucketTest {
+
+  private static Bytes entryRow(Bytes bucketRow, String key, long seq) {
+    BytesBuilder builder = Bytes.builder().append(bucketRow).append(':').append(key);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      builder.append((byte) (seq >>> shift));
+    }
+    return builder.toBytes();
+  }
+
+  @Test
+  public void testEntryRows() {
+    for (ExportLayout layout : new ExportLayout[] {new ExportLayout("eq", 0, 20),
+        new ExportLayout("eq", 2, 300)}) {
+      Bytes bucketRow = layout.getBucketRow(7);
+      for (String key : new String[] {"", "k1", "a:b:c", "g:1"}) {
+        for (long seq : new long[] {0, 255, 1L << 40, Long.MAX_VALUE}) {
+          Bytes row = entryRow(bucketRow, key, seq);
+          Assert.assertEquals(bucketRow, ExportBucket.getBucketRow(row));
+          Assert.assertEquals(seq, ExportBucket.getSequence(row));
+        }
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidRow() {
+    ExportBucket.getBucketRow(Bytes.of("eq"));
+  }
+}
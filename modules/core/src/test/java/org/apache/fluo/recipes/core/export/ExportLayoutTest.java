@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.export;
+
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.RowColumn;
+import org.apache.fluo.api.data.Span;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExportLayoutTest {
+
+  @Test
+  public void testRows() {
+    ExportLayout initial = new ExportLayout("eq", 0, 20);
+    ExportLayout next = ExportLayout.decode("eq", new ExportLayout("eq", 3, 300).encode());
+
+    Assert.assertEquals(3, next.getGeneration());
+    Assert.assertEquals(300, next.getNumBuckets());
+
+    Assert.assertEquals(Bytes.of("eq:"), initial.getPrefix());
+    Assert.assertEquals(Bytes.of("eq:g3n300:"), next.getPrefix());
+    Assert.assertEquals(Bytes.of("eq:0f"), initial.getBucketRow(15));
+    Assert.assertEquals(Bytes.of("eq:g3n300:10f"), next.getBucketRow(271));
+    Assert.assertEquals(ExportBucket.generateBucketRow("eq", 15, 20), initial.getBucketRow(15));
+
+    for (ExportLayout layout : new ExportLayout[] {initial, next}) {
+      for (int i = 0; i < 100; i++) {
+        int bucket = layout.getBucket(("k" + i).getBytes());
+        Assert.assertTrue(bucket >= 0 && bucket < layout.getNumBuckets());
+      }
+    }
+  }
+
+  @Test
+  public void testSpan() {
+    Span span = new ExportLayout("eq", 0, 20).getSpan();
+    RowColumn initialRow = new RowColumn("eq:13:k1");
+    RowColumn nextRow = new RowColumn(new ExportLayout("eq", 1, 40).getBucketRow(39));
+
+    Assert.assertTrue(span.getStart().compareTo(initialRow) < 0);
+    Assert.assertTrue(span.getEnd().compareTo(initialRow) > 0);
+    Assert.assertTrue(span.getEnd().compareTo(nextRow) <= 0);
+    Assert.assertTrue(span.getEnd().compareTo(new RowColumn(ExportLayout.getMetaRow("eq"))) <= 0);
+  }
+}
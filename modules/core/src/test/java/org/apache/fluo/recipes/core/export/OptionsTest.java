@@ -87,7 +87,7 @@ public class OptionsTest {
 
     ExportQueue.configure("Q1").keyType("KT").valueType("VT").buckets(100).save(conf);
     ExportQueue.configure("Q2").keyType("KT2").valueType("VT2").buckets(200).bucketsPerTablet(20)
-        .bufferSize(1000000).save(conf);
+        .bufferSize(1000000).resharding(true).save(conf);
 
     FluentConfigurator opts1 = FluentConfigurator.load("Q1", conf.getAppConfiguration());
 
@@ -98,6 +98,7 @@ public class OptionsTest {
     Assert.assertEquals(opts1.bucketsPerTablet.intValue(),
         FluentConfigurator.DEFAULT_BUCKETS_PER_TABLET);
     Assert.assertEquals(opts1.bufferSize.intValue(), FluentConfigurator.DEFAULT_BUFFER_SIZE);
+    Assert.assertFalse(opts1.getResharding());
 
     FluentConfigurator opts2 = FluentConfigurator.load("Q2", conf.getAppConfiguration());
 
@@ -107,5 +108,13 @@ public class OptionsTest {
     Assert.assertEquals(opts2.buckets, 200);
     Assert.assertEquals(opts2.bucketsPerTablet.intValue(), 20);
     Assert.assertEquals(opts2.bufferSize.intValue(), 1000000);
+    Assert.assertTrue(opts2.getResharding());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReshardingDisabled() {
+    FluoConfiguration conf = new FluoConfiguration();
+    ExportQueue.configure("Q1").keyType("KT").valueType("VT").buckets(100).save(conf);
+    ExportQueue.reshard(null, "Q1", conf.getAppConfiguration(), 200);
   }
 }
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.fluo.recipes.core.export;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimestampClockTest {
+
+  @Test
+  public void testAge() {
+    TimestampClock clock = new TimestampClock(100, 3);
+
+    // newer than all samples
+    Assert.assertEquals(0, clock.age(5, 1000));
+
+    clock.sample(10, 1000);
+    // within the sample interval, so not kept
+    clock.sample(12, 1050);
+    clock.sample(20, 1100);
+    clock.sample(30, 1200);
+
+    // uses the first sample at or after the timestamp
+    Assert.assertEquals(500, clock.age(5, 1500));
+    Assert.assertEquals(500, clock.age(10, 1500));
+    Assert.assertEquals(400, clock.age(11, 1500));
+    Assert.assertEquals(300, clock.age(30, 1500));
+    Assert.assertEquals(0, clock.age(31, 1500));
+
+    // only the newest samples are kept
+    clock.sample(40, 1300);
+    Assert.assertEquals(400, clock.age(5, 1500));
+  }
+
+  @Test
+  public void testBackwards() {
+    TimestampClock clock = new TimestampClock(100, 10);
+
+    clock.sample(1000, 1000);
+    // a new Fluo instance starts its timestamps over
+    clock.sample(10, 2000);
+    Assert.assertEquals(500, clock.age(5, 2500));
+    Assert.assertEquals(0, clock.age(500, 2500));
+  }
+}
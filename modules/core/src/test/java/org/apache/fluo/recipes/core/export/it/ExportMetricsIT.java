@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.export.it;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.commons.io.FileUtils;
+import org.apache.fluo.api.client.FluoClient;
+import org.apache.fluo.api.client.FluoFactory;
+import org.apache.fluo.api.client.LoaderExecutor;
+import org.apache.fluo.api.client.Snapshot;
+import org.apache.fluo.api.client.Transaction;
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.api.mini.MiniFluo;
+import org.apache.fluo.api.observer.ObserverProvider;
+import org.apache.fluo.recipes.core.combine.it.RecordingReporter;
+import org.apache.fluo.recipes.core.export.ExportQueue;
+import org.apache.fluo.recipes.core.export.SequencedExport;
+import org.apache.fluo.recipes.core.export.function.Exporter;
+import org.apache.fluo.recipes.core.map.it.TestSerializer;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExportMetricsIT {
+
+  private static final String QUEUE_ID = "emq";
+  private static final int ENTRIES = 300;
+  private static final long LAG_MS = 500;
+
+  private static final RecordingReporter REPORTER = new RecordingReporter();
+  private static final Map<String, String> EXPORTED = new ConcurrentHashMap<>();
+
+  // holds up exporting until all entries are queued, so buckets have more entries than fit in the
+  // buffer
+  private static volatile CountDownLatch loaded;
+
+  public static class MapExporter implements Exporter<String, String> {
+    @Override
+    public void export(Iterator<SequencedExport<String, String>> exports) {
+      Uninterruptibles.awaitUninterruptibly(loaded);
+      exports.forEachRemaining(se -> EXPORTED.put(se.getKey(), se.getValue()));
+    }
+  }
+
+  public static class MetricsObserverProvider implements ObserverProvider {
+    @Override
+    public void provide(Registry or, Context ctx) {
+      ExportQueue<String, String> eq = ExportQueue.getInstance(QUEUE_ID, ctx.getAppConfiguration());
+      eq.registerObserver(or, new MapExporter(), REPORTER);
+    }
+  }
+
+  private MiniFluo miniFluo;
+
+  @Before
+  public void setUpFluo() throws Exception {
+    FileUtils.deleteQuietly(new File("target/mini"));
+
+    REPORTER.clear();
+    EXPORTED.clear();
+    loaded = new CountDownLatch(1);
+
+    FluoConfiguration props = new FluoConfiguration();
+    props.setApplicationName("eqm");
+    props.setWorkerThreads(20);
+    props.setMiniDataDir("target/mini");
+    props.setObserverProvider(MetricsObserverProvider.class);
+
+    SimpleSerializer.setSerializer(props, TestSerializer.class);
+
+    ExportQueue.configure(QUEUE_ID).keyType(String.class).valueType(String.class).buckets(3)
+        .bufferSize(512).save(props);
+
+    miniFluo = FluoFactory.newMiniFluo(props);
+  }
+
+  @After
+  public void tearDownFluo() throws Exception {
+    loaded.countDown();
+    if (miniFluo != null) {
+      miniFluo.close();
+    }
+  }
+
+  @Test
+  public void testMetrics() {
+    try (FluoClient fc = FluoFactory.newClient(miniFluo.getClientConfiguration())) {
+      ExportQueue<String, String> eq = ExportQueue.getInstance(QUEUE_ID, fc.getAppConfiguration());
+
+      try (LoaderExecutor loader = fc.newLoaderExecutor()) {
+        for (int i = 0; i < ENTRIES; i++) {
+          String key = "k" + i;
+          loader.execute((tx, ctx) -> eq.add(tx, key, "v" + key));
+        }
+      }
+
+      // Lag is estimated from the start timestamps of transactions using the queue. Add nothing
+      // after all entries are queued, so there is a timestamp later than all of them to compare
+      // with. Then let the entries wait in the queue.
+      Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+      try (Transaction tx = fc.newTransaction()) {
+        eq.addAll(tx, Collections.emptyIterator());
+        tx.commit();
+      }
+      Uninterruptibles.sleepUninterruptibly(LAG_MS, TimeUnit.MILLISECONDS);
+      loaded.countDown();
+      miniFluo.waitForObservers();
+
+      Assert.assertEquals(ENTRIES, EXPORTED.size());
+
+      try (Snapshot snap = fc.newSnapshot()) {
+        Assert.assertEquals(0, ExportQueue.getBacklog(snap, QUEUE_ID).size());
+      }
+    }
+
+    String prefix = "exportq." + QUEUE_ID + ".";
+    // exporting is at least once, so an entry may be exported again if a transaction fails
+    long exported = REPORTER.getSum(prefix + "exported");
+    Assert.assertTrue(exported >= ENTRIES);
+    Assert.assertEquals(exported, REPORTER.getSum(prefix + "batchSize"));
+    Assert.assertEquals(0, REPORTER.getSum(prefix + "moved"));
+    // a bucket had more entries queued than fit in the buffer
+    Assert.assertTrue(REPORTER.getSum(prefix + "continued") > 0);
+    Assert.assertTrue(REPORTER.getMax(prefix + "lag") >= LAG_MS);
+    Assert.assertTrue(REPORTER.getSum(prefix + "exportTime") > 0);
+  }
+}
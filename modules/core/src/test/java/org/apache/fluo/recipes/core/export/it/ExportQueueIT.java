@@ -18,7 +18,9 @@ package org.apache.fluo.recipes.core.export.it;
 import org.apache.fluo.api.client.FluoClient;
 import org.apache.fluo.api.client.FluoFactory;
 import org.apache.fluo.api.client.LoaderExecutor;
+import org.apache.fluo.api.client.Snapshot;
 import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.recipes.core.export.ExportQueue;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -73,6 +75,9 @@ public class ExportQueueIT extends ExportTestBase {
       Assert.assertEquals(ns("0999", "0042"), getExportedReferees("0005"));
       Assert.assertEquals(ns("0002"), getExportedReferees("0042"));
 
+      try (Snapshot snap = fc.newSnapshot()) {
+        Assert.assertEquals(0, ExportQueue.getBacklog(snap, RefExporter.QUEUE_ID).size());
+      }
     }
   }
 
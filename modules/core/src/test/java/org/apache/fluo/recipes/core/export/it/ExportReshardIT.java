@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.fluo.recipes.core.export.it;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.fluo.api.client.FluoClient;
+import org.apache.fluo.api.client.FluoFactory;
+import org.apache.fluo.api.client.LoaderExecutor;
+import org.apache.fluo.api.client.Snapshot;
+import org.apache.fluo.api.client.Transaction;
+import org.apache.fluo.api.config.FluoConfiguration;
+import org.apache.fluo.api.exceptions.CommitException;
+import org.apache.fluo.api.mini.MiniFluo;
+import org.apache.fluo.api.observer.ObserverProvider;
+import org.apache.fluo.recipes.core.export.ExportQueue;
+import org.apache.fluo.recipes.core.export.SequencedExport;
+import org.apache.fluo.recipes.core.export.function.Exporter;
+import org.apache.fluo.recipes.core.map.it.TestSerializer;
+import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExportReshardIT {
+
+  private static final String QUEUE_ID = "erq";
+  private static final int ROUNDS = 20;
+  private static final int KEYS = 20;
+
+  /**
+   * Checks that the entries for each key are exported in sequence order. Exporting is at least
+   * once, so an entry exported again is ignored.
+   */
+  public static class OrderCheckingExporter implements Exporter<String, String> {
+
+    private static final Set<String> EXPORTED = new HashSet<>();
+    private static final Map<String, Long> MAX_SEQS = new HashMap<>();
+    private static final List<String> ERRORS = new ArrayList<>();
+
+    static synchronized void clear() {
+      EXPORTED.clear();
+      MAX_SEQS.clear();
+      ERRORS.clear();
+    }
+
+    static synchronized int getExported() {
+      return EXPORTED.size();
+    }
+
+    static synchronized List<String> getErrors() {
+      return new ArrayList<>(ERRORS);
+    }
+
+    @Override
+    public void export(Iterator<SequencedExport<String, String>> exports) {
+      synchronized (OrderCheckingExporter.class) {
+        exports.forEachRemaining(se -> {
+          if (EXPORTED.add(se.getKey() + ":" + se.getSequence())) {
+            long max = MAX_SEQS.getOrDefault(se.getKey(), -1L);
+            if (se.getSequence() < max) {
+              ERRORS.add(se.getKey() + " exported " + se.getSequence() + " after " + max);
+            }
+            MAX_SEQS.put(se.getKey(), Math.max(max, se.getSequence()));
+          }
+        });
+      }
+    }
+  }
+
+  public static class ReshardObserverProvider implements ObserverProvider {
+    @Override
+    public void provide(Registry or, Context ctx) {
+      ExportQueue<String, String> eq = ExportQueue.getInstance(QUEUE_ID, ctx.getAppConfiguration());
+      eq.registerObserver(or, new OrderCheckingExporter());
+    }
+  }
+
+  private MiniFluo miniFluo;
+
+  @Before
+  public void setUpFluo() throws Exception {
+    FileUtils.deleteQuietly(new File("target/mini"));
+
+    OrderCheckingExporter.clear();
+
+    FluoConfiguration props = new FluoConfiguration();
+    props.setApplicationName("erq");
+    props.setWorkerThreads(20);
+    props.setMiniDataDir("target/mini");
+    props.setObserverProvider(ReshardObserverProvider.class);
+
+    SimpleSerializer.setSerializer(props, TestSerializer.class);
+
+    ExportQueue.configure(QUEUE_ID).keyType(String.class).valueType(String.class).buckets(3)
+        .resharding(true).save(props);
+
+    miniFluo = FluoFactory.newMiniFluo(props);
+  }
+
+  @After
+  public void tearDownFluo() throws Exception {
+    if (miniFluo != null) {
+      miniFluo.close();
+    }
+  }
+
+  private void reshard(FluoClient fc, int numBuckets) {
+    while (true) {
+      try (Transaction tx = fc.newTransaction()) {
+        ExportQueue.reshard(tx, QUEUE_ID, fc.getAppConfiguration(), numBuckets);
+        tx.commit();
+        return;
+      } catch (CommitException e) {
+        // collided with a transaction queuing in an old bucket
+      }
+    }
+  }
+
+  @Test
+  public void testOrder() {
+    try (FluoClient fc = FluoFactory.newClient(miniFluo.getClientConfiguration())) {
+      ExportQueue<String, String> eq = ExportQueue.getInstance(QUEUE_ID, fc.getAppConfiguration());
+
+      try (LoaderExecutor loader = fc.newLoaderExecutor()) {
+        for (int round = 0; round < ROUNDS; round++) {
+          if (round == ROUNDS / 2) {
+            // reshard while entries are being queued and exported
+            reshard(fc, 7);
+          }
+          for (int k = 0; k < KEYS; k++) {
+            String key = "k" + k;
+            String val = "r" + round;
+            loader.execute((tx, ctx) -> eq.add(tx, key, val));
+          }
+        }
+      }
+
+      miniFluo.waitForObservers();
+
+      Assert.assertEquals(Collections.emptyList(), OrderCheckingExporter.getErrors());
+      Assert.assertEquals(ROUNDS * KEYS, OrderCheckingExporter.getExported());
+
+      try (Snapshot snap = fc.newSnapshot()) {
+        Assert.assertEquals(0, ExportQueue.getBacklog(snap, QUEUE_ID).size());
+      }
+
+      // the new buckets are exporting, so the queue can be resharded again
+      reshard(fc, 5);
+    }
+  }
+}
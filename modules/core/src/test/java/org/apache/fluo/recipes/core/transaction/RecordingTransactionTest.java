@@ -15,6 +15,7 @@
 
 package org.apache.fluo.recipes.core.transaction;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -31,6 +32,7 @@ import org.apache.fluo.api.data.Bytes;
 import org.apache.fluo.api.data.Column;
 import org.apache.fluo.api.data.ColumnValue;
 import org.apache.fluo.api.data.RowColumnValue;
+import org.apache.fluo.api.exceptions.AlreadySetException;
 import org.apache.fluo.recipes.core.types.StringEncoder;
 import org.apache.fluo.recipes.core.types.TypeLayer;
 import org.apache.fluo.recipes.core.types.TypedTransaction;
@@ -39,6 +41,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.mock;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
@@ -219,6 +222,91 @@ public class RecordingTransactionTest {
     verify(tx, sb, rsb, rs, cs);
   }
 
+  @Test
+  public void testTxLogEncoding() {
+    byte[] big = new byte[300];
+    Arrays.fill(big, (byte) 0xff);
+
+    List<LogEntry> expected =
+        Arrays.asList(LogEntry.newSet("r1", Column.EMPTY, ""),
+            LogEntry.newGet(Bytes.of("r2"), new Column("cf2"), Bytes.of(big)),
+            LogEntry.newDelete("r3", new Column("cf3", "cq3")),
+            LogEntry.newSet("r4", new Column("cf4", "cq4", "A&B"), "v4"),
+            LogEntry.newSet("r5", new Column("", "", ""), "v5"));
+
+    TxLog txLog = new TxLog();
+    expected.forEach(txLog::add);
+    txLog.trim();
+
+    Assert.assertEquals(5, txLog.size());
+    Assert.assertEquals(expected, txLog.getLogEntries());
+
+    Iterator<TxLog.Entry> iter = txLog.entryIterator();
+    TxLog.Entry first = iter.next();
+    Assert.assertEquals(LogEntry.Operation.SET, first.getOp());
+    Assert.assertSame(first, iter.next());
+    Assert.assertEquals(Bytes.of(big), first.getValue());
+    Assert.assertEquals(3, Iterators.size(iter));
+  }
+
+  @Test
+  public void testRejectedWritesNotLogged() {
+    // like Fluo, the transaction rejects a second write to the same row/column
+    tx.set(Bytes.of("r1"), new Column("cf1"), Bytes.of("v1"));
+    tx.set(Bytes.of("r1"), new Column("cf1"), Bytes.of("v2"));
+    expectLastCall().andThrow(new AlreadySetException("r1 cf1 already set"));
+    tx.delete(Bytes.of("r1"), new Column("cf1"));
+    expectLastCall().andThrow(new AlreadySetException("r1 cf1 already set"));
+    replay(tx);
+
+    rtx.set(Bytes.of("r1"), new Column("cf1"), Bytes.of("v1"));
+    try {
+      rtx.set(Bytes.of("r1"), new Column("cf1"), Bytes.of("v2"));
+      Assert.fail();
+    } catch (AlreadySetException e) {
+      // expected
+    }
+    try {
+      rtx.delete(Bytes.of("r1"), new Column("cf1"));
+      Assert.fail();
+    } catch (AlreadySetException e) {
+      // expected
+    }
+
+    Assert.assertEquals(Collections.singletonList(LogEntry.newSet("r1", new Column("cf1"), "v1")),
+        rtx.getTxLog().getLogEntries());
+    verify(tx);
+  }
+
+  @Test
+  public void testCompacting() {
+    rtx = RecordingTransaction.wrapCompacting(tx, le -> true);
+    tx.set(Bytes.of("r1"), new Column("cf1"), Bytes.of("v1"));
+    tx.delete(Bytes.of("r2"), new Column("cf2", "cq2"));
+    expect(tx.get(Bytes.of("r1"), new Column("cf1"))).andReturn(Bytes.of("v0")).times(2);
+    expect(tx.get(Bytes.of("r2"), new Column("cf2", "cq2"))).andReturn(Bytes.of("v2"));
+    expect(tx.get(Bytes.of("r3"), new Column("cf3"))).andReturn(null);
+    replay(tx);
+
+    rtx.get(Bytes.of("r1"), new Column("cf1"));
+    rtx.set(Bytes.of("r1"), new Column("cf1"), Bytes.of("v1"));
+    rtx.get(Bytes.of("r2"), new Column("cf2", "cq2"));
+    // reads the snapshot, not the value set above
+    rtx.get(Bytes.of("r1"), new Column("cf1"));
+    rtx.delete(Bytes.of("r2"), new Column("cf2", "cq2"));
+    rtx.get(Bytes.of("r3"), new Column("cf3"));
+
+    List<LogEntry> expected =
+        Arrays.asList(LogEntry.newGet("r1", new Column("cf1"), "v0"),
+            LogEntry.newSet("r1", new Column("cf1"), "v1"),
+            LogEntry.newGet("r2", new Column("cf2", "cq2"), "v2"),
+            LogEntry.newDelete("r2", new Column("cf2", "cq2")));
+    Assert.assertEquals(4, rtx.getTxLog().size());
+    Assert.assertEquals(expected, rtx.getTxLog().getLogEntries());
+
+    verify(tx);
+  }
+
   @Test
   public void testGetTimestamp() {
     expect(tx.getStartTimestamp()).andReturn(5L);
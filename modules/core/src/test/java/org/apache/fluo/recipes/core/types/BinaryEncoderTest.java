@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.core.types;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Bytes.BytesBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryEncoderTest {
+
+  private static final Encoder ENCODER = new BinaryEncoder();
+
+  private static void assertOrdered(List<Bytes> encoded) {
+    for (int i = 1; i < encoded.size(); i++) {
+      Assert.assertTrue(encoded.get(i - 1).compareTo(encoded.get(i)) < 0);
+    }
+  }
+
+  @Test
+  public void testInteger() {
+    List<Integer> values = Arrays.asList(Integer.MIN_VALUE, -1000, -1, 0, 1, 255, 256, 1000,
+        Integer.MAX_VALUE);
+    for (int i : values) {
+      Assert.assertEquals(4, ENCODER.encode(i).length());
+      Assert.assertEquals(i, ENCODER.decodeInteger(ENCODER.encode(i)));
+    }
+    assertOrdered(values.stream().map(ENCODER::encode).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testLong() {
+    List<Long> values = Arrays.asList(Long.MIN_VALUE, -1L << 40, -1L, 0L, 1L, 255L, 1L << 40,
+        Long.MAX_VALUE);
+    for (long l : values) {
+      Assert.assertEquals(8, ENCODER.encode(l).length());
+      Assert.assertEquals(l, ENCODER.decodeLong(ENCODER.encode(l)));
+    }
+    assertOrdered(values.stream().map(ENCODER::encode).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testFloat() {
+    List<Float> values = Arrays.asList(Float.NEGATIVE_INFINITY, -Float.MAX_VALUE, -2.5f,
+        -Float.MIN_VALUE, -0.0f, 0.0f, Float.MIN_VALUE, 2.5f, Float.MAX_VALUE,
+        Float.POSITIVE_INFINITY);
+    for (float f : values) {
+      Assert.assertEquals(0, Float.compare(f, ENCODER.decodeFloat(ENCODER.encode(f))));
+    }
+    assertOrdered(values.stream().map(ENCODER::encode).collect(Collectors.toList()));
+    Assert.assertTrue(Float.isNaN(ENCODER.decodeFloat(ENCODER.encode(Float.NaN))));
+  }
+
+  @Test
+  public void testDouble() {
+    List<Double> values = Arrays.asList(Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -2.5,
+        -Double.MIN_VALUE, -0.0, 0.0, Double.MIN_VALUE, 2.5, Double.MAX_VALUE,
+        Double.POSITIVE_INFINITY);
+    for (double d : values) {
+      Assert.assertEquals(0, Double.compare(d, ENCODER.decodeDouble(ENCODER.encode(d))));
+    }
+    assertOrdered(values.stream().map(ENCODER::encode).collect(Collectors.toList()));
+    Assert.assertTrue(Double.isNaN(ENCODER.decodeDouble(ENCODER.encode(Double.NaN))));
+  }
+
+  @Test
+  public void testOther() {
+    Assert.assertTrue(ENCODER.decodeBoolean(ENCODER.encode(true)));
+    Assert.assertFalse(ENCODER.decodeBoolean(ENCODER.encode(false)));
+    Assert.assertEquals("abc", ENCODER.decodeString(ENCODER.encode("abc")));
+    assertOrdered(Arrays.asList(ENCODER.encode("abc"), ENCODER.encode("abd"),
+        ENCODER.encode("é")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongLength() {
+    ENCODER.decodeLong(ENCODER.encode(5));
+  }
+
+  @Test
+  public void testBuilderAndOffsets() {
+    for (Encoder encoder : Arrays.asList(ENCODER, new StringEncoder())) {
+      BytesBuilder builder = Bytes.builder().append("r:");
+      encoder.encode(-7, builder);
+      int o1 = builder.getLength();
+      encoder.encode(1L << 40, builder);
+      int o2 = builder.getLength();
+      encoder.encode(2.5f, builder);
+      int o3 = builder.getLength();
+      encoder.encode(-1.25, builder);
+      Bytes row = builder.toBytes();
+
+      Assert.assertEquals(encoder.encode(-7), row.subSequence(2, o1));
+      Assert.assertEquals(encoder.encode(1L << 40), row.subSequence(o1, o2));
+      Assert.assertEquals(-7, encoder.decodeInteger(row, 2, o1 - 2));
+      Assert.assertEquals(1L << 40, encoder.decodeLong(row, o1, o2 - o1));
+      Assert.assertEquals(2.5f, encoder.decodeFloat(row, o2, o3 - o2), 0);
+      Assert.assertEquals(-1.25, encoder.decodeDouble(row, o3, row.length() - o3), 0);
+    }
+  }
+}
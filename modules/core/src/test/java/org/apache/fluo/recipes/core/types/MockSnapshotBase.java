@@ -32,6 +32,9 @@ public class MockSnapshotBase extends AbstractSnapshotBase implements SnapshotBa
 
   final Map<Bytes, Map<Column, Bytes>> getData;
 
+  // number of calls to get(Collection<RowColumn>)
+  int rowColumnGets = 0;
+
   /**
    * Initializes {@link #getData} using {@link #toRCVM(String...)}
    */
@@ -175,6 +178,14 @@ public class MockSnapshotBase extends AbstractSnapshotBase implements SnapshotBa
 
   @Override
   public Map<RowColumn, Bytes> get(Collection<RowColumn> rowColumns) {
-    throw new UnsupportedOperationException();
+    rowColumnGets++;
+    Map<RowColumn, Bytes> ret = new HashMap<>();
+    for (RowColumn rc : rowColumns) {
+      Bytes val = get(rc.getRow(), rc.getColumn());
+      if (val != null) {
+        ret.put(rc, val);
+      }
+    }
+    return ret;
   }
 }
@@ -22,7 +22,9 @@ import java.util.Map;
 import com.google.common.collect.ImmutableSet;
 import org.apache.fluo.api.data.Bytes;
 import org.apache.fluo.api.data.Column;
+import org.apache.fluo.api.data.RowColumn;
 import org.apache.fluo.recipes.core.types.TypedSnapshotBase.Value;
+import org.apache.fluo.recipes.core.types.TypedSnapshotBase.ValueBatch;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -495,4 +497,80 @@ public class TypeLayerTest {
     tt.weakNotifications.clear();
 
   }
+
+  @Test
+  public void testBatch() throws Exception {
+    TypeLayer tl = new TypeLayer(new StringEncoder());
+
+    MockTransactionBase tt =
+        new MockTransactionBase("r1,cf1:cq1,v1", "r1,cf1:cq2,v2", "r1,cf1:cq3,9", "r2,cf2:7,12",
+            "r2,cf2:8:A,13", "13,9:17,20");
+
+    TypedTransactionBase ttx = tl.wrap(tt);
+
+    ValueBatch batch = ttx.getBatch();
+    Value v1 = batch.row("r1").fam("cf1").qual("cq1");
+    Value v2 = batch.row("r1").fam("cf1").qual("cq3");
+    Value v3 = batch.row("r2").fam("cf2").qual(7);
+    Value v4 = batch.row("r2").fam("cf2").qual(8).vis("A");
+    Value v5 = batch.row(13).col(new Column("9", "17"));
+    Value v6 = batch.row("r3").fam("cf1").qual("cq1");
+
+    Assert.assertEquals(0, tt.rowColumnGets);
+    Assert.assertEquals("v1", v1.toString());
+    Assert.assertEquals(1, tt.rowColumnGets);
+    Assert.assertEquals(9, v2.toInteger(0));
+    Assert.assertEquals(12L, (long) v3.toLong());
+    Assert.assertEquals(13, v4.toInteger(0));
+    Assert.assertEquals(20, v5.toInteger(0));
+    Assert.assertNull(v6.toLong());
+    Assert.assertEquals(5, v6.toLong(5));
+    Assert.assertEquals(1, tt.rowColumnGets);
+
+    // values created after a batch was read are read in another batch
+    Value v7 = batch.row("r1").fam("cf1").qual("cq2");
+    Map<RowColumn, Value> all = batch.toMap();
+    Assert.assertEquals(2, tt.rowColumnGets);
+    Assert.assertEquals("v2", v7.toString());
+    Assert.assertEquals(7, all.size());
+    Assert.assertEquals("v1", all.get(new RowColumn("r1", new Column("cf1", "cq1"))).toString());
+    Assert.assertNull(all.get(new RowColumn("r3", new Column("cf1", "cq1"))).toString());
+  }
+
+  @Test
+  public void testAsync() throws Exception {
+    TypeLayer tl = new TypeLayer(new StringEncoder());
+
+    MockTransactionBase tt =
+        new MockTransactionBase("r1,cf1:cq1,5", "r2,cf1:cq1,7", "r3,cf1:cq1,9");
+
+    TypedTransactionBase ttx = tl.wrap(tt);
+
+    Value c1 = ttx.mutate().row("r1").fam("cf1").qual("cq1").incrementAsync(2L);
+    Value c2 = ttx.mutate().row("r2").fam("cf1").qual("cq1").incrementAsync(3);
+    ttx.mutate().row("r4").fam("cf1").qual("cq1").incrementAsync(4L);
+    Value c3 = ttx.getAsync().row("r3").fam("cf1").qual("cq1");
+
+    Assert.assertEquals(0, tt.rowColumnGets);
+    Assert.assertEquals(0, tt.setData.size());
+
+    ttx.flush();
+
+    Assert.assertEquals(1, tt.rowColumnGets);
+    Assert.assertEquals(MockTransactionBase.toRCVM("r1,cf1:cq1,7", "r2,cf1:cq1,10", "r4,cf1:cq1,4"),
+        tt.setData);
+    Assert.assertEquals(5, c1.toLong(0));
+    Assert.assertEquals(7, c2.toInteger(0));
+    Assert.assertEquals(9, c3.toInteger(0));
+
+    // accessing a queued value reads the batch
+    Value c4 = ttx.mutate().row("r3").fam("cf1").qual("cq1").incrementAsync(1);
+    Assert.assertEquals(9, c4.toInteger(0));
+    Assert.assertEquals(2, tt.rowColumnGets);
+    Assert.assertEquals(Bytes.of("10"),
+        tt.setData.get(Bytes.of("r3")).get(new Column("cf1", "cq1")));
+
+    ttx.flush();
+    Assert.assertEquals(2, tt.rowColumnGets);
+  }
 }
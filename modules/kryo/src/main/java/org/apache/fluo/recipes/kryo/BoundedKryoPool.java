@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.kryo;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.pool.KryoCallback;
+import com.esotericsoftware.kryo.pool.KryoFactory;
+import com.esotericsoftware.kryo.pool.KryoPool;
+import com.google.common.base.Preconditions;
+
+/**
+ * A pool that holds strong references to at most a fixed number of Kryo instances. Instances are
+ * created on demand until the limit is reached, after which borrowing waits for an instance to be
+ * released.
+ */
+// intentionally package private
+class BoundedKryoPool implements KryoPool {
+
+  private final KryoFactory factory;
+  private final int maxSize;
+  private final BlockingQueue<Kryo> idle;
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicLong borrows = new AtomicLong();
+  private final AtomicLong borrowWaitNanos = new AtomicLong();
+
+  // Tracks threads running a callback, so that a nested call on the same thread does not wait for
+  // an instance that may only be released by that thread.
+  private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+  BoundedKryoPool(KryoFactory factory, int maxSize) {
+    Preconditions.checkArgument(maxSize > 0, "Pool size must be positive : " + maxSize);
+    this.factory = factory;
+    this.maxSize = maxSize;
+    this.idle = new ArrayBlockingQueue<>(maxSize);
+  }
+
+  @Override
+  public Kryo borrow() {
+    borrows.incrementAndGet();
+
+    Kryo kryo = idle.poll();
+    if (kryo != null) {
+      return kryo;
+    }
+
+    int s;
+    while ((s = size.get()) < maxSize) {
+      if (size.compareAndSet(s, s + 1)) {
+        try {
+          return factory.create();
+        } catch (RuntimeException e) {
+          size.decrementAndGet();
+          throw e;
+        }
+      }
+    }
+
+    long t1 = System.nanoTime();
+    try {
+      return idle.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for Kryo instance", e);
+    } finally {
+      borrowWaitNanos.addAndGet(System.nanoTime() - t1);
+    }
+  }
+
+  @Override
+  public void release(Kryo kryo) {
+    idle.offer(kryo);
+  }
+
+  @Override
+  public <T> T run(KryoCallback<T> callback) {
+    int[] d = depth.get();
+    if (d[0] > 0) {
+      // nested call, use a temporary instance that is not added to the pool
+      return callback.execute(factory.create());
+    }
+
+    Kryo kryo = borrow();
+    d[0]++;
+    try {
+      return callback.execute(kryo);
+    } finally {
+      d[0]--;
+      release(kryo);
+    }
+  }
+
+  int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return the number of instances created by the pool and not discarded
+   */
+  int getSize() {
+    return size.get();
+  }
+
+  int getIdle() {
+    return idle.size();
+  }
+
+  long getBorrows() {
+    return borrows.get();
+  }
+
+  long getBorrowWaitNanos() {
+    return borrowWaitNanos.get();
+  }
+}
@@ -15,21 +15,30 @@
 
 package org.apache.fluo.recipes.kryo;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.pool.KryoCallback;
 import com.esotericsoftware.kryo.pool.KryoFactory;
 import com.esotericsoftware.kryo.pool.KryoPool;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import org.apache.fluo.api.config.FluoConfiguration;
 import org.apache.fluo.api.config.SimpleConfiguration;
+import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Bytes.BytesBuilder;
 import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
 
 /***
@@ -40,10 +49,31 @@ public class KryoSimplerSerializer implements SimpleSerializer, Serializable {
   private static final long serialVersionUID = 1L;
 
   private static final String KRYO_FACTORY_PROP = "recipes.serializer.kryo.factory";
+  private static final String KRYO_REGISTRATIONS_PROP = "recipes.serializer.kryo.registrations";
+  private static final String KRYO_POOL_SIZE_PROP = "recipes.serializer.kryo.poolSize";
   private static Map<String, KryoPool> pools = new ConcurrentHashMap<>();
+  private static Map<String, AtomicLong> creations = new ConcurrentHashMap<>();
   private String factoryType = null;
+  // comma separated list of classes to register with each Kryo instance, in order
+  private String registrations = null;
+  // when zero a pool with soft references is used
+  private int poolSize = 0;
   private transient KryoFactory factory = null;
 
+  // initial size of the per thread output buffer, it grows as needed
+  private static final int BUFFER_SIZE = 4096;
+  // per thread output buffers that grew larger than this are not kept for reuse
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1 << 20;
+
+  private static final byte[] EMPTY_ARRAY = new byte[0];
+  private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.wrap(EMPTY_ARRAY);
+
+  // These are taken from the thread local while in use, so a nested call on the same thread (like
+  // a custom kryo serializer that uses this class) allocates its own instead of corrupting them.
+  private static final ThreadLocal<Output> outputs = new ThreadLocal<>();
+  private static final ThreadLocal<Input> inputs = new ThreadLocal<>();
+  private static final ThreadLocal<ByteBufferInput> bbInputs = new ThreadLocal<>();
+
   private static KryoFactory getFactory(String factoryType) {
     try {
       return KryoSimplerSerializer.class.getClassLoader().loadClass(factoryType)
@@ -53,17 +83,142 @@ public class KryoSimplerSerializer implements SimpleSerializer, Serializable {
     }
   }
 
-  private KryoPool getPool() {
+  private static List<Class<?>> loadClasses(String classNames) {
+    List<Class<?>> classes = new ArrayList<>();
+    for (String className : Splitter.on(',').trimResults().omitEmptyStrings().split(classNames)) {
+      try {
+        classes.add(KryoSimplerSerializer.class.getClassLoader().loadClass(className));
+      } catch (ClassNotFoundException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return classes;
+  }
+
+  /**
+   * Wraps a factory so that the configured classes are registered with each Kryo instance it
+   * creates. Kryo gives each class the next free id, so the ids are stable as long as the factory
+   * and the order of the configured classes do not change.
+   */
+  private static KryoFactory withRegistrations(KryoFactory factory, String registrations) {
+    if (registrations == null || registrations.isEmpty()) {
+      return factory;
+    }
+
+    List<Class<?>> classes = loadClasses(registrations);
+    return () -> {
+      Kryo kryo = factory.create();
+      for (Class<?> clazz : classes) {
+        kryo.register(clazz);
+      }
+      return kryo;
+    };
+  }
+
+  private String getPoolKey() {
     Preconditions.checkState(factory != null || factoryType != null, "KryFactory not initialized");
-    if (factory == null) {
-      return pools.computeIfAbsent(factoryType, ft -> new KryoPool.Builder(getFactory(ft))
-          .softReferences().build());
-    } else {
-      return pools.computeIfAbsent(factory.getClass().getName(),
-          ft -> new KryoPool.Builder(factory).softReferences().build());
+    String key = factory == null ? factoryType : factory.getClass().getName();
+    if (registrations != null && !registrations.isEmpty()) {
+      key += "|" + registrations;
+    }
+    if (poolSize > 0) {
+      key += "#" + poolSize;
+    }
+    return key;
+  }
+
+  private KryoPool getPool() {
+    return pools.computeIfAbsent(getPoolKey(), key -> {
+      KryoFactory kf =
+          withRegistrations(factory == null ? getFactory(factoryType) : factory, registrations);
+      AtomicLong created = creations.computeIfAbsent(key, k -> new AtomicLong());
+      KryoFactory countingFactory = () -> {
+        created.incrementAndGet();
+        return kf.create();
+      };
+
+      if (poolSize > 0) {
+        return new BoundedKryoPool(countingFactory, poolSize);
+      } else {
+        return new KryoPool.Builder(countingFactory).softReferences().build();
+      }
+    });
+  }
+
+  /**
+   * A snapshot of the statistics of the Kryo pool used by a serializer. All serializers configured
+   * the same way share a pool.
+   *
+   * @since 1.2.0
+   */
+  public static class PoolStats {
+    private final long created;
+    private final int size;
+    private final int idle;
+    private final long borrows;
+    private final long borrowWaitNanos;
+
+    private PoolStats(long created, int size, int idle, long borrows, long borrowWaitNanos) {
+      this.created = created;
+      this.size = size;
+      this.idle = idle;
+      this.borrows = borrows;
+      this.borrowWaitNanos = borrowWaitNanos;
+    }
+
+    /**
+     * @return The number of Kryo instances created. With the default pool, instances dropped by
+     *         the garbage collector under memory pressure are created again and counted here.
+     */
+    public long getCreated() {
+      return created;
+    }
+
+    /**
+     * @return The number of instances held by a bounded pool or -1 for the default pool.
+     */
+    public int getSize() {
+      return size;
+    }
+
+    /**
+     * @return The number of instances in a bounded pool that are not in use or -1 for the default
+     *         pool.
+     */
+    public int getIdle() {
+      return idle;
+    }
+
+    /**
+     * @return The number of times an instance was borrowed from a bounded pool or -1 for the
+     *         default pool.
+     */
+    public long getBorrows() {
+      return borrows;
+    }
+
+    /**
+     * @return The total time spent waiting for a bounded pool to release an instance.
+     */
+    public long getBorrowWaitTime(TimeUnit unit) {
+      return unit.convert(borrowWaitNanos, TimeUnit.NANOSECONDS);
     }
   }
 
+  /**
+   * @since 1.2.0
+   */
+  public PoolStats getPoolStats() {
+    KryoPool pool = getPool();
+    long created = creations.get(getPoolKey()).get();
+    if (pool instanceof BoundedKryoPool) {
+      BoundedKryoPool bkp = (BoundedKryoPool) pool;
+      return new PoolStats(created, bkp.getSize(), bkp.getIdle(), bkp.getBorrows(),
+          bkp.getBorrowWaitNanos());
+    }
+    return new PoolStats(created, -1, -1, -1, 0);
+  }
+
   /**
    * @since 1.0.0
    */
@@ -75,36 +230,169 @@ public class KryoSimplerSerializer implements SimpleSerializer, Serializable {
     }
   }
 
-  @Override
-  public <T> byte[] serialize(T obj) {
-    return getPool().run(new KryoCallback<byte[]>() {
+  private static <I> I take(ThreadLocal<I> local) {
+    I i = local.get();
+    if (i != null) {
+      local.set(null);
+    }
+    return i;
+  }
+
+  /**
+   * @param type When null the class of the object is written, otherwise only the object is written
+   *        and it must be of exactly this type.
+   */
+  private Output write(Object obj, Class<?> type) {
+    Preconditions.checkArgument(type == null || (obj != null && obj.getClass() == type),
+        "Object %s is not of type %s", obj, type);
+
+    Output output = take(outputs);
+    if (output == null) {
+      output = new Output(BUFFER_SIZE, -1);
+    }
+
+    Output out = output;
+    getPool().run(new KryoCallback<Void>() {
       @Override
-      public byte[] execute(Kryo kryo) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Output output = new Output(baos);
-        kryo.writeClassAndObject(output, obj);
-        output.close();
-        return baos.toByteArray();
+      public Void execute(Kryo kryo) {
+        if (type == null) {
+          kryo.writeClassAndObject(out, obj);
+        } else {
+          kryo.writeObject(out, obj);
+        }
+        return null;
       }
     });
+    return output;
   }
 
-  @Override
-  public <T> T deserialize(byte[] serObj, Class<T> clazz) {
+  private static void release(Output output) {
+    if (output.getBuffer().length <= MAX_RETAINED_BUFFER_SIZE) {
+      output.clear();
+      outputs.set(output);
+    }
+  }
+
+  private <T> T read(Input input, Class<T> clazz, boolean typed) {
     return getPool().run(new KryoCallback<T>() {
       @Override
       public T execute(Kryo kryo) {
-        ByteArrayInputStream bais = new ByteArrayInputStream(serObj);
-        Input input = new Input(bais);
+        if (typed) {
+          return kryo.readObject(input, clazz);
+        }
         return clazz.cast(kryo.readClassAndObject(input));
       }
     });
   }
 
+  private byte[] toArray(Object obj, Class<?> type) {
+    Output output = write(obj, type);
+    try {
+      return output.toBytes();
+    } finally {
+      release(output);
+    }
+  }
+
+  private void append(Object obj, Class<?> type, BytesBuilder builder) {
+    Output output = write(obj, type);
+    try {
+      builder.append(output.getBuffer(), 0, output.position());
+    } finally {
+      release(output);
+    }
+  }
+
+  @Override
+  public <T> byte[] serialize(T obj) {
+    return toArray(obj, null);
+  }
+
+  /**
+   * Writes directly into the builder from a per thread buffer, avoiding the intermediate array that
+   * {@link #serialize(Object)} returns.
+   *
+   * @since 1.2.0
+   */
+  @Override
+  public <T> void serialize(T obj, BytesBuilder builder) {
+    append(obj, null, builder);
+  }
+
+  /**
+   * Writes the object without its class name, using {@link Kryo#writeObject(Output, Object)}.
+   *
+   * @since 1.2.0
+   */
+  @Override
+  public <T> byte[] serializeTyped(T obj, Class<T> type) {
+    return toArray(obj, Objects.requireNonNull(type));
+  }
+
+  /**
+   * @see #serializeTyped(Object, Class)
+   * @since 1.2.0
+   */
+  @Override
+  public <T> void serializeTyped(T obj, Class<T> type, BytesBuilder builder) {
+    append(obj, Objects.requireNonNull(type), builder);
+  }
+
+  @Override
+  public <T> T deserialize(byte[] serObj, Class<T> clazz) {
+    Input input = take(inputs);
+    if (input == null) {
+      input = new Input();
+    }
+
+    input.setBuffer(serObj);
+    try {
+      return read(input, clazz, false);
+    } finally {
+      // do not hold a reference to the callers data
+      input.setBuffer(EMPTY_ARRAY);
+      inputs.set(input);
+    }
+  }
+
+  @Override
+  public <T> T deserialize(ByteBuffer serObj, Class<T> clazz) {
+    return readBuffer(serObj, clazz, false);
+  }
+
+  /**
+   * Reads data written by {@link #serializeTyped(Object, Class)}, using
+   * {@link Kryo#readObject(Input, Class)}.
+   *
+   * @since 1.2.0
+   */
+  @Override
+  public <T> T deserializeTyped(Bytes serObj, Class<T> type) {
+    return readBuffer(serObj.toByteBuffer(), type, true);
+  }
+
+  private <T> T readBuffer(ByteBuffer serObj, Class<T> clazz, boolean typed) {
+    ByteBufferInput input = take(bbInputs);
+    if (input == null) {
+      input = new ByteBufferInput();
+    }
+
+    // read from a duplicate so the position of the callers buffer is not changed
+    input.setBuffer(serObj.duplicate());
+    try {
+      return read(input, clazz, typed);
+    } finally {
+      input.setBuffer(EMPTY_BUFFER);
+      bbInputs.set(input);
+    }
+  }
+
   @Override
   public void init(SimpleConfiguration appConfig) {
     Preconditions.checkArgument(factory == null && factoryType == null, "Already initialized");
     factoryType = appConfig.getString(KRYO_FACTORY_PROP, DefaultFactory.class.getName());
+    registrations = appConfig.getString(KRYO_REGISTRATIONS_PROP, null);
+    poolSize = appConfig.getInt(KRYO_POOL_SIZE_PROP, 0);
   }
 
   public KryoSimplerSerializer() {}
@@ -131,4 +419,42 @@ public class KryoSimplerSerializer implements SimpleSerializer, Serializable {
       Class<? extends KryoFactory> factoryType) {
     config.getAppConfiguration().setProperty(KRYO_FACTORY_PROP, factoryType.getName());
   }
+
+  /**
+   * Call this to configure classes to register with Kryo before initializing Fluo. Registered
+   * classes are written as a small id instead of their fully qualified name. Each class is given
+   * the next id available in the Kryo instances created by the configured factory, so the order of
+   * the classes must not change once data is serialized. This is an alternative to registering
+   * classes in a custom KryoFactory.
+   *
+   * @since 1.2.0
+   */
+  public static void setKryoRegistrations(FluoConfiguration config, Class<?>... types) {
+    setKryoRegistrations(config, Arrays.stream(types).map(Class::getName).toArray(String[]::new));
+  }
+
+  /**
+   * @see #setKryoRegistrations(FluoConfiguration, Class...)
+   * @since 1.2.0
+   */
+  public static void setKryoRegistrations(FluoConfiguration config, String... typeNames) {
+    config.getAppConfiguration().setProperty(KRYO_REGISTRATIONS_PROP,
+        String.join(",", typeNames));
+  }
+
+  /**
+   * Call this to use a bounded pool of Kryo instances before initializing Fluo. By default Kryo
+   * instances are pooled using soft references, which the JVM may drop under memory pressure,
+   * causing instances to be created again when the JVM is already overloaded. A bounded pool keeps
+   * strong references to at most the given number of instances. Once that many instances are in
+   * use, threads wait for one to be released, so this should be at least the number of threads
+   * that serialize concurrently, like the number of Fluo worker threads. The time spent waiting is
+   * available from {@link #getPoolStats()}.
+   *
+   * @since 1.2.0
+   */
+  public static void setKryoPoolSize(FluoConfiguration config, int poolSize) {
+    Preconditions.checkArgument(poolSize > 0, "Pool size must be positive : " + poolSize);
+    config.getAppConfiguration().setProperty(KRYO_POOL_SIZE_PROP, poolSize);
+  }
 }
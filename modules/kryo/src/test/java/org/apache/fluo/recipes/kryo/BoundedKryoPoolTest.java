@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.fluo.recipes.kryo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.esotericsoftware.kryo.Kryo;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundedKryoPoolTest {
+
+  @Test
+  public void testBounded() throws Exception {
+    BoundedKryoPool pool = new BoundedKryoPool(Kryo::new, 2);
+
+    ExecutorService es = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Kryo>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        futures.add(es.submit(() -> pool.run(kryo -> kryo)));
+      }
+
+      for (Future<Kryo> future : futures) {
+        Assert.assertNotNull(future.get());
+      }
+
+      Assert.assertEquals(100, pool.getBorrows());
+      Assert.assertTrue(pool.getSize() <= 2);
+      Assert.assertEquals(pool.getSize(), pool.getIdle());
+
+      // once all instances are borrowed, borrowing waits for one to be released
+      Kryo k1 = pool.borrow();
+      Kryo k2 = pool.borrow();
+      Future<Kryo> waiting = es.submit(pool::borrow);
+      Thread.sleep(50);
+      Assert.assertFalse(waiting.isDone());
+      pool.release(k1);
+      Assert.assertSame(k1, waiting.get());
+      pool.release(k2);
+    } finally {
+      es.shutdown();
+    }
+
+    Assert.assertEquals(2, pool.getSize());
+    Assert.assertEquals(1, pool.getIdle());
+    Assert.assertTrue(pool.getBorrowWaitNanos() > 0);
+  }
+
+  @Test
+  public void testNested() {
+    BoundedKryoPool pool = new BoundedKryoPool(Kryo::new, 1);
+
+    // a nested call must not wait for the instance held by the same thread
+    Kryo inner = pool.run(outer -> pool.run(kryo -> {
+      Assert.assertNotSame(outer, kryo);
+      return kryo;
+    }));
+
+    Assert.assertNotNull(inner);
+    Assert.assertEquals(1, pool.getSize());
+    Assert.assertEquals(1, pool.getIdle());
+  }
+}
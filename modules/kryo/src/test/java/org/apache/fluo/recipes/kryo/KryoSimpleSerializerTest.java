@@ -15,10 +15,19 @@
 
 package org.apache.fluo.recipes.kryo;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import com.esotericsoftware.kryo.pool.KryoFactory;
+import org.apache.fluo.api.config.FluoConfiguration;
 import org.apache.fluo.api.data.Bytes;
+import org.apache.fluo.api.data.Bytes.BytesBuilder;
 import org.apache.fluo.api.data.Column;
 import org.apache.fluo.recipes.core.serialization.SimpleSerializer;
+import org.apache.fluo.recipes.core.transaction.LogEntry;
+import org.apache.fluo.recipes.core.transaction.TxLog;
 import org.apache.fluo.recipes.kryo.KryoSimplerSerializer;
 import org.junit.Assert;
 import org.junit.Test;
@@ -43,4 +52,157 @@ public class KryoSimpleSerializerTest {
     Bytes after = serializer.deserialize(barray, Bytes.class);
     Assert.assertEquals(before, after);
   }
+
+  @Test
+  public void testByteBuffer() {
+    SimpleSerializer serializer = new KryoSimplerSerializer(KRYO_FACTORY);
+    String before = "test";
+    byte[] barray = serializer.serialize(before);
+
+    // place the serialized data in the middle of a larger array, like a value read from Fluo
+    Bytes padded = Bytes.builder().append("abc").append(barray).append("xyz").toBytes();
+    ByteBuffer bb = padded.subSequence(3, 3 + barray.length).toByteBuffer();
+    int position = bb.position();
+
+    Assert.assertEquals(before, serializer.deserialize(bb, String.class));
+    Assert.assertEquals(position, bb.position());
+  }
+
+  @Test
+  public void testBytesBuilder() {
+    SimpleSerializer serializer = new KryoSimplerSerializer(KRYO_FACTORY);
+
+    BytesBuilder builder = Bytes.builder().append("abc");
+    serializer.serialize("test1", builder);
+    int len1 = builder.getLength();
+    serializer.serialize(42L, builder);
+    Bytes all = builder.toBytes();
+
+    Assert.assertEquals(Bytes.of("abc"), all.subSequence(0, 3));
+    Assert.assertEquals(Bytes.of(serializer.serialize("test1")), all.subSequence(3, len1));
+    Assert.assertEquals("test1", serializer.deserialize(all.subSequence(3, len1), String.class));
+    Assert.assertEquals((Long) 42L,
+        serializer.deserialize(all.subSequence(len1, all.length()), Long.class));
+
+    // the per thread buffer is reused, ensure it does not leak data between calls
+    byte[] big = new byte[10000];
+    big[9999] = 7;
+    Assert.assertArrayEquals(big,
+        serializer.deserialize(serializer.serialize(big), byte[].class));
+    Assert.assertEquals("test2",
+        serializer.deserialize(serializer.serialize("test2"), String.class));
+  }
+
+  public static class Point {
+    int x;
+    int y;
+
+    public Point() {}
+
+    Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof Point) {
+        Point op = (Point) o;
+        return x == op.x && y == op.y;
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return x * 31 + y;
+    }
+  }
+
+  @Test
+  public void testTyped() {
+    SimpleSerializer serializer = new KryoSimplerSerializer(KRYO_FACTORY);
+
+    Point before = new Point(3, 4);
+    byte[] typed = serializer.serializeTyped(before, Point.class);
+    Assert.assertTrue(typed.length < serializer.serialize(before).length);
+    Assert.assertEquals(before, serializer.deserializeTyped(Bytes.of(typed), Point.class));
+
+    BytesBuilder builder = Bytes.builder();
+    serializer.serializeTyped(before, Point.class, builder);
+    Assert.assertEquals(Bytes.of(typed), builder.toBytes());
+
+    try {
+      serializer.serializeTyped(5L, Number.class);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      // expected, subclasses can not be read back
+    }
+  }
+
+  @Test
+  public void testRegistrations() {
+    FluoConfiguration fluoConfig = new FluoConfiguration();
+    KryoSimplerSerializer.setKryoRegistrations(fluoConfig, Point.class);
+
+    SimpleSerializer registered = new KryoSimplerSerializer();
+    registered.init(fluoConfig.getAppConfiguration());
+    SimpleSerializer unregistered = new KryoSimplerSerializer();
+    unregistered.init(new FluoConfiguration().getAppConfiguration());
+
+    Point before = new Point(3, 4);
+    byte[] barray = registered.serialize(before);
+    Assert.assertTrue(barray.length < unregistered.serialize(before).length);
+    Assert.assertEquals(before, registered.deserialize(barray, Point.class));
+  }
+
+  @Test
+  public void testPoolStats() {
+    FluoConfiguration fluoConfig = new FluoConfiguration();
+    KryoSimplerSerializer.setKryoPoolSize(fluoConfig, 3);
+
+    KryoSimplerSerializer serializer = new KryoSimplerSerializer();
+    serializer.init(fluoConfig.getAppConfiguration());
+
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals((Integer) i, serializer.deserialize(serializer.serialize(i),
+          Integer.class));
+    }
+
+    KryoSimplerSerializer.PoolStats stats = serializer.getPoolStats();
+    Assert.assertEquals(1, stats.getCreated());
+    Assert.assertEquals(1, stats.getSize());
+    Assert.assertEquals(1, stats.getIdle());
+    Assert.assertEquals(20, stats.getBorrows());
+  }
+
+  // has the same fields as TxLog had before 1.2.0
+  public static class OldTxLog {
+    private List<LogEntry> logEntries = new ArrayList<>();
+  }
+
+  @Test
+  public void testTxLog() {
+    SimpleSerializer serializer = new KryoSimplerSerializer(KRYO_FACTORY);
+
+    List<LogEntry> entries =
+        Arrays.asList(LogEntry.newSet("r1", new Column("cf1"), "v1"),
+            LogEntry.newGet("r2", new Column("cf2", "cq2"), "v2"),
+            LogEntry.newDelete("r3", new Column("cf3", "cq3", "A")));
+
+    TxLog before = new TxLog();
+    entries.forEach(before::add);
+    TxLog after = serializer.deserialize(serializer.serialize(before), TxLog.class);
+    Assert.assertEquals(entries, after.getLogEntries());
+
+    // a log serialized by an earlier version, like one still in an export queue
+    OldTxLog old = new OldTxLog();
+    old.logEntries.addAll(entries);
+    TxLog converted = serializer.deserialize(serializer.serialize(old), TxLog.class);
+    Assert.assertEquals(3, converted.size());
+    Assert.assertEquals(entries, converted.getLogEntries());
+    converted.add(LogEntry.newSet("r4", new Column("cf4"), "v4"));
+    Assert.assertEquals(LogEntry.newSet("r4", new Column("cf4"), "v4"), converted
+        .getLogEntries().get(3));
+  }
 }